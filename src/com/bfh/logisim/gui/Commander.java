@@ -1194,8 +1194,17 @@ public class Commander extends JFrame
 
   private boolean writeHDL(Netlist.Context ctx, PinBindings pinBindings) {
     String circdir = circuitWorkspace();
-    if (!cleanDirectory(circdir))
-      return false;
+    // HDL from a previous generation is kept, so unchanged files need not be
+    // rewritten; everything else is cleared.
+    File[] old = new File(circdir).listFiles();
+    for (File f : old != null ? old : new File[0]) {
+      if (f.isDirectory() && (f.getName().equals("verilog") || f.getName().equals("vhdl")))
+        continue;
+      if (f.isDirectory() ? !cleanDirectory(f.getPath()) : !f.delete()) {
+        err.AddFatalError("Unable to remove old project file: %s", f.getPath());
+        return false;
+      }
+    }
     for (String subdir : HDL_PATHS)
       if (!mkdirs(circdir + subdir))
         return false;
@@ -1206,13 +1215,26 @@ public class Commander extends JFrame
     ToplevelHDLGenerator g = new ToplevelHDLGenerator(ctx, pinBindings);
 
     g.notifyNetlistReady();
+    long start = System.currentTimeMillis();
     Circuit root = circuitsList.getSelectedValue();
     if (g.hdlDependsOnCircuitState()) { // for NVRAM
       CircuitState cs = getCircuitState(root);
       if (!g.writeAllHDLThatDependsOn(cs, null, null, circdir))
         return false;
     }
-    return g.writeAllHDLFiles(circdir);
+    if (!g.writeAllHDLFiles(circdir))
+      return false;
+    int removed = 0;
+    for (String subdir : new String[] { "verilog", "vhdl" }) {
+      int n = ctx.files.EndGeneration(circdir + subdir, err);
+      if (n < 0)
+        return false;
+      removed += n;
+    }
+    err.AddInfo("HDL generation took %d ms: %d files written, %d unchanged, %d stale files removed.",
+        System.currentTimeMillis() - start, ctx.files.FilesWritten(),
+        ctx.files.FilesUnchanged(), removed);
+    return true;
   }
 
   private CircuitState getCircuitState(Circuit circ) {
@@ -30,6 +30,9 @@
 
 package com.bfh.logisim.gui;
 
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
 public class FPGAReport {
 	private Commander dlg;
 
@@ -41,31 +44,33 @@ public class FPGAReport {
 		dlg = parent;
 	}
 
-	public void AddInfo(String msg, Object ...args) {
+  // Messages may be reported from several HDL generation threads at once,
+  // and warnings and errors are counted.
+	public synchronized void AddInfo(String msg, Object ...args) {
 		dlg.messages.printf(Console.INFO, msg, args);
 	}
 
-	public void AddWarning(String msg, Object ...args) {
+	public synchronized void AddWarning(String msg, Object ...args) {
     dlg.warns++;
 		dlg.messages.printf(Console.WARNING, msg, args);
 	}
 
-	public void AddSevereWarning(String msg, Object ...args) {
+	public synchronized void AddSevereWarning(String msg, Object ...args) {
     dlg.warns++;
 		dlg.messages.printf(Console.WARNING, "**SEVERE** " + msg, args);
 	}
 
-	public void AddSevereError(String msg, Object ...args) {
+	public synchronized void AddSevereError(String msg, Object ...args) {
     dlg.errors++;
 		dlg.messages.printf(Console.SEVERE, "**SEVERE** " + msg, args);
 	}
 
-	public void AddError(String msg, Object ...args) {
+	public synchronized void AddError(String msg, Object ...args) {
     dlg.errors++;
 		dlg.messages.printf(Console.ERROR, msg, args);
 	}
 
-	public void AddFatalError(String msg, Object ...args) {
+	public synchronized void AddFatalError(String msg, Object ...args) {
     dlg.fatals++;
 		dlg.messages.printf(Console.ERROR, "***FATAL*** " + msg, args);
 	}
@@ -73,4 +78,45 @@ public class FPGAReport {
 	public Console NewConsole(String title) {
 		return dlg.NewConsole(title);
 	}
+
+  // A report that holds on to its messages until they are replayed into
+  // another report, so work done on other threads can still be reported in a
+  // predictable order.
+  public static class Deferred extends FPGAReport {
+    private ArrayList<Consumer<FPGAReport>> pending = new ArrayList<>();
+
+    public Deferred() {
+      super(null);
+    }
+
+    public synchronized void AddInfo(String msg, Object ...args) {
+      pending.add(r -> r.AddInfo(msg, args));
+    }
+
+    public synchronized void AddWarning(String msg, Object ...args) {
+      pending.add(r -> r.AddWarning(msg, args));
+    }
+
+    public synchronized void AddSevereWarning(String msg, Object ...args) {
+      pending.add(r -> r.AddSevereWarning(msg, args));
+    }
+
+    public synchronized void AddSevereError(String msg, Object ...args) {
+      pending.add(r -> r.AddSevereError(msg, args));
+    }
+
+    public synchronized void AddError(String msg, Object ...args) {
+      pending.add(r -> r.AddError(msg, args));
+    }
+
+    public synchronized void AddFatalError(String msg, Object ...args) {
+      pending.add(r -> r.AddFatalError(msg, args));
+    }
+
+    public synchronized void replay(FPGAReport dest) {
+      for (Consumer<FPGAReport> msg : pending)
+        msg.accept(dest);
+      pending.clear();
+    }
+  }
 }
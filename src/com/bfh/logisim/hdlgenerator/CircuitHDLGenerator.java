@@ -34,6 +34,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.bfh.logisim.library.DynamicClock;
 import com.bfh.logisim.netlist.Net;
@@ -232,54 +237,85 @@ public class CircuitHDLGenerator extends HDLGenerator {
 	}
 
   // Second-level entry point: recursively write all HDL files for the project.
+  // The hierarchy is walked serially to decide which generator writes each
+  // module, then each circuit (along with the components it claimed) is
+  // written by a separate job, in parallel.
   public boolean writeAllHDLFiles(String rootDir) {
 		if (!rootDir.endsWith(File.separator))
 			rootDir += File.separator;
-    return writeAllHDLFiles(rootDir, new HashSet<String>(), new Path(circ));
+    ArrayList<Callable<Boolean>> jobs = new ArrayList<>();
+    if (!collectHDLJobs(rootDir, new HashSet<String>(), new Path(circ), jobs))
+      return false;
+    ExecutorService pool = Executors.newFixedThreadPool(
+        Math.min(jobs.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      boolean ok = true;
+      for (Future<Boolean> job : pool.invokeAll(jobs))
+        ok &= job.get();
+      return ok;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      _err.AddFatalError("HDL generation was interrupted.");
+      return false;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException)e.getCause();
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+	private boolean collectHDLJobs(String rootDir, HashSet<String> writtenComponents,
+      Path path, ArrayList<Callable<Boolean>> jobs) {
+    // Claim this circuit first
+    String name = getHDLModuleName();
+    if (writtenComponents.contains(name))
+      return true;
+    writtenComponents.add(name);
+
+    // Claim this circuit's normal (non-subcircuit, non-inlined) components next
+    ArrayList<NetlistComponent> claimed = new ArrayList<>();
+    for (NetlistComponent comp : _circNets.components) {
+      if (comp.original.getFactory() instanceof SubcircuitFactory)
+        continue;
+      HDLSupport g = comp.hdlSupport;
+      if (g == null || g.inlined)
+        continue;
+      if (writtenComponents.add(g.getHDLModuleName()))
+        claimed.add(comp);
+    }
+    jobs.add(() -> writeHDLFiles(rootDir, path, claimed));
+
+    // Recurse for subcircuits last
+    for (NetlistComponent subcirc : _circNets.subcircuits) {
+      CircuitHDLGenerator g = (CircuitHDLGenerator)subcirc.hdlSupport;
+      if (g == null) {
+        _err.AddError(name+": missing subcircuit HDL support for " + subcirc.original);
+        return false;
+      }
+      Path subpath = path.extend(subcirc);
+      if (!g.collectHDLJobs(rootDir, writtenComponents, subpath, jobs))
+        return false;
+    }
+
+    return true;
   }
 
-	private boolean writeAllHDLFiles(String rootDir, HashSet<String> writtenComponents, Path path) {
+	private boolean writeHDLFiles(String rootDir, Path path, ArrayList<NetlistComponent> claimed) {
 		_circNets.currentPath = path;
     try {
-      // Generate this circuit first
       String name = getHDLModuleName();
-      if (writtenComponents.contains(name))
-        return true;
       if (!writeHDLFiles(rootDir)) {
         _err.AddError("Error writing HDL files for " + name);
         return false;
       }
-      writtenComponents.add(name);
-
-      // Generate this circuit's normal (non-subcircuit, non-inlined) components next
-      for (NetlistComponent comp : _circNets.components) {
-        if (comp.original.getFactory() instanceof SubcircuitFactory)
-          continue;
-        HDLSupport g = comp.hdlSupport;
-        if (g == null || g.inlined)
-          continue;
-        String moduleName = g.getHDLModuleName();
-        if (!writtenComponents.contains(moduleName)) {
-          if (!g.writeHDLFiles(rootDir)) {
-            _err.AddError(name+": error writing HDL files for " + comp.original.getFactory());
-            return false;
-          }
-          writtenComponents.add(moduleName);
-        }
-      }
-
-      // Recurse for subcircuits last
-      for (NetlistComponent subcirc : _circNets.subcircuits) {
-        CircuitHDLGenerator g = (CircuitHDLGenerator)subcirc.hdlSupport;
-        if (g == null) {
-          _err.AddError(name+": missing subcircuit HDL support for " + subcirc.original);
+      for (NetlistComponent comp : claimed) {
+        if (!comp.hdlSupport.writeHDLFiles(rootDir)) {
+          _err.AddError(name+": error writing HDL files for " + comp.original.getFactory());
           return false;
         }
-        Path subpath = path.extend(subcirc);
-        if (!g.writeAllHDLFiles(rootDir, writtenComponents, subpath))
-          return false;
       }
-
       return true;
     } finally {
       _circNets.currentPath = null;
@@ -292,7 +328,7 @@ public class CircuitHDLGenerator extends HDLGenerator {
     // an external user-defined VHDL implementation.
     if (circ.getStaticAttributes().getValue(CircuitAttributes.CIRCUIT_IS_VHDL_BOX)) {
       String name = getHDLModuleName();
-      return FileWriter.CopyArchitecture(
+      return FileWriter.CopyArchitecture(ctx.files,
 						circ.getStaticAttributes().getValue(CircuitAttributes.CIRCUIT_VHDL_PATH),
             rootDir + subdir, name, _err, _lang);
     } else {
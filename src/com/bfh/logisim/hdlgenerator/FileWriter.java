@@ -30,19 +30,84 @@
 
 package com.bfh.logisim.hdlgenerator;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.bfh.logisim.gui.FPGAReport;
 import com.bfh.logisim.settings.Settings;
 
 public class FileWriter {
 
-	public static boolean CopyArchitecture(String source, String dest,
+	// HDL files are regenerated in place: files whose contents did not change
+	// since the previous generation are left untouched (keeping their
+	// timestamps, so synthesis tools can skip them), and files no longer
+	// claimed by any generator are removed by Generation.EndGeneration().
+	private static class Digest {
+		final long length, lastModified;
+		final byte[] sha;
+		Digest(long length, long lastModified, byte[] sha) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.sha = sha;
+		}
+	}
+
+	// The digests only cache what is on disk, so they are shared by all
+	// generations.
+	private static final ConcurrentHashMap<String, Digest> digests = new ConcurrentHashMap<>();
+
+	// The files claimed by one HDL generation, and how many of them were
+	// written or left unchanged. Each generation run has its own (see
+	// Netlist.Context), so runs for different projects don't mix.
+	public static class Generation {
+		private final Set<String> claimed = ConcurrentHashMap.newKeySet();
+		private final AtomicInteger written = new AtomicInteger();
+		private final AtomicInteger unchanged = new AtomicInteger();
+
+		public int FilesWritten() {
+			return written.get();
+		}
+
+		public int FilesUnchanged() {
+			return unchanged.get();
+		}
+
+		// Removes files left over from a previous generation that this one did
+		// not claim, returning how many were removed, or -1 on failure.
+		public int EndGeneration(String dirname, FPGAReport MyReporter) {
+			File dir = new File(dirname);
+			if (!dir.isDirectory())
+				return 0;
+			int removed = 0;
+			for (File f : dir.listFiles()) {
+				if (f.isDirectory()) {
+					int n = EndGeneration(f.getPath(), MyReporter);
+					if (n < 0)
+						return -1;
+					removed += n;
+				} else if (!claimed.contains(f.getAbsolutePath())) {
+					digests.remove(f.getAbsolutePath());
+					if (!f.delete()) {
+						MyReporter.AddFatalError("Unable to remove old HDL file: %s", f.getPath());
+						return -1;
+					}
+					removed++;
+				}
+			}
+			return removed;
+		}
+	}
+
+	public static boolean CopyArchitecture(Generation gen, String source, String dest,
 			String componentName, FPGAReport reporter, String HDLType) {
 		try {
 			if (HDLType.equals(Settings.VERILOG)) {
@@ -57,15 +122,8 @@ public class FileWriter {
 			// copy file
 			String destPath = dest + componentName + ArchitectureExtension + ".vhd";
 			File outFile = new File(destPath);
-			InputStream in = new FileInputStream(inFile);
-			OutputStream out = new FileOutputStream(outFile);
-			byte[] buf = new byte[1024];
-			int len;
-			while ((len = in.read(buf)) > 0) {
-				out.write(buf, 0, len);
-			}
-			in.close();
-			out.close();
+			gen.claimed.add(outFile.getAbsolutePath());
+			WriteBytes(gen, outFile, Files.readAllBytes(inFile.toPath()));
 			reporter.AddInfo("\"" + source + "\" successfully copied to \""
 					+ destPath + "\"");
 			return true;
@@ -74,13 +132,14 @@ public class FileWriter {
 			return false;
 		}
 	}
-	public static File GetFilePointer(String TargetDirectory,
+	public static File GetFilePointer(Generation gen, String TargetDirectory,
 			String ComponentName, boolean IsMif, boolean IsEntity, int idx,
       FPGAReport MyReporter, String HDLType) {
 		try {
 			File OutDir = new File(TargetDirectory);
 			if (!OutDir.exists()) {
-				if (!OutDir.mkdirs()) {
+				// Another generator thread may create the same directory.
+				if (!OutDir.mkdirs() && !OutDir.isDirectory()) {
 					return null;
 				}
 			}
@@ -107,7 +166,9 @@ public class FileWriter {
 			}
 			File OutFile = new File(FileName);
 			MyReporter.AddInfo("Creating HDL file : " + FileName);
-			if (OutFile.exists()) {
+			// A file left by a previous generation is fine, it is only
+			// rewritten if its contents change.
+			if (!gen.claimed.add(OutFile.getAbsolutePath())) {
 				MyReporter.AddWarning("HDL file \"" + FileName
 						+ "\" already exists");
 				return null;
@@ -149,16 +210,21 @@ public class FileWriter {
 
 	public static boolean WriteContents(File outfile,
 			ArrayList<String> Contents, FPGAReport MyReporter) {
+		return WriteContents(null, outfile, Contents, MyReporter);
+	}
+
+	// As above, but counted as part of the given generation, if not null.
+	public static boolean WriteContents(Generation gen, File outfile,
+			ArrayList<String> Contents, FPGAReport MyReporter) {
 		try {
-			FileOutputStream output = new FileOutputStream(outfile);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
 			for (String ThisLine : Contents) {
 				if (!ThisLine.isEmpty()) {
 					output.write(ThisLine.getBytes());
 				}
-				output.write("\n".getBytes());
+				output.write('\n');
 			}
-			output.flush();
-			output.close();
+			WriteBytes(gen, outfile, output.toByteArray());
 			return true;
 		} catch (Exception e) {
 			MyReporter.AddFatalError("Could not write to file \""
@@ -167,6 +233,38 @@ public class FileWriter {
 		}
 	}
 
+	private static void WriteBytes(Generation gen, File outfile, byte[] data) throws IOException {
+		String path = outfile.getAbsolutePath();
+		byte[] sha = Sha256(data);
+		if (outfile.isFile() && outfile.length() == data.length) {
+			Digest d = digests.get(path);
+			boolean same;
+			if (d != null && d.length == outfile.length()
+					&& d.lastModified == outfile.lastModified())
+				same = Arrays.equals(d.sha, sha);
+			else
+				same = Arrays.equals(Files.readAllBytes(outfile.toPath()), data);
+			if (same) {
+				digests.put(path, new Digest(data.length, outfile.lastModified(), sha));
+				if (gen != null)
+					gen.unchanged.incrementAndGet();
+				return;
+			}
+		}
+		Files.write(outfile.toPath(), data);
+		digests.put(path, new Digest(data.length, outfile.lastModified(), sha));
+		if (gen != null)
+			gen.written.incrementAndGet();
+	}
+
+	private static byte[] Sha256(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	public static final String EntityExtension = "_entity";
 	public static final String ArchitectureExtension = "_behavior";
 }
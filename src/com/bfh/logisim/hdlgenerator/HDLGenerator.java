@@ -252,7 +252,7 @@ public class HDLGenerator extends HDLSupport {
 		File f = openFile(rootDir, false, false);
 		if (f == null)
 			return false;
-		return FileWriter.WriteContents(f, hdl, _err);
+		return FileWriter.WriteContents(ctx.files, f, hdl, _err);
 	}
 
   // Generate the full HDL code for the "architecture" file.
@@ -373,7 +373,7 @@ public class HDLGenerator extends HDLSupport {
 		File f = openFile(rootDir, false, true);
 		if (f == null)
 			return false;
-		return FileWriter.WriteContents(f, hdl, _err);
+		return FileWriter.WriteContents(ctx.files, f, hdl, _err);
 	}
 
 	protected Hdl getVhdlEntity() {
@@ -536,7 +536,7 @@ public class HDLGenerator extends HDLSupport {
     if (!rootDir.endsWith(File.separator))
       rootDir += File.separator;
     String path = rootDir + _lang.toLowerCase() + File.separator + subdir + File.separator;
-    return FileWriter.GetFilePointer(path, hdlModuleName, isMif, isEntity, idx, _err, _lang);
+    return FileWriter.GetFilePointer(ctx.files, path, hdlModuleName, isMif, isEntity, idx, _err, _lang);
 	}
 
   // Return a suitable stem for naming instances of this component within a
@@ -35,9 +35,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.bfh.logisim.gui.FPGAReport;
 import com.bfh.logisim.hdlgenerator.CircuitHDLGenerator;
+import com.bfh.logisim.hdlgenerator.FileWriter;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.bfh.logisim.library.DynamicClock;
 import com.bfh.logisim.netlist.NetlistComponent;
@@ -81,6 +86,7 @@ public class Netlist {
     private final int[] prevSeqno;
     public final HashMap<Object, String> uniqueHDLNames;
     public final HashSet<String> forbiddenHDLNames;
+    public final FileWriter.Generation files;
 
     public Context(String lang, FPGAReport err, char vendor, Circuit root,
         long oscFreq, int clkPeriod) {
@@ -96,6 +102,7 @@ public class Netlist {
       this.prevSeqno = new int[1];
       this.uniqueHDLNames = new HashMap<>();
       this.forbiddenHDLNames = new HashSet<>();
+      this.files = new FileWriter.Generation();
     }
 
     protected Context(Context ctx) {
@@ -111,6 +118,7 @@ public class Netlist {
       prevSeqno = ctx.prevSeqno;
       uniqueHDLNames = ctx.uniqueHDLNames;
       forbiddenHDLNames = ctx.forbiddenHDLNames;
+      files = ctx.files;
     }
 
     public Netlist getNetlist(Circuit circ) {
@@ -201,15 +209,26 @@ public class Netlist {
 	public static final int DRC_PASSED = 1;
 	private int status = DRC_REQUIRED;
 
+  // Where DRC messages for this circuit go. While the connectivity check runs
+  // on a worker thread (see checkAllConnectivity), this is a deferred report,
+  // replayed into ctx.err once recursiveValidate() reaches this circuit.
+  private FPGAReport err;
+  private Future<Boolean> connectivity;
+
 	public Netlist(Circuit circ, Context ctx) {
 		this.circ = circ;
     this.ctx = ctx;
+    this.err = ctx.err;
 	}
   
   // Primary entry point for performing design-rule-check (DRC) validation on
   // the Netlist for the top-level circuit.
   public boolean validate() {
 
+    // The connectivity checks are independent for each circuit, so run them
+    // for the whole hierarchy in parallel first.
+    checkAllConnectivity();
+
     // Recursively validate this Netlist and those of all subcircuits.
     if (!recursiveValidate(new ArrayList<>(), true)) {
       return false;
@@ -265,13 +284,61 @@ public class Netlist {
     return true;
   }
 
-  private boolean drc(ArrayList<String> sheets, boolean isTop) {
+  private void checkAllConnectivity() {
+    ArrayList<Netlist> all = new ArrayList<>();
+    HashSet<Circuit> seen = new HashSet<>();
+    enumerateHierarchy(all, seen);
+    ExecutorService pool = Executors.newFixedThreadPool(
+        Math.min(all.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      for (Netlist n : all) {
+        if (n.status != DRC_REQUIRED || n.connectivity != null)
+          continue;
+        n.err = new FPGAReport.Deferred();
+        n.connectivity = pool.submit(n::checkConnectivity);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private void enumerateHierarchy(ArrayList<Netlist> all, HashSet<Circuit> seen) {
+    if (!seen.add(circ))
+      return;
+    all.add(this);
+    for (Component comp : circ.getNonWires())
+      if (comp.getFactory() instanceof SubcircuitFactory)
+        ctx.getNetlist(comp).enumerateHierarchy(all, seen);
+  }
+
+  // Waits for this circuit's connectivity check, if it was started by
+  // checkAllConnectivity(), otherwise performs it now.
+  private boolean connectivityChecked() {
+    if (connectivity == null)
+      return checkConnectivity();
+    try {
+      return connectivity.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("design rule check interrupted", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException)e.getCause();
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      ((FPGAReport.Deferred)err).replay(ctx.err);
+      err = ctx.err;
+      connectivity = null;
+    }
+  }
+
+  private boolean checkConnectivity() {
 
     String circName = circ.getName();
 
     // DRC Step 1: Check for presence of tri-state devices or bidirectional
     // ports, neither of which are typically supported for HDL synthesis.
-		ctx.err.AddInfo("Checking for tri-state drivers or bidirectional ports in circuit '%s'.", circName);
+		err.AddInfo("Checking for tri-state drivers or bidirectional ports in circuit '%s'.", circName);
 		for (Component comp : circ.getNonWires()) {
       // Note: Splitters and Tunnels can be bidirectional, as those cases are
       // handled as special cases in buildNets().
@@ -318,11 +385,22 @@ public class Netlist {
     // }
 
     // DRC Step 3: Check connectivity (e.g. splitters, tunnels, wires) and build nets.
-		ctx.err.AddInfo("Checking wire, tunnel, and splitter connectivity in circuit '%s'.", circName);
+		err.AddInfo("Checking wire, tunnel, and splitter connectivity in circuit '%s'.", circName);
 		if (!buildNets())
 			return false;
     printNetlistStats();
 
+    return true;
+  }
+
+  private boolean drc(ArrayList<String> sheets, boolean isTop) {
+
+    String circName = circ.getName();
+
+    // DRC Steps 1 through 3, possibly already done by checkAllConnectivity().
+    if (!connectivityChecked())
+      return false;
+
     // DRC Step 4: Create NetlistComponent shadow objects for each Component,
     // and perform sanity checks.
 		for (Component comp : circ.getNonWires()) {
@@ -393,7 +471,7 @@ public class Netlist {
       else
 				n++;
     }
-    ctx.err.AddInfo("Circuit '%s' contains %d signal nets and %d bus nets.", circ.getName(), n, b);
+    err.AddInfo("Circuit '%s' contains %d signal nets and %d bus nets.", circ.getName(), n, b);
   }
 
   private String nameOf(Component comp) {
@@ -408,7 +486,7 @@ public class Netlist {
   private boolean drcFail(Component comp, String msg, Object ...args) {
     String prefix = String.format("Component %s in circuit '%s': ",
         nameOf(comp), circ.getName());
-    ctx.err.AddSevereError(prefix + String.format(msg, args));
+    err.AddSevereError(prefix + String.format(msg, args));
     return false;
   }
 
@@ -648,7 +726,7 @@ public class Netlist {
           else {
             String prefix = String.format("Component %s in circuit '%s': ",
                 nameOf(comp), circ.getName());
-            ctx.err.AddInfo("%s component is a sink, but no net connected at %s", prefix, pt);
+            err.AddInfo("%s component is a sink, but no net connected at %s", prefix, pt);
           }
         } else {
           if (net == null)
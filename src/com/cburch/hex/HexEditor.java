@@ -38,25 +38,48 @@ import java.awt.Graphics2D;
 import java.awt.Graphics;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.util.BitSet;
 
 import javax.swing.JComponent;
 import javax.swing.Scrollable;
 import javax.swing.SwingConstants;
+import javax.swing.Timer;
 
 public class HexEditor extends JComponent implements Scrollable {
+	// Memory can change from any thread, and much faster than is worth
+	// showing, so changes only mark which of the visible cells are dirty.
+	// Changes outside the visible cells are ignored, as the next paint of
+	// those cells will show them anyway. A timer then repaints just the dirty
+	// cells, at most once per frame.
 	private class Listener implements HexModelListener {
 		public void bytesChanged(HexModel source, long start, long numBytes,
 				int[] oldValues) {
-			repaint(0, measures.toY(start), getWidth(),
-					measures.toY(start + numBytes) + measures.getCellHeight());
+			synchronized (dirtyLock) {
+				long s = Math.max(start, visStart);
+				long e = Math.min(start + numBytes, visEnd);
+				if (s >= e)
+					return;
+				dirty.set((int) (s - visStart), (int) (e - visStart));
+				if (!flushPending) {
+					flushPending = true;
+					dirtyBase = visStart;
+					flushTimer.restart();
+				}
+			}
 		}
 
 		public void metainfoChanged(HexModel source) {
+			clearDirty();
 			measures.recompute();
 			repaint();
 		}
 	}
 
+	private static final int FRAME_MILLIS = 30;
+	// Above this many separate dirty runs, one repaint of the whole visible
+	// area is cheaper than painting them one at a time.
+	private static final int MAX_DIRTY_RUNS = 64;
+
 	private static final long serialVersionUID = 1L;
 
   public static final Font FONT = new Font("monospaced", Font.PLAIN, 12);
@@ -67,12 +90,22 @@ public class HexEditor extends JComponent implements Scrollable {
 	private Caret caret;
 	private Highlighter highlighter;
 
+	private final Object dirtyLock = new Object();
+	private BitSet dirty = new BitSet(); // relative to dirtyBase
+	private long dirtyBase;
+	private boolean flushPending;
+	private volatile long visStart, visEnd; // visible cells, updated on paint
+	private Timer flushTimer;
+	private char[] hexBuf = new char[16];
+
 	public HexEditor(HexModel model) {
 		this.model = model;
 		this.listener = new Listener();
 		this.measures = new Measures(this);
 		this.caret = new Caret(this);
 		this.highlighter = new Highlighter(this);
+		this.flushTimer = new Timer(FRAME_MILLIS, e -> flushDirty());
+		this.flushTimer.setRepeats(false);
 
     setFont(FONT);
 		setOpaque(true);
@@ -175,6 +208,7 @@ public class HexEditor extends JComponent implements Scrollable {
         RenderingHints.VALUE_ANTIALIAS_ON);
 
 		measures.ensureComputed(g);
+		updateVisibleCells();
 
 		Rectangle clip = g.getClipBounds();
 		if (isOpaque()) {
@@ -205,22 +239,30 @@ public class HexEditor extends JComponent implements Scrollable {
 		int labelChars = measures.getLabelChars();
 		int cellWidth = measures.getCellWidth();
 		int cellChars = measures.getCellChars();
+		boolean showLabels = clip.x < baseX;
+		int col0 = 0, col1 = cols;
+		while (col0 < cols && measures.toX(col0) + cellWidth < clip.x)
+			col0++;
+		while (col1 > col0 && measures.toX(col1 - 1) > clip.x + clip.width)
+			col1--;
+		char[] buf = hexChars(Math.max(labelChars, cellChars));
 		for (long a = xaddr0; a < xaddr1; a += cols, baseY += dy) {
-			String label = toHex(a, labelChars);
-			g.setFont(labelFont);
-			g.drawString(
-					label,
-					baseX - labelWidth
-							+ (labelWidth - labelFm.stringWidth(label)) / 2,
-					baseY);
-			g.setFont(baseFont);
-			long b = a;
-			for (int j = 0; j < cols; j++, b++) {
+			if (showLabels) {
+				toHex(a, buf, labelChars);
+				g.setFont(labelFont);
+				g.drawChars(buf, 0, labelChars,
+						baseX - labelWidth
+								+ (labelWidth - labelFm.charsWidth(buf, 0, labelChars)) / 2,
+						baseY);
+				g.setFont(baseFont);
+			}
+			long b = a + col0;
+			for (int j = col0; j < col1; j++, b++) {
 				if (b >= addr0 && b <= addr1) {
-					String val = toHex(model.get(b), cellChars);
+					toHex(model.get(b), buf, cellChars);
 					int x = measures.toX(b)
-							+ (cellWidth - baseFm.stringWidth(val)) / 2;
-					g.drawString(val, x, baseY);
+							+ (cellWidth - baseFm.charsWidth(buf, 0, cellChars)) / 2;
+					g.drawChars(buf, 0, cellChars, x, baseY);
 				}
 			}
 		}
@@ -228,6 +270,69 @@ public class HexEditor extends JComponent implements Scrollable {
 		caret.paintForeground(g, xaddr0, xaddr1);
 	}
 
+	private void updateVisibleCells() {
+		Rectangle vis = getVisibleRect();
+		long s, e;
+		if (model == null || vis.isEmpty()) {
+			s = e = 0;
+		} else {
+			s = measures.toAddress(0, vis.y) - measures.getColumnCount();
+			e = measures.toAddress(getWidth(), vis.y + vis.height)
+					+ measures.getColumnCount() + 1;
+		}
+		if (s != visStart || e != visEnd) {
+			synchronized (dirtyLock) {
+				visStart = s;
+				visEnd = e;
+			}
+		}
+	}
+
+	// Repaints the cells marked dirty since the last frame, a run of adjacent
+	// cells at a time. Swing would merge separate repaint() requests into one
+	// rectangle spanning all of them, so these are painted immediately.
+	private void flushDirty() {
+		BitSet cells;
+		long base;
+		synchronized (dirtyLock) {
+			cells = dirty;
+			base = dirtyBase;
+			dirty = new BitSet();
+			flushPending = false;
+		}
+		if (model == null || !isShowing())
+			return;
+		Rectangle vis = getVisibleRect();
+		updateVisibleCells();
+		if (base != visStart) {
+			repaint(vis); // scrolled since, so just paint it all
+			return;
+		}
+		int cols = measures.getColumnCount();
+		int cellWidth = measures.getCellWidth();
+		int cellHeight = measures.getCellHeight();
+		int runs = 0;
+		Rectangle[] rects = new Rectangle[MAX_DIRTY_RUNS];
+		for (int i = cells.nextSetBit(0); i >= 0; i = cells.nextSetBit(i)) {
+			int j = cells.nextClearBit(i);
+			long a = base + i, end = base + j;
+			while (a < end) {
+				long e = Math.min(end, a - a % cols + cols); // stop at end of row
+				if (runs == MAX_DIRTY_RUNS) {
+					repaint(vis);
+					return;
+				}
+				int x0 = measures.toX(a);
+				int x1 = measures.toX(e - 1) + cellWidth;
+				rects[runs++] = new Rectangle(x0, measures.toY(a), x1 - x0, cellHeight);
+				a = e;
+			}
+			i = j;
+		}
+		for (int k = 0; k < runs; k++)
+			paintImmediately(rects[k]);
+	}
+
 	public void removeHighlight(Object tag) {
 		highlighter.remove(tag);
 	}
@@ -281,22 +386,34 @@ public class HexEditor extends JComponent implements Scrollable {
 		caret.setDot(-1, false);
 		if (model != null)
 			model.addHexModelWeakListener(null, listener);
+		clearDirty();
 		measures.recompute();
+		repaint();
 	}
 
-	private String toHex(long value, int chars) {
-		String ret = Long.toHexString(value);
-		int retLen = ret.length();
-		if (retLen < chars) {
-			ret = "0" + ret;
-			for (int i = retLen + 1; i < chars; i++) {
-				ret = "0" + ret;
-			}
-			return ret;
-		} else if (retLen == chars) {
-			return ret;
-		} else {
-			return ret.substring(retLen - chars);
+	// Forgets the visible cells until the next paint, as the layout or the
+	// whole model changed, so that paint covers everything anyway.
+	private void clearDirty() {
+		synchronized (dirtyLock) {
+			dirty.clear();
+			visStart = visEnd = 0;
+		}
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private char[] hexChars(int chars) {
+		if (hexBuf.length < chars)
+			hexBuf = new char[chars];
+		return hexBuf;
+	}
+
+	// Formats the low-order hex digits of value into buf[0..chars), zero
+	// padded, without allocating a String for every cell.
+	private static void toHex(long value, char[] buf, int chars) {
+		for (int i = chars - 1; i >= 0; i--) {
+			buf[i] = HEX_DIGITS[(int) (value & 0xf)];
+			value >>>= 4;
 		}
 	}
 }
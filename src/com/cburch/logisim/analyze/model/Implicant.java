@@ -41,6 +41,7 @@ import java.util.TreeMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 
 public class Implicant implements Comparable<Implicant> {
   private static class TermIterator
@@ -82,7 +83,14 @@ public class Implicant implements Comparable<Implicant> {
     int column = model.getOutputs().bits.indexOf(variable);
     if (column < 0)
       return Collections.emptyList();
+    return computeMinimal(format, table.getOutputColumnCopy(column));
+  }
 
+  // Computes the minimal implicants for a snapshot of one output column. This
+  // does not touch the model, so it is safe to call from a background thread.
+  // If the calling thread is interrupted, the computation is abandoned with a
+  // CancellationException.
+  static List<Implicant> computeMinimal(int format, Entry[] column) {
     Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS ? Entry.ONE
         : Entry.ZERO;
     Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
@@ -92,8 +100,8 @@ public class Implicant implements Comparable<Implicant> {
     HashMap<Implicant, Entry> base = new HashMap<Implicant, Entry>();
     HashSet<Implicant> toCover = new HashSet<Implicant>();
     boolean knownFound = false;
-    for (int i = 0; i < table.getRowCount(); i++) {
-      Entry entry = table.getOutputEntry(i, column);
+    for (int i = 0; i < column.length; i++) {
+      Entry entry = column[i];
       if (entry == undesired) {
         knownFound = true;
       } else if (entry == desired) {
@@ -114,6 +122,7 @@ public class Implicant implements Comparable<Implicant> {
     HashSet<Implicant> primes = new HashSet<Implicant>();
     HashMap<Implicant, Entry> current = base;
     while (current.size() > 1) {
+      checkCancelled();
       HashSet<Implicant> toRemove = new HashSet<Implicant>();
       HashMap<Implicant, Entry> next = new HashMap<Implicant, Entry>();
       for (Map.Entry<Implicant, Entry> curEntry : current.entrySet()) {
@@ -165,6 +174,7 @@ public class Implicant implements Comparable<Implicant> {
     HashSet<Implicant> retSet = new HashSet<Implicant>();
     HashSet<Implicant> covered = new HashSet<Implicant>();
     for (Implicant required : toCover) {
+      checkCancelled();
       if (covered.contains(required))
         continue;
       int row = required.getRow();
@@ -194,6 +204,7 @@ public class Implicant implements Comparable<Implicant> {
     // In that case, greedily pick out prime implicants
     // that cover the most uncovered rows.
     while (!toCover.isEmpty()) {
+      checkCancelled();
       // find the implicant covering the most rows
       Implicant max = null;
       int maxCount = 0;
@@ -239,6 +250,11 @@ public class Implicant implements Comparable<Implicant> {
     return ret;
   }
 
+  private static void checkCancelled() {
+    if (Thread.currentThread().isInterrupted())
+      throw new CancellationException();
+  }
+
   static Expression toExpression(int format, AnalyzerModel model,
       List<Implicant> implicants) {
     if (implicants == null)
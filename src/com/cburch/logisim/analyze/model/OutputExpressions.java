@@ -32,9 +32,17 @@ package com.cburch.logisim.analyze.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
 
 public class OutputExpressions {
   private class MyListener
@@ -51,7 +59,7 @@ public class OutputExpressions {
       Var v = event.getVariable();
       int type = event.getType();
       if (type == VariableListEvent.ALL_REPLACED && !outputData.isEmpty()) {
-        outputData.clear();
+        clearOutputData();
         fireModelChanged(OutputExpressionsEvent.ALL_VARIABLES_REPLACED);
       } else if (type == VariableListEvent.REMOVE) {
         for (String input : v) {
@@ -102,11 +110,11 @@ public class OutputExpressions {
     private void outputsChanged(VariableListEvent event) {
       int type = event.getType();
       if (type == VariableListEvent.ALL_REPLACED && !outputData.isEmpty()) {
-        outputData.clear();
+        clearOutputData();
         fireModelChanged(OutputExpressionsEvent.ALL_VARIABLES_REPLACED);
       } else if (type == VariableListEvent.REMOVE) {
         for (String bit : event.getVariable())
-          outputData.remove(bit);
+          removeOutputData(bit);
       } else if (type == VariableListEvent.REPLACE) {
         Var oldVar = event.getVariable();
         Var newVar = model.getOutputs().vars.get(event.getIndex());
@@ -120,7 +128,7 @@ public class OutputExpressions {
           }
         }
         for (int b = newVar.width; b < oldVar.width; b++) {
-          outputData.remove(oldVar.bitName(b));
+          removeOutputData(oldVar.bitName(b));
         }
       }
     }
@@ -137,6 +145,24 @@ public class OutputExpressions {
     List<Implicant> minimalImplicants = null;
     Expression minimalExpr = null;
 
+    // The column snapshot and format from which minimalImplicants were last
+    // computed. When a later invalidation finds the same column, the cached
+    // implicants are reused rather than minimizing again.
+    Entry[] minimizedColumn = null;
+    int minimizedFormat = -1;
+    List<Implicant> minimizedImplicants = null;
+
+    // Background minimization in progress, if any. The generation counter is
+    // bumped whenever pending work is cancelled or superseded, so stale
+    // results arriving on the event thread are discarded. These fields are
+    // touched only on the event thread: the worker just computes, and its
+    // result is always applied by finishPending() via invokeLater().
+    FutureTask<List<Implicant>> pending = null;
+    Entry[] pendingColumn = null;
+    int pendingFormat;
+    boolean pendingFormatChanged = false;
+    int generation = 0;
+
     private boolean invalidating = false;
 
     OutputData(String output) {
@@ -144,6 +170,8 @@ public class OutputExpressions {
       invalidate(true, false);
     }
 
+    // Like the other getters, these return the most recent completed
+    // result, never waiting for minimization still in progress.
     Expression getExpression() {
       return expr;
     }
@@ -174,12 +202,93 @@ public class OutputExpressions {
     private void invalidate(boolean initializing, boolean formatChanged) {
       if (invalidating)
         return;
+      int outputIndex = model.getOutputs().bits.indexOf(output);
+      Entry[] column = outputIndex < 0 ? null
+          : model.getTruthTable().getOutputColumnCopy(outputIndex);
+      if (column != null && format == minimizedFormat
+          && Arrays.equals(column, minimizedColumn)) {
+        // column unchanged, keep the cached result
+        formatChanged |= cancelPending();
+        publish(column, format, minimizedImplicants, initializing,
+            formatChanged);
+      } else if (column == null || initializing
+          || column.length < BACKGROUND_MIN_ROWS) {
+        formatChanged |= cancelPending();
+        List<Implicant> implicants = column == null
+            ? Collections.<Implicant>emptyList()
+            : Implicant.computeMinimal(format, column);
+        publish(column, format, implicants, initializing, formatChanged);
+      } else {
+        schedule(column, formatChanged);
+      }
+    }
+
+    private void schedule(Entry[] column, boolean formatChanged) {
+      formatChanged |= cancelPending();
+      final int gen = generation;
+      final int fmt = format;
+      pendingColumn = column;
+      pendingFormat = fmt;
+      pendingFormatChanged = formatChanged;
+      pending = new FutureTask<List<Implicant>>(
+          () -> Implicant.computeMinimal(fmt, column)) {
+        @Override
+        protected void done() {
+          if (!isCancelled())
+            SwingUtilities.invokeLater(() -> finishPending(gen));
+        }
+      };
+      getMinimizer().execute(pending);
+    }
+
+    // Cancels any background minimization, returning whether the cancelled
+    // work was carrying a format change that still needs to be applied.
+    private boolean cancelPending() {
+      generation++;
+      if (pending == null)
+        return false;
+      pending.cancel(true);
+      pending = null;
+      pendingColumn = null;
+      boolean formatChanged = pendingFormatChanged;
+      pendingFormatChanged = false;
+      return formatChanged;
+    }
+
+    private void finishPending(int gen) {
+      if (gen != generation || pending == null
+          || outputData.get(output) != this)
+        return;
+      List<Implicant> implicants;
+      try {
+        implicants = pending.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (CancellationException | ExecutionException e) {
+        cancelPending();
+        return;
+      }
+      Entry[] column = pendingColumn;
+      int fmt = pendingFormat;
+      boolean formatChanged = pendingFormatChanged;
+      pending = null;
+      pendingColumn = null;
+      pendingFormatChanged = false;
+      generation++;
+      publish(column, fmt, implicants, false, formatChanged);
+    }
+
+    private void publish(Entry[] column, int fmt, List<Implicant> implicants,
+        boolean initializing, boolean formatChanged) {
       invalidating = true;
       try {
         List<Implicant> oldImplicants = minimalImplicants;
         Expression oldMinExpr = minimalExpr;
-        minimalImplicants = Implicant.computeMinimal(format, model,
-            output);
+        minimizedColumn = column;
+        minimizedFormat = fmt;
+        minimizedImplicants = implicants;
+        minimalImplicants = implicants;
         minimalExpr = Implicant.toExpression(format, model,
             minimalImplicants);
         boolean minChanged = !implicantsSame(oldImplicants,
@@ -359,6 +468,24 @@ public class OutputExpressions {
     return true;
   }
 
+  // Tables smaller than this are minimized synchronously, since the work is
+  // cheaper than the round trip through the background executor.
+  private static final int BACKGROUND_MIN_ROWS = 256;
+
+  private static ExecutorService minimizer;
+
+  private static synchronized ExecutorService getMinimizer() {
+    if (minimizer == null) {
+      int n = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+      minimizer = Executors.newFixedThreadPool(n, r -> {
+        Thread t = new Thread(r, "OutputExpressions-minimizer");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return minimizer;
+  }
+
   private MyListener myListener = new MyListener();
 
   private AnalyzerModel model;
@@ -467,11 +594,23 @@ public class OutputExpressions {
     return ret;
   }
 
+  private void removeOutputData(String output) {
+    OutputData data = outputData.remove(output);
+    if (data != null)
+      data.cancelPending();
+  }
+
+  private void clearOutputData() {
+    for (OutputData data : outputData.values())
+      data.cancelPending();
+    outputData.clear();
+  }
+
   private void invalidate(String output, boolean formatChanged) {
     OutputData data = getOutputData(output, false);
     if (data != null) {
       if (!allowUpdates) {
-        outputData.remove(output);
+        removeOutputData(output);
       } else {
         data.invalidate(false, false);
       }
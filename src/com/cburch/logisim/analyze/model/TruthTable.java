@@ -352,6 +352,18 @@ public class TruthTable {
     return column;
   }
 
+  // Returns a private copy of an output column, suitable for handing off to
+  // another thread. Unlike getOutputColumn(), this does not materialize
+  // columns that still hold only default entries.
+  Entry[] getOutputColumnCopy(int col) {
+    Entry[] column = columns.get(col);
+    if (column != null)
+      return column.clone();
+    column = new Entry[getRowCount()];
+    Arrays.fill(column, DEFAULT_ENTRY);
+    return column;
+  }
+
   private boolean identicalOutputs(int idx1, int idx2) {
     if (idx1 == idx2)
       return true;
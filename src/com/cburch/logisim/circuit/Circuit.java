@@ -31,9 +31,11 @@
 package com.cburch.logisim.circuit;
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -69,12 +71,10 @@ import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceComponent;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
-import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.hdl.VhdlEntity;
 import com.cburch.logisim.std.memory.Rom;
 import com.cburch.logisim.std.wiring.Clock;
 import com.cburch.logisim.std.wiring.Pin;
-import com.cburch.logisim.util.CollectionUtil;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
 public class Circuit implements AttributeDefaultProvider {
@@ -109,12 +109,15 @@ public class Circuit implements AttributeDefaultProvider {
       for (EndData end : toAdd.values()) {
         wires.add(comp, end);
       }
+      grid.update(comp);
+      connectionVersion++;
       ((CircuitMutatorImpl) mutator).markModified(Circuit.this);
     }
   }
 
   private class MyComponentListener implements ComponentListener {
     public void componentInvalidated(ComponentEvent e) {
+      grid.updateIfMoved(e.getSource());
       fireEvent(CircuitEvent.ACTION_INVALIDATE, e.getSource());
     }
 
@@ -156,9 +159,11 @@ public class Circuit implements AttributeDefaultProvider {
   private AttributeSet staticAttrs;
   private SubcircuitFactory subcircuitFactory;
   private EventSourceWeakSupport<CircuitListener> listeners = new EventSourceWeakSupport<CircuitListener>();
-  private HashSet<Component> comps = new HashSet<Component>(); // doesn't include wires
+  private LinkedHashSet<Component> comps = new LinkedHashSet<Component>(); // doesn't include wires
   CircuitWires wires = new CircuitWires();
   // wires is package-protected for CircuitState and Analyze only.
+  private ComponentGrid grid = new ComponentGrid(); // comps and wires
+  private volatile int connectionVersion;
   private ArrayList<Component> clocks = new ArrayList<Component>();
   private CircuitLocker locker;
 
@@ -247,9 +252,11 @@ public class Circuit implements AttributeDefaultProvider {
    * Code taken from Cornell's version of Logisim:
    * http://www.cs.cornell.edu/courses/cs3410/2015sp/
    */
-  public void doTestVector(Project project, Instance pin[], Value[] val)
+  // Runs one vector against the given root state, which is reset first. Test
+  // runners pass their own private state here so that they neither disturb
+  // the user's simulation nor contend with each other.
+  public void doTestVector(CircuitState state, Instance pin[], Value[] val)
       throws TestException {
-    CircuitState state = project.getCircuitState();
     state.reset();
 
     for (int i = 0; i < pin.length; ++i) {
@@ -300,10 +307,37 @@ public class Circuit implements AttributeDefaultProvider {
     Graphics g = context.getGraphics();
     Graphics g_copy = g.create();
     context.setGraphics(g_copy);
-    wires.draw(context, hidden);
+
+    // Only components near the clip rectangle are drawn (or even get their
+    // own Graphics). Junction dots are looked for at the ends of those.
+    Collection<Component> toDraw = comps;
+    Rectangle clip = g.getClipBounds();
+    Collection<Component> visible = clip == null ? null
+        : grid.getCandidates(Bounds.create(clip));
+    if (visible == null || visible.size() == grid.size()) {
+      wires.draw(context, hidden);
+    } else {
+      ArrayList<Wire> ws = new ArrayList<>();
+      HashSet<Location> dots = new HashSet<>();
+      toDraw = new ArrayList<>();
+      for (Component c : visible) {
+        if (c instanceof Wire) {
+          Wire w = (Wire) c;
+          ws.add(w);
+          dots.add(w.getEnd0());
+          dots.add(w.getEnd1());
+        } else {
+          toDraw.add(c);
+          for (EndData end : c.getEnds())
+            if (end != null)
+              dots.add(end.getLocation());
+        }
+      }
+      wires.draw(context, hidden, ws, dots);
+    }
 
     if (hidden == null || hidden.size() == 0) {
-      for (Component c : comps) {
+      for (Component c : toDraw) {
         Graphics g_new = g.create();
         context.setGraphics(g_new);
         g_copy.dispose();
@@ -312,7 +346,7 @@ public class Circuit implements AttributeDefaultProvider {
         c.draw(context);
       }
     } else {
-      for (Component c : comps) {
+      for (Component c : toDraw) {
         if (!hidden.contains(c)) {
           Graphics g_new = g.create();
           context.setGraphics(g_new);
@@ -347,7 +381,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllContaining(Location pt) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.getCandidates(pt)) {
       if (comp.contains(pt))
         ret.add(comp);
     }
@@ -356,7 +390,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllContaining(Location pt, Graphics g) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.getCandidates(pt)) {
       if (comp.contains(pt, g))
         ret.add(comp);
     }
@@ -365,7 +399,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllWithin(Bounds bds) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.getCandidates(bds)) {
       if (bds.contains(comp.getBounds()))
         ret.add(comp);
     }
@@ -374,16 +408,28 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllWithin(Bounds bds, Graphics g) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : grid.getCandidates(bds)) {
       if (bds.contains(comp.getBounds(g)))
         ret.add(comp);
     }
     return ret;
   }
 
+  public Collection<Component> getAllIntersecting(Bounds bds) {
+    HashSet<Component> ret = new HashSet<>();
+    for (Component comp : grid.getCandidates(bds)) {
+      if (bds.overlaps(comp.getBounds()))
+        ret.add(comp);
+    }
+    return ret;
+  }
+
   public Collection<Wire> getWiresIntersecting(Bounds bds) {
     HashSet<Wire> ret = new HashSet<>();
-    for (Wire w: wires.getWires()) {
+    for (Component c : grid.getCandidates(bds)) {
+      if (!(c instanceof Wire))
+        continue;
+      Wire w = (Wire) c;
       Bounds b = w.getBounds();
       if (bds.overlaps(b)) // && !bds.contains(b)
         ret.add(w);
@@ -438,11 +484,6 @@ public class Circuit implements AttributeDefaultProvider {
     return clocks;
   }
 
-  private Set<Component> getComponents() {
-    return CollectionUtil.createUnmodifiableSetUnion(comps,
-        wires.getWires());
-  }
-
   public Collection<? extends Component> getComponents(Location loc) {
     return wires.points.getComponents(loc);
   }
@@ -552,6 +593,12 @@ public class Circuit implements AttributeDefaultProvider {
     return wires.points.hasConflict(comp);
   }
 
+  // Changes whenever a component or wire is added or removed or a component's
+  // ends move, so components can cache which of their ports are connected.
+  public int getConnectionVersion() {
+    return connectionVersion;
+  }
+
   public boolean isConnected(Location loc, Component ignore) {
     for (Component o : wires.points.getComponents(loc)) {
       if (o != ignore)
@@ -591,15 +638,23 @@ public class Circuit implements AttributeDefaultProvider {
       }
       c.addComponentWeakListener(null, myComponentListener);
     }
+    grid.add(c);
+    connectionVersion++;
     fireEvent(CircuitEvent.ACTION_ADD, c);
   }
 
+  // An attribute change may have resized the component or its label.
+  void mutatorAttributeChanged(Component c) {
+    grid.update(c);
+  }
+
   public void mutatorClear() {
     locker.checkForWritePermission("clear", this);
 
     Set<Component> oldComps = comps;
-    comps = new HashSet<Component>();
+    comps = new LinkedHashSet<Component>();
     wires = new CircuitWires();
+    grid = new ComponentGrid();
     clocks.clear();
     for (Component comp : oldComps) {
       if (comp.getFactory() instanceof SubcircuitFactory) {
@@ -610,6 +665,7 @@ public class Circuit implements AttributeDefaultProvider {
         vhdl.removeCircuitUsing(comp);
       }
     }
+    connectionVersion++;
     fireEvent(CircuitEvent.ACTION_CLEAR, oldComps);
   }
 
@@ -654,6 +710,8 @@ public class Circuit implements AttributeDefaultProvider {
       }
       c.removeComponentWeakListener(null, myComponentListener);
     }
+    grid.remove(c);
+    connectionVersion++;
     fireEvent(CircuitEvent.ACTION_REMOVE, c);
   }
 
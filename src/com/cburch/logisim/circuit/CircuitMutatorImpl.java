@@ -158,6 +158,7 @@ class CircuitMutatorImpl implements CircuitMutator {
       Object oldValue = attrs.getValue(a);
       log.add(CircuitChange.set(circuit, comp, attr, oldValue, newValue));
       attrs.setAttr(a, newValue);
+      circuit.mutatorAttributeChanged(comp);
     }
   }
 
@@ -202,6 +202,7 @@ public class CircuitState implements InstanceData {
   private Component parentComp; // subcircuit component containing this state
 
   private CircuitWires.State wireData;
+  private HashMap<Component, Levelizer.Slot> levels; // only for cycle-based propagation
   private HashMap<Component, Object> componentData = new HashMap<>();
   
   private static final int FASTPATH_GRID_WIDTH = 200;
@@ -508,10 +509,15 @@ public class CircuitState implements InstanceData {
     }
 
     // DEBUG: boolean finished = false, progress = false;
+    SimulationProfiler prof = base.profiler;
     try { // comp.propagate() can fail if external (or std) library is buggy
       for (Component comp : dirtyComponentsWorking) {
         // DEBUG: progress = true;
 				// DEBUG: System.out.printf("Propagating (from %s) for dirty component %s\n", this, comp);
+        if (prof != null) {
+          propagateProfiled(comp, prof);
+          continue;
+        }
         comp.propagate(this);
         // pin values also get propagated to parent state
         if (comp.getFactory() instanceof Pin && parentState != null)
@@ -544,6 +550,102 @@ public class CircuitState implements InstanceData {
     // DEBUG: System.out.printf(tab+" End of processDirtyComponents(%s)\n", this);
   }
 
+  private void propagateProfiled(Component comp, SimulationProfiler prof) {
+    long t = System.nanoTime();
+    comp.propagate(this);
+    prof.propagated(this, comp, System.nanoTime() - t);
+    // pin values also get propagated to parent state
+    if (comp.getFactory() instanceof Pin && parentState != null) {
+      t = System.nanoTime();
+      parentComp.propagate(parentState);
+      prof.propagated(parentState, parentComp, System.nanoTime() - t);
+    }
+  }
+
+  // Cycle-based counterpart of processDirtyComponents(): propagates only the
+  // dirty components with levels at or below the given level (at most once
+  // per round), leaving the others dirty for a later round.
+  private ArrayList<Component> deferred = new ArrayList<>();
+  void processDirtyComponents(int level, int round) {
+    if (!dirtyComponentsWorking.isEmpty())
+      throw new IllegalStateException("INTERNAL ERROR: dirtyComponentsWorking not empty");
+    synchronized (dirtyLock) {
+      ArrayList<Component> other = dirtyComponents;
+      dirtyComponents = dirtyComponentsWorking; // dirtyComponents is now empty
+      dirtyComponentsWorking = other; // working set is now ready to process
+      if (substatesDirty) {
+        substatesDirty = false;
+        substatesWorking = substates.toArray(substatesWorking);
+      }
+    }
+
+    SimulationProfiler prof = base.profiler;
+    try { // comp.propagate() can fail if external (or std) library is buggy
+      for (Component comp : dirtyComponentsWorking) {
+        Levelizer.Slot slot = levels == null ? null : levels.get(comp);
+        if (slot != null) {
+          if (slot.level > level) {
+            if (!slot.deferred) {
+              slot.deferred = true;
+              deferred.add(comp);
+            }
+            continue;
+          }
+          if (slot.round == round)
+            continue; // duplicate
+          slot.round = round;
+        }
+        if (prof != null) {
+          propagateProfiled(comp, prof);
+          continue;
+        }
+        comp.propagate(this);
+        // pin values also get propagated to parent state
+        if (comp.getFactory() instanceof Pin && parentState != null)
+          parentComp.propagate(parentState);
+      }
+    } finally {
+      dirtyComponentsWorking.clear();
+      if (!deferred.isEmpty()) {
+        for (Component comp : deferred)
+          levels.get(comp).deferred = false;
+        synchronized (dirtyLock) {
+          dirtyComponents.addAll(deferred);
+        }
+        deferred.clear();
+      }
+    }
+
+    for (CircuitState substate : substatesWorking) {
+      if (substate == null)
+        break;
+      substate.processDirtyComponents(level, round);
+    }
+  }
+
+  // Lowest level among dirty components here and in substates, or min if
+  // that is lower.
+  int minDirtyLevel(int min) {
+    synchronized (dirtyLock) {
+      for (Component comp : dirtyComponents) {
+        Levelizer.Slot slot = levels == null ? null : levels.get(comp);
+        int lvl = slot == null ? 0 : slot.level;
+        if (lvl < min)
+          min = lvl;
+      }
+      if (substatesDirty) {
+        substatesDirty = false;
+        substatesWorking = substates.toArray(substatesWorking);
+      }
+    }
+    for (CircuitState substate : substatesWorking) {
+      if (min == Levelizer.CONNECTOR || substate == null)
+        break;
+      min = substate.minDirtyLevel(min);
+    }
+    return min;
+  }
+
   // private ArrayList<Location> dirtyPointsWorking = new ArrayList<>();
   // private ArrayList<Value> dirtyPointValsWorking = new ArrayList<>();
   private ArrayList<Propagator.SimulatorEvent> dirtyPointsWorking = new ArrayList<>();
@@ -833,6 +935,11 @@ public class CircuitState implements InstanceData {
 
   void setWireData(CircuitWires.State data) {
     wireData = data;
+    base.structureChanged(); // new connectivity, or a new substate
+  }
+
+  void setLevels(HashMap<Component, Levelizer.Slot> levels) {
+    this.levels = levels;
   }
 
   boolean toggleClocks(int ticks) {
@@ -267,6 +267,22 @@ public class CircuitWires {
     ValuedBus[] dependentBuses; // other buses affected if this one's localDrivenValue changes
     Value pullVal; // only used if dependentBuses is empty
 
+    // Per-bit driver counts, for buses with many drivers. Null for other buses,
+    // which just combine all driven values each time one changes: below a few
+    // dozen drivers, that is cheaper than updating the counts.
+    Value.DriverCounts drivers;
+    static final int COUNTED_DRIVERS = 32;
+
+    // Word-level resolution, for buses that have threads: each run copies a
+    // contiguous range of bits from runBus[k] into this bus (see
+    // Value.combineShifted). Null if the threads don't fit this scheme, or if
+    // they are so fragmented that resolving them one at a time (which shares
+    // each thread's value among all the buses it passes through) is cheaper.
+    ValuedBus[] runBus;
+    int[] runMask, runShift;
+    Value[] runVals; // scratch space for recalculate()
+    int pullUpMask, pullDownMask, pullErrorMask;
+
     // Location[] componentPoints; // subset of wire bundle xpoints that have components at them
     // Component[][] componentsAffected; // components at each of those points
     // Value[] valAtPoint;
@@ -296,6 +312,36 @@ public class CircuitWires {
       connections = conns.toArray(new BusConnection[conns.size()]);
     }
 
+    void countDrivers() {
+      if (width <= 0)
+        return;
+      int n = 0;
+      for (BusConnection bc : connections)
+        if (!bc.isSink)
+          n++;
+      if (n < COUNTED_DRIVERS)
+        return;
+      drivers = new Value.DriverCounts(width, connections.length);
+      for (BusConnection bc : connections) {
+        if (!drivers.replace(null, bc.drivenValue)) {
+          drivers = null;
+          return;
+        }
+      }
+    }
+
+    void drive(BusConnection bc, Value val) {
+      if (drivers != null && !drivers.replace(bc.drivenValue, val))
+        drivers = null; // mismatched widths: combine values the usual way
+      bc.drivenValue = val;
+    }
+
+    Value combineDrivers() {
+      if (drivers != null)
+        return drivers.get();
+      return Value.combineLikeWidths(width, connections);
+    }
+
     // ValuedBus(ValuedBus vb) { // for cloning
     //   idx = vb.idx;
     //   componentPoints = vb.componentPoints;
@@ -329,6 +375,53 @@ public class CircuitWires {
       }
     }
 
+    void makeRuns() {
+      if (threads == null || width > 32)
+        return;
+      ArrayList<ValuedBus> srcs = new ArrayList<>();
+      ArrayList<int[]> runs = new ArrayList<>(); // { srcStart, dstStart, len }
+      int maxRuns = width;
+      for (int i = 0; i < width; i++) {
+        ValuedThread t = threads[i];
+        for (int j = 0; j < t.steps; j++) {
+          ValuedBus src = t.bus[j];
+          int pos = t.position[j];
+          if (src.width > 0 && pos >= src.width)
+            return; // out of range bits are errors, not handled by runs
+          boolean extended = false;
+          for (int k = runs.size() - 1; k >= 0 && !extended; k--) {
+            int[] r = runs.get(k);
+            if (srcs.get(k) == src && r[0] + r[2] == pos && r[1] + r[2] == i) {
+              r[2]++;
+              extended = true;
+            }
+          }
+          if (!extended) {
+            if (runs.size() == maxRuns)
+              return;
+            srcs.add(src);
+            runs.add(new int[] { pos, i, 1 });
+          }
+        }
+        if (t.pullUp)
+          pullUpMask |= 1 << i;
+        else if (t.pullDown)
+          pullDownMask |= 1 << i;
+        else if (t.pullError)
+          pullErrorMask |= 1 << i;
+      }
+      int n = runs.size();
+      runBus = srcs.toArray(new ValuedBus[n]);
+      runMask = new int[n];
+      runShift = new int[n];
+      runVals = new Value[n];
+      for (int k = 0; k < n; k++) {
+        int[] r = runs.get(k);
+        runMask[k] = (r[2] == 32 ? -1 : ~(-1 << r[2])) << r[0];
+        runShift[k] = r[1] - r[0];
+      }
+    }
+
     // void makeThreads(ValuedThread[] oldThreads, HashMap<ValuedBus, ValuedBus> xBus,
     //     HashMap<ValuedThread, ValuedThread> xThread) { // for cloning
     //   if (width <= 0)
@@ -357,6 +450,14 @@ public class CircuitWires {
           busVal = busVal.pullEachBitTowards(pullVal);
         dirty = false;
         return busVal;
+      } else if (runBus != null) {
+        int n = runBus.length;
+        for (int k = 0; k < n; k++)
+          runVals[k] = runBus[k].localDrivenValue;
+        busVal = Value.combineShifted(width, runVals, runMask, runShift,
+            pullUpMask, pullDownMask, pullErrorMask);
+        dirty = false;
+        return busVal;
       } else if (width == 1) {
         busVal = threads[0].threadValue();
         dirty = false;
@@ -438,6 +539,8 @@ public class CircuitWires {
             if (!bc.isSink)
               bc.drivenValue = prev.getDrivenValue(bc.component, bc.location);
       }
+      for (ValuedBus vb : buses)
+        vb.countDrivers();
       // compute bus dependencies
       for (ValuedBus vb : buses) {
         if (vb.width <= 0)
@@ -453,6 +556,7 @@ public class CircuitWires {
                 deps.add(dep);
           int n = deps.size();
           vb.dependentBuses = deps.toArray(new ValuedBus[n]);
+          vb.makeRuns();
         }
       }
       // mark all dirty: recomputes values and triggers component propagation
@@ -496,6 +600,10 @@ public class CircuitWires {
     //   }
     // }
 
+    ArrayList<Component> getComponents() { // used by Levelizer
+      return connectivity.allComponents;
+    }
+
     void markClean(ValuedBus vb) {
       if (!vb.dirty)
         throw new IllegalStateException("can't clean element that is not dirty");
@@ -892,6 +1000,12 @@ public class CircuitWires {
   }
 
   void draw(ComponentDrawContext context, Collection<Component> hidden) {
+    draw(context, hidden, wires, points.getAllLocations());
+  }
+
+  // Draws only the given wires, and junction dots only at the given locations.
+  void draw(ComponentDrawContext context, Collection<Component> hidden,
+      Collection<Wire> ws, Collection<Location> dots) {
     boolean showState = context.getShowState();
     CircuitState state = context.getCircuitState();
     Graphics2D g = (Graphics2D)context.getGraphics();
@@ -902,7 +1016,7 @@ public class CircuitWires {
     Connectivity cmap = getConnectivity();
     boolean isValid = cmap.isValid();
     if (hidden == null || hidden.size() == 0) {
-      for (Wire w : wires) {
+      for (Wire w : ws) {
         Location s = w.e0;
         Location t = w.e1;
         WireBundle wb = cmap.getBundleAt(s);
@@ -939,7 +1053,7 @@ public class CircuitWires {
         }
       }
 
-      for (Location loc : points.getAllLocations()) {
+      for (Location loc : dots) {
         if (points.getComponentCount(loc) > 2) {
           WireBundle wb = cmap.getBundleAt(loc);
           if (wb != null) {
@@ -965,7 +1079,7 @@ public class CircuitWires {
         }
       }
     } else {
-      for (Wire w : wires) {
+      for (Wire w : ws) {
         if (!hidden.contains(w)) {
           Location s = w.e0;
           Location t = w.e1;
@@ -997,7 +1111,7 @@ public class CircuitWires {
       // this is just an approximation, but it's good enough since
       // the problem is minor, and hidden only exists for a short
       // while at a time anyway.
-      for (Location loc : points.getAllLocations()) {
+      for (Location loc : dots) {
         if (points.getComponentCount(loc) > 2) {
           int icount = 0;
           for (Component comp : points.getComponents(loc)) {
@@ -1208,7 +1322,7 @@ public class CircuitWires {
             Value old = bc.drivenValue;
             if (Value.equal(old, val))
               continue;
-            bc.drivenValue = val;
+            vb.drive(bc, val);
             s.markDirty(vb);
             for (ValuedBus dep : vb.dependentBuses)
               s.markDirty(dep);
@@ -1228,20 +1342,24 @@ public class CircuitWires {
         // this bundle has inconsistent widths, or no width, hence no localDrivenValue
         vb.localDrivenValue = Value.NIL;
       } else {
-        vb.localDrivenValue = Value.combineLikeWidths(vb.width, vb.connections);
+        vb.localDrivenValue = vb.combineDrivers();
       }
     }
 
     // recompute threadVal for all threads passing through dirty buses (if not degenerate),
     // recompute aggregate busVal for all dirty buses,
     // and post those results to the circuit state
+    SimulationProfiler prof = circState.getPropagator().profiler;
     for (int i = 0; i < s.numDirty; i++) {
       ValuedBus vb = s.buses[i];
+      long t = prof == null ? 0 : System.nanoTime();
       Value old = vb.busVal;
       Value val = vb.recalculate();
-      if (Value.equal(old, val))
-        continue;
-      circState.setValueByWire(val, vb.locations, vb.connections);
+      boolean changed = !Value.equal(old, val);
+      if (changed)
+        circState.setValueByWire(val, vb.locations, vb.connections);
+      if (prof != null)
+        prof.busResolved(circState, vb, changed, System.nanoTime() - t);
       // int n = vb.componentPoints.length;
       // for (int j = 0; j < n; j++) {
       //   Location p = vb.componentPoints[j];
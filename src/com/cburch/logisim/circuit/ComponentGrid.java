@@ -0,0 +1,206 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+
+package com.cburch.logisim.circuit;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Bounds;
+import com.cburch.logisim.data.Location;
+
+// A uniform grid over the bounds of every component and wire in a circuit, so
+// hit-testing and painting only need to look at the components near a point
+// or clip rectangle. Each component is indexed by its bounds including any
+// label, grown by some slack, since labels are measured here with a scratch
+// Graphics rather than the one that will eventually draw them. Queries return
+// candidates only; callers still do their own exact tests. Candidates for a
+// rectangle come back in the order the components were added, which is the
+// order Circuit paints in, so overlapping components stack the same way no
+// matter which part of the canvas is repainted. Components may be invalidated
+// from the simulation thread while the canvas paints, so every method locks
+// the grid and queries return copies rather than views of the index.
+class ComponentGrid {
+  private static final int SHIFT = 7; // 128 x 128 pixel cells
+  private static final int SLACK = 10;
+  // components spanning more cells than this are checked by every query
+  private static final int MAX_CELLS = 64;
+
+  private static class Entry {
+    final long seq; // insertion order
+    final Bounds raw; // getBounds() when the component was indexed
+    final int x0, y0, x1, y1; // cell range, inclusive; unused if oversized
+    final boolean oversized;
+
+    Entry(long seq, Bounds raw, int x0, int y0, int x1, int y1, boolean oversized) {
+      this.seq = seq;
+      this.raw = raw;
+      this.x0 = x0;
+      this.y0 = y0;
+      this.x1 = x1;
+      this.y1 = y1;
+      this.oversized = oversized;
+    }
+  }
+
+  private HashMap<Long, ArrayList<Component>> cells = new HashMap<>();
+  private LinkedHashMap<Component, Entry> entries = new LinkedHashMap<>();
+  private HashSet<Component> oversized = new HashSet<>();
+  private Graphics scratch;
+  private long nextSeq;
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xffffffffL);
+  }
+
+  synchronized void add(Component c) {
+    if (!entries.containsKey(c))
+      add(c, nextSeq++);
+  }
+
+  private void add(Component c, long seq) {
+    Bounds raw = c.getBounds();
+    Bounds bds;
+    if (c instanceof Wire) {
+      bds = raw;
+    } else {
+      if (scratch == null)
+        scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+      bds = c.getBounds(scratch);
+    }
+    if (bds.isEmpty())
+      bds = Bounds.create(c.getLocation());
+    bds = bds.expand(SLACK + Math.max(bds.getWidth(), bds.getHeight()) / 8);
+    int x0 = bds.getX() >> SHIFT;
+    int y0 = bds.getY() >> SHIFT;
+    int x1 = (bds.getX() + bds.getWidth()) >> SHIFT;
+    int y1 = (bds.getY() + bds.getHeight()) >> SHIFT;
+    boolean big = (long) (x1 - x0 + 1) * (y1 - y0 + 1) > MAX_CELLS;
+    entries.put(c, new Entry(seq, raw, x0, y0, x1, y1, big));
+    if (big) {
+      oversized.add(c);
+      return;
+    }
+    for (int cx = x0; cx <= x1; cx++) {
+      for (int cy = y0; cy <= y1; cy++) {
+        ArrayList<Component> cell = cells.get(key(cx, cy));
+        if (cell == null) {
+          cell = new ArrayList<>(4);
+          cells.put(key(cx, cy), cell);
+        }
+        cell.add(c);
+      }
+    }
+  }
+
+  synchronized void remove(Component c) {
+    Entry e = entries.remove(c);
+    if (e != null)
+      unindex(c, e);
+  }
+
+  private void unindex(Component c, Entry e) {
+    if (e.oversized) {
+      oversized.remove(c);
+      return;
+    }
+    for (int cx = e.x0; cx <= e.x1; cx++) {
+      for (int cy = e.y0; cy <= e.y1; cy++) {
+        Long k = key(cx, cy);
+        ArrayList<Component> cell = cells.get(k);
+        if (cell != null && cell.remove(c) && cell.isEmpty())
+          cells.remove(k);
+      }
+    }
+  }
+
+  // Re-measures a component, e.g. after an attribute or label change.
+  // The entry is replaced in place, so the component keeps its position.
+  synchronized void update(Component c) {
+    Entry e = entries.get(c);
+    if (e != null) {
+      unindex(c, e);
+      add(c, e.seq);
+    }
+  }
+
+  // Cheap check for invalidation events, which also fire on every state
+  // change during simulation: only re-measures if getBounds() has changed.
+  synchronized void updateIfMoved(Component c) {
+    Entry e = entries.get(c);
+    if (e != null && !e.raw.equals(c.getBounds()))
+      update(c);
+  }
+
+  synchronized Collection<Component> getCandidates(Location pt) {
+    ArrayList<Component> cell = cells.get(key(pt.getX() >> SHIFT, pt.getY() >> SHIFT));
+    if (cell == null && oversized.isEmpty())
+      return Collections.<Component>emptyList();
+    ArrayList<Component> ret = new ArrayList<>(oversized);
+    if (cell != null)
+      ret.addAll(cell);
+    return inOrder(ret);
+  }
+
+  synchronized Collection<Component> getCandidates(Bounds bds) {
+    int x0 = bds.getX() >> SHIFT;
+    int y0 = bds.getY() >> SHIFT;
+    int x1 = (bds.getX() + bds.getWidth()) >> SHIFT;
+    int y1 = (bds.getY() + bds.getHeight()) >> SHIFT;
+    if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) > entries.size())
+      return new ArrayList<>(entries.keySet());
+    HashSet<Component> found = new HashSet<>(oversized);
+    for (int cx = x0; cx <= x1; cx++) {
+      for (int cy = y0; cy <= y1; cy++) {
+        ArrayList<Component> cell = cells.get(key(cx, cy));
+        if (cell != null)
+          found.addAll(cell);
+      }
+    }
+    return inOrder(new ArrayList<>(found));
+  }
+
+  private ArrayList<Component> inOrder(ArrayList<Component> comps) {
+    comps.sort((a, b) -> Long.compare(entries.get(a).seq, entries.get(b).seq));
+    return comps;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+}
@@ -0,0 +1,288 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+import static com.cburch.logisim.circuit.Strings.S;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.hdl.VhdlEntity;
+import com.cburch.logisim.std.io.Video;
+import com.cburch.logisim.std.wiring.Clock;
+import com.cburch.logisim.std.wiring.Pin;
+
+// Levelizer decides whether a (fully simulated) hierarchy of CircuitStates is a
+// fully synchronous design, and if so assigns every component a level for the
+// Propagator's cycle-based mode. A design qualifies when it has exactly one
+// Clock, the Clock drives only edge-triggered components (and displays)
+// through wires and subcircuit pins, and the remaining logic has no
+// combinational loops and no bidirectional ports.
+//
+// Levels are longest-path depths in the flattened component graph, where
+// edge-triggered components count as sources: their outputs only change at a
+// clock edge, so edges into them are ignored. Subcircuit components and the
+// pins inside subcircuits just carry values between states, so they have no
+// depth of their own and get level CONNECTOR, which the propagator always
+// handles first. With those levels, the propagator can deliver a clock edge to
+// every edge-triggered component before any of their outputs change, then
+// evaluate each combinational component once, after all its inputs settle.
+class Levelizer {
+  static final int CONNECTOR = -1;
+
+  static class Slot {
+    final int level;
+    int round = -1; // last round in which the component was propagated
+    boolean deferred; // already set aside for a later round
+
+    Slot(int level) {
+      this.level = level;
+    }
+  }
+
+  private static class NotSynchronous extends Exception {
+    private static final long serialVersionUID = 1L;
+    NotSynchronous(String msg) { super(msg); }
+  }
+
+  private static final int COMB = 0, SEQ = 1, CLOCK = 2, LINK = 3;
+
+  private static class Node {
+    final Component comp;
+    final int kind;
+    final ArrayList<Node> succ = new ArrayList<>(2);
+    int preds, depth;
+
+    Node(Component comp, int kind) {
+      this.comp = comp;
+      this.kind = kind;
+    }
+  }
+
+  private final HashMap<CircuitState, HashMap<Component, Node>> nodes = new HashMap<>();
+  private final ArrayList<Node> all = new ArrayList<>();
+  private final ArrayList<Node> clocks = new ArrayList<>();
+
+  // Installs levels in every state and returns null if the design qualifies,
+  // otherwise clears any levels and returns the reason it does not.
+  static String levelize(CircuitState root) {
+    Levelizer lv = new Levelizer();
+    try {
+      lv.addNodes(root);
+      for (CircuitState state : lv.nodes.keySet())
+        lv.addEdges(state);
+      if (lv.clocks.size() != 1)
+        throw new NotSynchronous(S.fmt("cycleClockCount", lv.clocks.size()));
+      lv.checkClock(lv.clocks.get(0));
+      lv.computeDepths();
+    } catch (NotSynchronous e) {
+      for (CircuitState state : lv.nodes.keySet())
+        state.setLevels(null);
+      return e.getMessage();
+    }
+    for (Map.Entry<CircuitState, HashMap<Component, Node>> e : lv.nodes.entrySet()) {
+      HashMap<Component, Slot> levels = new HashMap<>();
+      for (Node n : e.getValue().values())
+        levels.put(n.comp, new Slot(n.kind == LINK ? CONNECTOR : n.depth));
+      e.getKey().setLevels(levels);
+    }
+    return null;
+  }
+
+  private void addNodes(CircuitState state) throws NotSynchronous {
+    CircuitWires.State wires = state.getWireData();
+    if (wires == null)
+      throw new NotSynchronous(S.fmt("cycleNotSimulated", state.getCircuit().getName()));
+    HashMap<Component, Node> map = new HashMap<>();
+    nodes.put(state, map);
+    for (Component comp : wires.getComponents()) {
+      ComponentFactory f = comp.getFactory();
+      int kind;
+      if (f instanceof SubcircuitFactory) {
+        Object sub = state.getData(comp);
+        if (!(sub instanceof CircuitState))
+          throw new NotSynchronous(S.fmt("cycleNotSimulated", comp.getDisplayName()));
+        addNodes((CircuitState)sub);
+        kind = LINK;
+      } else if (f instanceof Pin && state.isSubstate()) {
+        kind = LINK;
+      } else if (f instanceof VhdlEntity) {
+        throw new NotSynchronous(S.fmt("cycleUnsupported", comp.getDisplayName()));
+      } else if (f instanceof Clock) {
+        kind = CLOCK;
+      } else {
+        kind = isEdgeTriggered(comp) ? SEQ : COMB;
+      }
+      if (kind != LINK) {
+        for (EndData e : comp.getEnds())
+          if (e.getType() == EndData.INPUT_OUTPUT)
+            throw new NotSynchronous(S.fmt("cycleBidirectional", comp.getDisplayName()));
+      }
+      Node n = new Node(comp, kind);
+      map.put(comp, n);
+      all.add(n);
+      if (kind == CLOCK)
+        clocks.add(n);
+    }
+  }
+
+  private static boolean isEdgeTriggered(Component comp) throws NotSynchronous {
+    if (comp.getFactory() instanceof Video)
+      return true; // clocked, but without a trigger attribute
+    AttributeSet attrs = comp.getAttributeSet();
+    Object trigger = null;
+    if (attrs.containsAttribute(StdAttr.EDGE_TRIGGER))
+      trigger = attrs.getValue(StdAttr.EDGE_TRIGGER);
+    else if (attrs.containsAttribute(StdAttr.TRIGGER))
+      trigger = attrs.getValue(StdAttr.TRIGGER);
+    if (trigger == null)
+      return false;
+    if (trigger == StdAttr.TRIG_HIGH || trigger == StdAttr.TRIG_LOW)
+      throw new NotSynchronous(S.fmt("cycleLatch", comp.getDisplayName()));
+    return true;
+  }
+
+  private void addEdges(CircuitState state) {
+    HashMap<Component, Node> map = nodes.get(state);
+    ArrayList<Node> sinks = new ArrayList<>();
+    for (CircuitWires.ValuedBus vb : state.getWireData().buses) {
+      sinks.clear();
+      addSinks(state, map, vb, sinks);
+      if (vb.dependentBuses != null)
+        for (CircuitWires.ValuedBus dep : vb.dependentBuses)
+          addSinks(state, map, dep, sinks);
+      for (CircuitWires.BusConnection bc : vb.connections) {
+        EndData e = bc.component.getEnd(bc.location);
+        if (e == null || !e.isOutput())
+          continue;
+        Node src = portNode(state, map, bc);
+        for (Node dst : sinks)
+          if (dst != src)
+            addEdge(src, dst);
+      }
+    }
+  }
+
+  private void addSinks(CircuitState state, HashMap<Component, Node> map,
+      CircuitWires.ValuedBus vb, ArrayList<Node> sinks) {
+    for (CircuitWires.BusConnection bc : vb.connections) {
+      EndData e = bc.component.getEnd(bc.location);
+      if (e != null && e.isInput())
+        sinks.add(portNode(state, map, bc));
+    }
+  }
+
+  // A subcircuit component's ports connect straight to the corresponding pins
+  // inside the subcircuit, so the clock can reach one port without appearing
+  // to reach the others.
+  private Node portNode(CircuitState state, HashMap<Component, Node> map,
+      CircuitWires.BusConnection bc) {
+    Component comp = bc.component;
+    if (!(comp.getFactory() instanceof SubcircuitFactory))
+      return map.get(comp);
+    List<EndData> ends = comp.getEnds();
+    Instance[] pins = ((CircuitAttributes)comp.getAttributeSet()).getPinInstances();
+    for (int i = 0; i < ends.size() && i < pins.length; i++) {
+      if (ends.get(i).getLocation().equals(bc.location)) {
+        CircuitState sub = (CircuitState)state.getData(comp);
+        Node n = nodes.get(sub).get(pins[i].getComponent());
+        if (n != null)
+          return n;
+      }
+    }
+    return map.get(comp);
+  }
+
+  private static void addEdge(Node src, Node dst) {
+    if (src == null || dst == null)
+      return;
+    src.succ.add(dst);
+    if (dst.kind != SEQ)
+      dst.preds++;
+  }
+
+  // The clock may pass through subcircuits, but must not feed any logic
+  // other than edge-triggered components and pure sinks like LEDs.
+  private void checkClock(Node clock) throws NotSynchronous {
+    ArrayDeque<Node> todo = new ArrayDeque<>();
+    HashMap<Node, Boolean> seen = new HashMap<>();
+    todo.add(clock);
+    while (!todo.isEmpty()) {
+      Node n = todo.remove();
+      for (Node s : n.succ) {
+        if (seen.put(s, Boolean.TRUE) != null)
+          continue;
+        if (s.kind == LINK) {
+          todo.add(s);
+        } else if (s.kind != SEQ) {
+          for (EndData e : s.comp.getEnds())
+            if (e.isOutput())
+              throw new NotSynchronous(S.fmt("cycleClockLogic", s.comp.getDisplayName()));
+        }
+      }
+    }
+  }
+
+  private void computeDepths() throws NotSynchronous {
+    ArrayDeque<Node> ready = new ArrayDeque<>();
+    for (Node n : all)
+      if (n.preds == 0)
+        ready.add(n);
+    int done = 0;
+    while (!ready.isEmpty()) {
+      Node n = ready.remove();
+      done++;
+      int d = n.depth + (n.kind == LINK ? 0 : 1);
+      for (Node s : n.succ) {
+        if (s.kind == SEQ)
+          continue;
+        if (s.depth < d)
+          s.depth = d;
+        if (--s.preds == 0)
+          ready.add(s);
+      }
+    }
+    if (done < all.size()) {
+      for (Node n : all)
+        if (n.preds > 0 && n.kind != LINK)
+          throw new NotSynchronous(S.fmt("cycleLoop", n.comp.getDisplayName()));
+      throw new NotSynchronous(S.fmt("cycleLoop", "?"));
+    }
+  }
+}
@@ -41,6 +41,7 @@ import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
+import com.cburch.logisim.std.memory.MemContents;
 
 public class Propagator {
   // static class ComponentPoint {
@@ -219,6 +220,22 @@ public class Propagator {
 
   private int eventSerialNumber = 0;
 
+  // Cycle-based propagation, for fully synchronous designs. Once requested, the
+  // design is checked (and levelized) after each propagation that follows a
+  // change in its structure, and the event-driven mode is used until then, or
+  // for as long as the design does not qualify.
+  private boolean cycleRequested;
+  private volatile boolean levelsCurrent;
+  private String cycleFallback; // why the design does not qualify, if not
+  private boolean cycling; // within propagateCycles()
+  private int round;
+  // Optional accounting of simulation work, null unless profiling.
+  volatile SimulationProfiler profiler;
+  // Always-on totals, see SimulationMetrics.
+  private final SimulationMetrics metrics = new SimulationMetrics();
+  private static final int TIMING_SAMPLE = 16; // must be a power of 2
+  private int dirtyPasses;
+
   static int lastId = 0;
   int id = lastId++;
 
@@ -301,9 +318,31 @@ public class Propagator {
   }
 
   public boolean propagate(Simulator.ProgressListener propListener, Simulator.Event propEvent) { // Safe to call from sim thread
+    // Memory writes are reported to hex editors and the like once, as
+    // address ranges, after the whole step rather than word by word.
+    MemContents.beginBatch();
+    try {
+      return propagateBatched(propListener, propEvent);
+    } finally {
+      MemContents.endBatch();
+      metrics.publish(simLimit);
+    }
+  }
+
+  private boolean propagateBatched(Simulator.ProgressListener propListener, Simulator.Event propEvent) {
+    if (cycleRequested && levelsCurrent && cycleFallback == null)
+      return propagateCycles(propListener, propEvent);
+    boolean ret = propagateEvents(propListener, propEvent);
+    if (cycleRequested && !levelsCurrent && !isOscillating) {
+      levelsCurrent = true;
+      cycleFallback = Levelizer.levelize(root);
+    }
+    return ret;
+  }
+
+  private boolean propagateEvents(Simulator.ProgressListener propListener, Simulator.Event propEvent) {
     oscPoints.clear();
-    root.processDirtyPoints();
-    root.processDirtyComponents();
+    processDirty();
 
     int oscThreshold = simLimit;
     int logThreshold = 3 * oscThreshold / 4;
@@ -321,15 +360,105 @@ public class Propagator {
       } else {
         isOscillating = true;
         oscAdding = false;
+        metrics.oscillations++;
+        metrics.iterated(iters);
         return true;
       }
     }
     isOscillating = false;
     oscAdding = false;
     oscPoints.clear();
+    metrics.iterated(iters);
     return iters > 0;
   }
 
+  // Each round applies every pending value, then propagates the dirty
+  // components at the lowest level present. Connectors come first, so clock
+  // edges and other values reach every state before any component at a
+  // higher level runs, and a combinational component runs only once all of
+  // the components driving it are done.
+  private boolean propagateCycles(Simulator.ProgressListener propListener, Simulator.Event propEvent) {
+    oscPoints.clear();
+    int oscThreshold = simLimit;
+    int logThreshold = 3 * oscThreshold / 4;
+    int iters = 0;
+    cycling = true;
+    try {
+      while (true) {
+        metrics.events += toProcess.size();
+        while (!toProcess.isEmpty()) {
+          SimulatorEvent ev = toProcess.remove();
+          clock = ev.time;
+          if (oscAdding)
+            oscPoints.add(ev.state, ev.loc);
+          ev.state.markPointAsDirty(ev);
+        }
+        boolean timed = (++dirtyPasses & (TIMING_SAMPLE - 1)) == 0;
+        long t0 = timed ? System.nanoTime() : 0;
+        root.processDirtyPoints();
+        long t1 = timed ? System.nanoTime() : 0;
+        if (timed)
+          metrics.pointsNanos += (t1 - t0) * TIMING_SAMPLE;
+        int level = root.minDirtyLevel(Integer.MAX_VALUE);
+        if (level == Integer.MAX_VALUE)
+          break;
+        if (iters > 0 && propListener != null)
+          propListener.propagationInProgress(propEvent);
+        iters++;
+        if (iters >= oscThreshold) {
+          isOscillating = true;
+          oscAdding = false;
+          metrics.oscillations++;
+          metrics.iterated(iters);
+          return true;
+        }
+        oscAdding = iters >= logThreshold;
+        root.processDirtyComponents(level, ++round);
+        if (timed)
+          metrics.componentsNanos += (System.nanoTime() - t1) * TIMING_SAMPLE;
+      }
+    } finally {
+      cycling = false;
+    }
+    isOscillating = false;
+    oscAdding = false;
+    oscPoints.clear();
+    metrics.iterated(iters);
+    return iters > 0;
+  }
+
+  public void setCycleMode(boolean enable) {
+    cycleRequested = enable;
+    levelsCurrent = false;
+  }
+
+  public boolean isCycleMode() {
+    return cycleRequested && levelsCurrent && cycleFallback == null;
+  }
+
+  // Reason the design can't be simulated by cycles, or null if it can (or
+  // has not yet been checked).
+  public String getCycleFallback() {
+    return cycleFallback;
+  }
+
+  // Attaches a profiler, or detaches it if null.
+  public void setProfiler(SimulationProfiler value) {
+    profiler = value;
+  }
+
+  public SimulationProfiler getProfiler() {
+    return profiler;
+  }
+
+  public SimulationMetrics getMetrics() {
+    return metrics;
+  }
+
+  void structureChanged() {
+    levelsCurrent = false;
+  }
+
   // // precondition: state.valuesLock held
   // private static DrivenValue removeCause(CircuitState state, DrivenValue head, 
   //     Location loc, Component cause) {
@@ -367,6 +496,16 @@ public class Propagator {
   void setValue(CircuitState state, Location pt, Value val, Component cause, int delay) {
     if (cause instanceof Wire || cause instanceof Splitter)
       return;
+    SimulationProfiler prof = profiler;
+    if (prof != null)
+      prof.scheduled(state, cause);
+    if (cycling) {
+      // delays don't matter: ordering comes from levels instead
+      toProcess.add(new SimulatorEvent(clock + 1, eventSerialNumber++, state, pt, cause, val));
+      if (toProcess.size() > metrics.queueHighWater)
+        metrics.queueHighWater = toProcess.size();
+      return;
+    }
     if (delay <= 0) {
       delay = 1;
     }
@@ -385,6 +524,8 @@ public class Propagator {
       }
     }
     toProcess.add(new SimulatorEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
+    if (toProcess.size() > metrics.queueHighWater)
+      metrics.queueHighWater = toProcess.size();
 
     // DEBUG: System.out.printf("%s: set %s in %s to %s by %s after %s\n",
     // DEBUG:     clock, pt, state, val, cause, delay);
@@ -395,11 +536,12 @@ public class Propagator {
 
   boolean step(PropagationPoints changedPoints) { // Safe to call from sim thread
     oscPoints.clear();
-    root.processDirtyPoints();
-    root.processDirtyComponents();
+    processDirty();
 
-    if (toProcess.isEmpty())
+    if (toProcess.isEmpty()) {
+      metrics.publish(simLimit);
       return false;
+    }
 
     PropagationPoints oldOsc = oscPoints;
     oscAdding = changedPoints != null;
@@ -407,9 +549,26 @@ public class Propagator {
     stepInternal(changedPoints);
     oscAdding = false;
     oscPoints = oldOsc;
+    metrics.publish(simLimit);
     return true;
   }
 
+  // Reading the clock for every pass would cost more than many passes do, so
+  // only one pass in TIMING_SAMPLE is timed, and counted for all of them.
+  private void processDirty() {
+    if ((++dirtyPasses & (TIMING_SAMPLE - 1)) != 0) {
+      root.processDirtyPoints();
+      root.processDirtyComponents();
+      return;
+    }
+    long t0 = System.nanoTime();
+    root.processDirtyPoints();
+    long t1 = System.nanoTime();
+    root.processDirtyComponents();
+    metrics.pointsNanos += (t1 - t0) * TIMING_SAMPLE;
+    metrics.componentsNanos += (System.nanoTime() - t1) * TIMING_SAMPLE;
+  }
+
   // private int visitedNonce = 1;
   private void stepInternal(PropagationPoints changedPoints) { // Safe to call from sim thread
 		// DEBUG: System.out.println("== Step Internal ==");
@@ -424,11 +583,13 @@ public class Propagator {
     // visitedNonce++; // used to ensure a fresh circuitState.visited set.
 
     // propagate all values for this clock tick
+    int n = 0;
     while (true) {
       SimulatorEvent ev = toProcess.peek();
       if (ev == null || ev.time != clock)
         break;
       toProcess.remove();
+      n++;
       CircuitState state = ev.state;
 
       // // if it's already handled for this clock tick, continue
@@ -460,19 +621,18 @@ public class Propagator {
         state.markPointAsDirty(ev); // ev.loc, ev.cause, ev.val);
       // }
     }
+    metrics.events += n;
 
 		// DEBUG: System.out.println("-- process dirty points --");
 		// DEBUG: root.dump("for %s before processDirtyPoints", this);
-    root.processDirtyPoints();
-		// DEBUG: root.dump("for %s after processDirtyPoints, before processDirtyComponents", this);
-		// DEBUG: System.out.println("-- process dirty components --");
-    root.processDirtyComponents();
+    processDirty();
 		// DEBUG: root.dump("for %s after processDirtyComponents", this);
 		// DEBUG: System.out.println("-- Done --");
   }
 
   public boolean toggleClocks() {
     halfClockCycles++;
+    metrics.ticked();
     return root.toggleClocks(halfClockCycles);
   }
 
@@ -0,0 +1,180 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+package com.cburch.logisim.circuit;
+
+// SimulationMetrics keeps running totals of the work done by a Propagator,
+// cheap enough to be always on: event queue traffic, propagation iterations
+// (which, past the simulation limit, count as an oscillation), time spent
+// applying dirty points versus propagating dirty components, and the tick
+// rate actually achieved.
+//
+// The simulator thread counts into plain fields, then publishes an immutable
+// Snapshot at the end of each propagate() or step(). Any thread can read the
+// latest snapshot without locking.
+public class SimulationMetrics {
+
+  public static class Snapshot {
+    private long propagations, events, iterations, oscillations, ticks;
+    private int queueHighWater, lastIterations, maxIterations, iterationLimit;
+    private long pointsNanos, componentsNanos;
+    private double tickRate, requestedTickRate;
+    private long lastTickNanos;
+
+    Snapshot() { }
+
+    public long getPropagations() { return propagations; }
+    public long getEventsProcessed() { return events; }
+    public int getQueueHighWater() { return queueHighWater; }
+    // iterations of the propagation loop, see Propagator.simLimit
+    public long getIterations() { return iterations; }
+    public int getLastIterations() { return lastIterations; }
+    public int getMaxIterations() { return maxIterations; }
+    public int getIterationLimit() { return iterationLimit; }
+    public long getOscillations() { return oscillations; }
+    public long getDirtyPointsNanos() { return pointsNanos; }
+    public long getDirtyComponentsNanos() { return componentsNanos; }
+    public long getHalfTicks() { return ticks; }
+
+    public double getAverageIterations() {
+      return propagations == 0 ? 0 : (double)iterations / propagations;
+    }
+
+    // Full clock cycles per second over the last measurement window, or 0 if
+    // the clocks have not been toggled for a while.
+    public double getTickRate() {
+      if (System.nanoTime() - lastTickNanos > 2 * WINDOW_NANOS)
+        return 0;
+      return tickRate;
+    }
+
+    // The auto-tick frequency asked for, or 0 if not auto-ticking (or not
+    // known, e.g. for a Propagator driven directly by -tty).
+    public double getRequestedTickRate() { return requestedTickRate; }
+
+    Snapshot withRequestedTickRate(double freq) {
+      Snapshot s = copy();
+      s.requestedTickRate = freq;
+      return s;
+    }
+
+    private Snapshot copy() {
+      Snapshot s = new Snapshot();
+      s.propagations = propagations;
+      s.events = events;
+      s.iterations = iterations;
+      s.oscillations = oscillations;
+      s.ticks = ticks;
+      s.queueHighWater = queueHighWater;
+      s.lastIterations = lastIterations;
+      s.maxIterations = maxIterations;
+      s.iterationLimit = iterationLimit;
+      s.pointsNanos = pointsNanos;
+      s.componentsNanos = componentsNanos;
+      s.tickRate = tickRate;
+      s.requestedTickRate = requestedTickRate;
+      s.lastTickNanos = lastTickNanos;
+      return s;
+    }
+  }
+
+  private static final long WINDOW_NANOS = 500000000L;
+
+  // Written only by the simulator thread.
+  long propagations, events, iterations, oscillations, ticks;
+  int queueHighWater, lastIterations, maxIterations;
+  long pointsNanos, componentsNanos;
+  private long windowStart = System.nanoTime(), windowTicks;
+  private long lastTicks, lastTickNanos;
+  private double tickRate;
+
+  private volatile Snapshot published = new Snapshot();
+  private volatile boolean resetRequested;
+
+  // Latest published values, safe to call from any thread.
+  public Snapshot snapshot() {
+    return published;
+  }
+
+  // Clears the totals. Safe to call from any thread: the simulator thread
+  // does the clearing the next time it publishes.
+  public void reset() {
+    resetRequested = true;
+    published = new Snapshot();
+  }
+
+  void ticked() {
+    ticks++;
+  }
+
+  void iterated(int iters) {
+    propagations++;
+    iterations += iters;
+    lastIterations = iters;
+    if (iters > maxIterations)
+      maxIterations = iters;
+  }
+
+  void publish(int iterationLimit) {
+    if (resetRequested) {
+      resetRequested = false;
+      propagations = events = iterations = oscillations = ticks = 0;
+      queueHighWater = lastIterations = maxIterations = 0;
+      pointsNanos = componentsNanos = 0;
+      windowStart = System.nanoTime();
+      windowTicks = lastTicks = 0;
+      tickRate = 0;
+    }
+    long now = System.nanoTime();
+    if (ticks != lastTicks) {
+      lastTicks = ticks;
+      lastTickNanos = now;
+    }
+    if (now - windowStart >= WINDOW_NANOS) {
+      tickRate = (ticks - windowTicks) / 2.0 * 1e9 / (now - windowStart);
+      windowStart = now;
+      windowTicks = ticks;
+    }
+    Snapshot s = new Snapshot();
+    s.propagations = propagations;
+    s.events = events;
+    s.iterations = iterations;
+    s.oscillations = oscillations;
+    s.ticks = ticks;
+    s.queueHighWater = queueHighWater;
+    s.lastIterations = lastIterations;
+    s.maxIterations = maxIterations;
+    s.iterationLimit = iterationLimit;
+    s.pointsNanos = pointsNanos;
+    s.componentsNanos = componentsNanos;
+    s.tickRate = tickRate;
+    s.lastTickNanos = lastTickNanos;
+    published = s;
+  }
+}
@@ -0,0 +1,244 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+package com.cburch.logisim.circuit;
+import static com.cburch.logisim.circuit.Strings.S;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Location;
+
+// SimulationProfiler counts the work done by a Propagator: calls to
+// Component.propagate() and the time they take, events scheduled, and bus
+// resolutions. It is attached only on request (see
+// Propagator.setProfiler()); when it is not, the simulator pays for nothing
+// but a null check.
+//
+// Counts are kept per CircuitState (i.e., per subcircuit instance) and per
+// component factory within it, so the same data can be summed by factory or
+// by instance, or written as collapsed stacks for flame graph tools. Bus
+// counts are kept per bus. The simulator thread records, any thread reads.
+public class SimulationProfiler {
+
+  public static class Entry {
+    private final String name;
+    long propagations, events, nanos;
+
+    Entry(String name) {
+      this.name = name;
+    }
+
+    public String getName() { return name; }
+    public long getPropagations() { return propagations; }
+    public long getEvents() { return events; }
+    public long getNanos() { return nanos; }
+
+    void add(Entry e) {
+      propagations += e.propagations;
+      events += e.events;
+      nanos += e.nanos;
+    }
+  }
+
+  private static class StateProfile {
+    CircuitState state;
+    HashMap<Object, Entry> byFactory = new HashMap<>(); // factory or WIRES
+  }
+
+  private static class BusProfile {
+    CircuitState state;
+    CircuitWires.ValuedBus bus;
+    Entry counts = new Entry(null);
+  }
+
+  // pseudo-factories for time spent outside of components
+  private static final Object WIRES = new Object();
+
+  private IdentityHashMap<CircuitState, StateProfile> states = new IdentityHashMap<>();
+  private IdentityHashMap<CircuitWires.ValuedBus, BusProfile> buses = new IdentityHashMap<>();
+  private StateProfile last; // cache, most calls are for the same state as the previous one
+
+  private StateProfile profileFor(CircuitState state) {
+    StateProfile p = last;
+    if (p != null && p.state == state)
+      return p;
+    p = states.get(state);
+    if (p == null) {
+      p = new StateProfile();
+      p.state = state;
+      states.put(state, p);
+    }
+    last = p;
+    return p;
+  }
+
+  private Entry entryFor(CircuitState state, Object factory) {
+    StateProfile p = profileFor(state);
+    Entry e = p.byFactory.get(factory);
+    if (e == null) {
+      e = new Entry(null);
+      p.byFactory.put(factory, e);
+    }
+    return e;
+  }
+
+  synchronized void propagated(CircuitState state, Component comp, long nanos) {
+    Entry e = entryFor(state, comp.getFactory());
+    e.propagations++;
+    e.nanos += nanos;
+  }
+
+  synchronized void scheduled(CircuitState state, Component cause) {
+    entryFor(state, cause.getFactory()).events++;
+  }
+
+  synchronized void busResolved(CircuitState state, CircuitWires.ValuedBus vb,
+      boolean changed, long nanos) {
+    BusProfile b = buses.get(vb);
+    if (b == null) {
+      b = new BusProfile();
+      b.state = state;
+      b.bus = vb;
+      buses.put(vb, b);
+    }
+    b.counts.propagations++;
+    if (changed)
+      b.counts.events++;
+    b.counts.nanos += nanos;
+    entryFor(state, WIRES).nanos += nanos;
+  }
+
+  public synchronized void reset() {
+    states.clear();
+    buses.clear();
+    last = null;
+  }
+
+  private static String factoryName(Object factory) {
+    if (factory == WIRES)
+      return S.get("profileWires");
+    else
+      return ((ComponentFactory) factory).getDisplayName();
+  }
+
+  // Path from the root state, e.g. "main/cpu(140,60)/alu(300,220)".
+  private static String pathName(CircuitState state, String sep) {
+    String name = state.getCircuit().getName().replace(sep, "_");
+    Component comp = state.getSubcircuit();
+    if (comp == null || state.getParentState() == null)
+      return name;
+    return pathName(state.getParentState(), sep) + sep + name + comp.getLocation();
+  }
+
+  private static List<Entry> sorted(Map<String, Entry> map) {
+    ArrayList<Entry> ret = new ArrayList<>(map.values());
+    Collections.sort(ret, (a, b) -> Long.compare(b.nanos, a.nanos));
+    return ret;
+  }
+
+  // Totals per component factory, most expensive first.
+  public synchronized List<Entry> getComponentEntries() {
+    HashMap<String, Entry> ret = new HashMap<>();
+    for (StateProfile p : states.values()) {
+      for (Map.Entry<Object, Entry> fe : p.byFactory.entrySet()) {
+        String name = factoryName(fe.getKey());
+        Entry e = ret.get(name);
+        if (e == null) {
+          e = new Entry(name);
+          ret.put(name, e);
+        }
+        e.add(fe.getValue());
+      }
+    }
+    return sorted(ret);
+  }
+
+  // Totals per subcircuit instance (excluding nested instances), most
+  // expensive first.
+  public synchronized List<Entry> getSubcircuitEntries() {
+    HashMap<String, Entry> ret = new HashMap<>();
+    for (StateProfile p : states.values()) {
+      String name = pathName(p.state, "/");
+      Entry e = ret.get(name);
+      if (e == null) {
+        e = new Entry(name);
+        ret.put(name, e);
+      }
+      for (Entry fe : p.byFactory.values())
+        e.add(fe);
+    }
+    return sorted(ret);
+  }
+
+  // Resolutions (as propagations) and value changes (as events) per bus,
+  // most expensive first.
+  public synchronized List<Entry> getBusEntries() {
+    HashMap<String, Entry> ret = new HashMap<>();
+    for (BusProfile b : buses.values()) {
+      Location[] locs = b.bus.locations;
+      String name = pathName(b.state, "/") + " "
+          + (locs.length > 0 ? locs[0] : "") + " [" + b.bus.width + "]";
+      Entry e = ret.get(name);
+      if (e == null) {
+        e = new Entry(name);
+        ret.put(name, e);
+      }
+      e.add(b.counts);
+    }
+    return sorted(ret);
+  }
+
+  // Writes one line per instance and factory, in the "collapsed stack"
+  // format read by flamegraph.pl, speedscope, and similar tools: frames
+  // separated by semicolons, then the time in microseconds.
+  public synchronized void writeCollapsedStacks(PrintWriter out) {
+    ArrayList<String> lines = new ArrayList<>();
+    for (StateProfile p : states.values()) {
+      String path = pathName(p.state, ";").replace(' ', '_');
+      for (Map.Entry<Object, Entry> fe : p.byFactory.entrySet()) {
+        long micros = fe.getValue().nanos / 1000;
+        if (micros > 0)
+          lines.add(path + ";" + factoryName(fe.getKey()).replace(' ', '_')
+              .replace(';', '_') + " " + micros);
+      }
+    }
+    Collections.sort(lines);
+    for (String line : lines)
+      out.println(line);
+    out.flush();
+  }
+}
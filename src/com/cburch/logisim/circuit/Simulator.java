@@ -126,6 +126,11 @@ public class Simulator {
     // This last one should be made thread-safe, but it isn't for now.
     private PropagationPoints stepPoints = new PropagationPoints();
 
+    // Copies of the above, for reading metrics without the lock. These are
+    // written only with the lock held, by updateMetricsView().
+    private volatile Propagator metricsPropagator = null;
+    private volatile double metricsTickFreq = 0; // 0 unless auto-ticking
+
     SimThread(Simulator s) {
       super("SimThread");
       sim = s;
@@ -136,6 +141,19 @@ public class Simulator {
     synchronized boolean isAutoTicking() { return _autoTicking; }
     synchronized boolean isAutoPropagating() { return _autoPropagating; }
     synchronized double getTickFrequency() { return _autoTickFreq; }
+
+    SimulationMetrics.Snapshot getMetrics() {
+      Propagator prop = metricsPropagator;
+      if (prop == null)
+        return null;
+      return prop.getMetrics().snapshot().withRequestedTickRate(metricsTickFreq);
+    }
+
+    // precondition: lock held
+    private void updateMetricsView() {
+      metricsPropagator = _propagator;
+      metricsTickFreq = _autoTicking && _autoTickNanos > 0 ? _autoTickFreq : 0;
+    }
   
     synchronized void drawStepPoints(ComponentDrawContext context) {
       if (!_autoPropagating)
@@ -162,6 +180,7 @@ public class Simulator {
       _propagator = value;
       _manualTicksRequested = 0;
       _manualStepsRequested = 0;
+      updateMetricsView();
       if (Thread.currentThread() != this)
         notifyAll();
       return true;
@@ -184,6 +203,7 @@ public class Simulator {
       if (_autoTicking == value)
         return false;
       _autoTicking = value;
+      updateMetricsView();
       if (Thread.currentThread() != this)
         notifyAll();
       return true;
@@ -194,6 +214,7 @@ public class Simulator {
         return false;
       _autoTickFreq = freq;
       _autoTickNanos = freq <= 0 ? 0 : (long)Math.round(1e9 / (2*_autoTickFreq));
+      updateMetricsView();
       if (Thread.currentThread() != this)
         notifyAll();
       return true;
@@ -376,6 +397,7 @@ public class Simulator {
           _manualTicksRequested--;
         if (_autoTicking && !hasClocks) {
           _autoTicking = false;
+          updateMetricsView();
           clockDied = true;
         }
       }
@@ -403,6 +425,7 @@ public class Simulator {
             _oops = true;
             _autoPropagating = false;
             _autoTicking = false;
+            updateMetricsView();
             _manualTicksRequested = 0;
             _manualStepsRequested = 0;
             _nudgeRequested = false;
@@ -612,6 +635,18 @@ public class Simulator {
     return simThread.getTickFrequency();
   }
 
+  // Latest metrics for the current circuit state, or null if there is none.
+  // Safe to call from any thread, and does not wait for the simulator.
+  public SimulationMetrics.Snapshot getMetrics() {
+    return simThread.getMetrics();
+  }
+
+  public void resetMetrics() {
+    Propagator prop = simThread.getPropagator();
+    if (prop != null)
+      prop.getMetrics().reset();
+  }
+
   public boolean isExceptionEncountered() {
     return simThread.isExceptionEncountered();
   }
@@ -39,7 +39,6 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
 
 import javax.swing.filechooser.FileFilter;
 
@@ -57,72 +56,157 @@ public class TestVector {
   private class TestVectorReader {
 
     private BufferedReader in;
-    private StringTokenizer curLine;
+    private String line; // current line, without any comment
+    private int pos; // start of the next token in line
+    private boolean firstRow = true;
 
     public TestVectorReader(BufferedReader in) throws IOException {
       this.in = in;
-      curLine = findNonemptyLine();
+      findNonemptyLine();
     }
 
-    private StringTokenizer findNonemptyLine() throws IOException {
-      String line = in.readLine();
+    private void findNonemptyLine() throws IOException {
+      line = in.readLine();
 
       while (line != null) {
         int i = line.indexOf('#');
         if (i >= 0)
           line = line.substring(0, i);
-        StringTokenizer ret = new StringTokenizer(line);
-        if (ret.hasMoreTokens())
-          return ret;
+        pos = 0;
+        if (skipSpace())
+          return;
         line = in.readLine();
       }
+    }
 
-      return null;
+    // Same delimiters as the default for StringTokenizer.
+    private boolean isSpace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
     }
 
-    public void parse() throws IOException {
-      if (curLine == null)
-        throw new IOException("TestVector format error: empty file");
+    private boolean skipSpace() {
+      int n = line.length();
+      while (pos < n && isSpace(line.charAt(pos)))
+        pos++;
+      return pos < n;
+    }
 
+    private int tokenEnd() {
+      int n = line.length();
+      int e = pos;
+      while (e < n && !isSpace(line.charAt(e)))
+        e++;
+      return e;
+    }
+
+    private String nextToken() {
+      int e = tokenEnd();
+      String t = line.substring(pos, e);
+      pos = e;
+      skipSpace();
+      return t;
+    }
+
+    public void parse() throws IOException {
       parseHeader();
       data = new ArrayList<Value[]>();
-      curLine = findNonemptyLine();
+      while (line != null)
+        data.add(parseData());
+    }
 
-      while (curLine != null) {
-        parseData();
-        curLine = findNonemptyLine();
-      }
+    public ArrayList<Value[]> parseRows(int max) throws IOException {
+      if (line == null)
+        return null;
+      ArrayList<Value[]> rows = new ArrayList<>(max);
+      while (line != null && rows.size() < max)
+        rows.add(parseData());
+      return rows;
     }
 
-    private void parseData() throws IOException {
+    private Value[] parseData() throws IOException {
       Value vals[] = new Value[columnName.length];
       for (int i = 0; i < columnName.length; i++) {
-        String t = curLine.nextToken();
-
-        try {
-          vals[i] = Value.fromLogString(columnWidth[i], t);
-        } catch (Exception e) {
+        if (pos >= line.length())
           throw new IOException("Test Vector data format error: "
-              + e.getMessage());
+              + "missing value for " + columnName[i]);
+        int e = tokenEnd();
+        vals[i] = firstRow ? null : parseKnown(columnWidth[i], pos, e);
+        if (vals[i] == null) {
+          String t = line.substring(pos, e);
+          try {
+            vals[i] = Value.fromLogString(columnWidth[i], t);
+          } catch (Exception ex) {
+            throw new IOException("Test Vector data format error: "
+                + ex.getMessage());
+          }
+          if (firstRow)
+            columnRadix[i] = Value.radixOfLogString(columnWidth[i], t);
         }
-        if (data.isEmpty())
-          columnRadix[i] = Value.radixOfLogString(columnWidth[i], t);
+        pos = e;
+        skipSpace();
       }
-      if (curLine.hasMoreTokens())
+      if (pos < line.length())
         throw new IOException("Test Vector data format error: "
-            + curLine.nextToken());
-      data.add(vals);
+            + nextToken());
+      firstRow = false;
+      findNonemptyLine();
+      return vals;
+    }
+
+    // Fast path for the binary and hex tokens that make up nearly all
+    // generated vectors, parsed in place without allocating a substring.
+    // Returns null for anything else (decimal, octal, don't-cares, or
+    // errors), which Value.fromLogString then handles or reports.
+    private Value parseKnown(BitWidth width, int s, int e) {
+      int w = width.getWidth();
+      int v = 0;
+      if (e - s == w) {
+        for (int i = s; i < e; i++) {
+          char c = line.charAt(i);
+          if (c != '0' && c != '1')
+            return null;
+          v = (v << 1) | (c - '0');
+        }
+        return Value.createKnown(width, v);
+      }
+      if (e - s < 3 || e - s > 10 || line.charAt(s) != '0' || line.charAt(s + 1) != 'x')
+        return null;
+      long value = 0;
+      for (int i = s + 2; i < e; i++) {
+        char c = line.charAt(i);
+        int d;
+        if ('0' <= c && c <= '9')
+          d = c - '0';
+        else if ('a' <= c && c <= 'f')
+          d = 0xa + (c - 'a');
+        else if ('A' <= c && c <= 'F')
+          d = 0xA + (c - 'A');
+        else
+          return null;
+        value = (value << 4) | d;
+      }
+      if ((value >> w) != 0)
+        return null;
+      return Value.createKnown(width, (int) value);
     }
 
     private void parseHeader() throws IOException {
-      int n = curLine.countTokens();
+      if (line == null)
+        throw new IOException("TestVector format error: empty file");
+
+      ArrayList<String> names = new ArrayList<>();
+      while (pos < line.length())
+        names.add(nextToken());
+      findNonemptyLine();
+
+      int n = names.size();
       columnName = new String[n];
       columnWidth = new BitWidth[n];
       columnRadix = new int[n];
 
       for (int i = 0; i < n; i++) {
         columnRadix[i] = 2;
-        String t = (String) curLine.nextElement();
+        String t = names.get(i);
         int s = t.indexOf('[');
 
         if (s < 0) {
@@ -153,6 +237,10 @@ public class TestVector {
   public int[] columnRadix;
   public ArrayList<Value[]> data;
 
+  // Only for vectors opened with open(), until the last row has been read.
+  private BufferedReader in;
+  private TestVectorReader reader;
+
   public TestVector(File src) throws IOException {
     BufferedReader in = new BufferedReader(new FileReader(src));
 
@@ -168,4 +256,53 @@ public class TestVector {
     this(new File(filename));
   }
 
+  private TestVector(BufferedReader in) throws IOException {
+    this.in = in;
+    try {
+      reader = new TestVectorReader(in);
+      reader.parseHeader();
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  /**
+   * Opens a vector file for reading a few rows at a time with readRows(),
+   * for files too large to hold in memory. Only the header is read here,
+   * and data is left null.
+   */
+  public static TestVector open(File src) throws IOException {
+    return new TestVector(new BufferedReader(new FileReader(src), 1 << 16));
+  }
+
+  /**
+   * Returns up to max of the next rows from a vector made by open(), or
+   * null once all rows have been read, at which point the file is closed.
+   */
+  public ArrayList<Value[]> readRows(int max) throws IOException {
+    if (reader == null)
+      return null;
+    try {
+      ArrayList<Value[]> rows = reader.parseRows(max);
+      if (rows == null)
+        close();
+      return rows;
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  public void close() {
+    reader = null;
+    if (in == null)
+      return;
+    try {
+      in.close();
+    } catch (IOException e) {
+    }
+    in = null;
+  }
+
 }
@@ -375,6 +375,118 @@ public final class Value {
     return Value.createUnknown(width);
   }
 
+  // Incremental form of combineLikeWidths(), for buses with many drivers: it
+  // keeps per-bit counts of the drivers at 0, at 1, and at E, so a change in
+  // one driver's value costs a few word operations, however many drivers
+  // there are. Counts are bit-sliced: plane k of a count holds bit k of the
+  // count for every bus bit, so all 32 counts are incremented at once.
+  public static final class DriverCounts {
+    private final int width;
+    private final int[] zeros, ones, errors;
+
+    public DriverCounts(int width, int maxDrivers) {
+      this.width = width;
+      int planes = 32 - Integer.numberOfLeadingZeros(Math.max(maxDrivers, 1));
+      zeros = new int[planes];
+      ones = new int[planes];
+      errors = new int[planes];
+    }
+
+    // Replaces a driver's old value (null or NIL if none) with its new one,
+    // returning false (and changing nothing) if either has the wrong width.
+    public boolean replace(Value old, Value val) {
+      boolean hasOld = old != null && old != NIL;
+      boolean hasNew = val != null && val != NIL;
+      if ((hasOld && old.width != width) || (hasNew && val.width != width))
+        return false;
+      int mask = (width == 32 ? -1 : ~(-1 << width));
+      int o0 = 0, o1 = 0, oE = 0, n0 = 0, n1 = 0, nE = 0;
+      if (hasOld) {
+        o0 = ~(old.error | old.unknown | old.value) & mask;
+        o1 = old.value;
+        oE = old.error;
+      }
+      if (hasNew) {
+        n0 = ~(val.error | val.unknown | val.value) & mask;
+        n1 = val.value;
+        nE = val.error;
+      }
+      update(zeros, o0 & ~n0, n0 & ~o0);
+      update(ones, o1 & ~n1, n1 & ~o1);
+      update(errors, oE & ~nE, nE & ~oE);
+      return true;
+    }
+
+    private static void update(int[] planes, int removed, int added) {
+      for (int k = 0; removed != 0 && k < planes.length; k++) {
+        int borrow = removed & ~planes[k];
+        planes[k] ^= removed;
+        removed = borrow;
+      }
+      for (int k = 0; added != 0 && k < planes.length; k++) {
+        int carry = added & planes[k];
+        planes[k] ^= added;
+        added = carry;
+      }
+    }
+
+    private static int nonzero(int[] planes) {
+      int any = 0;
+      for (int p : planes)
+        any |= p;
+      return any;
+    }
+
+    public Value get() {
+      int any0 = nonzero(zeros), any1 = nonzero(ones), anyE = nonzero(errors);
+      return Value.create(width, anyE | (any0 & any1), ~(any0 | any1 | anyE), any1);
+    }
+  }
+
+  // Word-level counterpart of combining 1-bit thread values, for buses joined
+  // by splitters: combines the bits of vals[k] selected by mask[k], shifted
+  // into place by shift[k] (to the right, if negative), treating bits no run
+  // covers as unknown. Bits still unknown afterwards are pulled up, else down,
+  // else to error, according to the given masks.
+  public static final Value combineShifted(int width, Value[] vals, int[] mask, int[] shift,
+      int pullUp, int pullDown, int pullError) {
+    int error = 0, unknown = -1, value = 0;
+    int n = vals.length;
+    for (int k = 0; k < n; k++) {
+      Value v = vals[k];
+      if (v == null || v == NIL)
+        continue;
+      int m = mask[k];
+      int sh = shift[k];
+      int e, u, c, x;
+      if (sh >= 0) {
+        e = (v.error & m) << sh;
+        u = (v.unknown & m) << sh;
+        x = (v.value & m) << sh;
+        c = m << sh;
+      } else {
+        e = (v.error & m) >>> -sh;
+        u = (v.unknown & m) >>> -sh;
+        x = (v.value & m) >>> -sh;
+        c = m >>> -sh;
+      }
+      u |= ~c;
+      int disagree = (value ^ x) & ~(unknown | u);
+      error |= e | disagree;
+      unknown &= u;
+      value |= x;
+    }
+    unknown &= ~error;
+    int pulled = unknown & pullUp;
+    value |= pulled;
+    unknown &= ~pulled;
+    unknown &= ~pullDown;
+    pulled = unknown & pullError;
+    error |= pulled;
+    unknown &= ~pulled;
+    return Value.create(width, error, unknown, value);
+  }
+
   /**
    * Code taken from Cornell's version of Logisim:
    * http://www.cs.cornell.edu/courses/cs3410/2015sp/
@@ -245,9 +245,7 @@ public class LibraryManager {
 
     LoadedLibrary lib = findKnown(dest);
     if (lib != null) {
-      LogisimFile clone = file.cloneLogisimFile(dest, loader, proj);
-      if (clone == null)
-        throw new IllegalStateException("clone failed");
+      LogisimFile clone = file.cloneLogisimFile(loader);
       clone.setName(file.getName());
       clone.setDirty(false);
       lib.setBase(clone);
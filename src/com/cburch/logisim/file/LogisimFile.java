@@ -39,8 +39,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -48,8 +46,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
+import javax.xml.stream.XMLStreamException;
 
 import org.xml.sax.SAXException;
 
@@ -68,36 +65,9 @@ import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
 import com.cburch.logisim.util.Errors;
 import com.cburch.logisim.util.EventSourceWeakSupport;
-import com.cburch.logisim.util.UniquelyNamedThread;
 
 public class LogisimFile extends Library implements LibraryEventSource {
 
-  private static class WritingThread extends UniquelyNamedThread {
-    OutputStream out;
-    LogisimFile file;
-    File destFile;
-    Project proj;
-
-    WritingThread(OutputStream out, LogisimFile file, File destFile, Project proj) {
-      super("WritingThread");
-      this.out = out;
-      this.file = file;
-      this.destFile = destFile;
-      this.proj = proj;
-    }
-
-    @Override
-    public void run() {
-      try {
-        file.write(out, destFile, proj);
-      } catch (IOException e) {
-        Errors.project(destFile).show(S.fmt("fileDuplicateError", e.toString()), e);
-      }
-      try { out.close(); }
-      catch (Exception e) { }
-    }
-  }
-
   public static LogisimFile createNew(Loader loader) {
     LogisimFile ret = new LogisimFile(loader);
     ret.main = new Circuit("main", ret);
@@ -263,26 +233,8 @@ public class LogisimFile extends Library implements LibraryEventSource {
     messages.addLast(msg);
   }
 
-  @SuppressWarnings("resource")
-  public LogisimFile cloneLogisimFile(File destFile, Loader newloader, Project proj) {
-    PipedInputStream reader = new PipedInputStream();
-    PipedOutputStream writer = new PipedOutputStream();
-    try {
-      reader.connect(writer);
-    } catch (IOException e) {
-      Errors.project(destFile).show(S.fmt("fileDuplicateError", e.toString()), e);
-      return null;
-    }
-    new WritingThread(writer, this, destFile, proj).start();
-    try {
-      return LogisimFile.load(destFile, reader, newloader).file;
-    } catch (IOException | LoadCanceledByUser e) {
-      Errors.project(destFile).show(S.fmt("fileDuplicateError", e.toString()), e);
-    } finally {
-      try { reader.close(); }
-      catch (IOException e1) { }
-    }
-    return null;
+  public LogisimFile cloneLogisimFile(Loader newloader) {
+    return LogisimFileCloner.cloneFile(this, newloader);
   }
 
   public boolean contains(Circuit circ) {
@@ -608,11 +560,9 @@ public class LogisimFile extends Library implements LibraryEventSource {
   void write(OutputStream out, File dest, Project proj) throws IOException {
     try {
       XmlWriter.write(this, proj, out, dest);
-    } catch (TransformerConfigurationException e) {
-      Errors.project(dest).show("internal error configuring transformer", e);
     } catch (ParserConfigurationException e) {
       Errors.project(dest).show("internal error configuring parser", e);
-    } catch (TransformerException e) {
+    } catch (XMLStreamException e) {
       String msg = e.getMessage();
       String err = S.get("xmlConversionError");
       if (msg != null)
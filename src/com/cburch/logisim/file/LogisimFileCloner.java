@@ -0,0 +1,294 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.file;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.bfh.logisim.fpga.PinBindings;
+import com.cburch.draw.model.AbstractCanvasObject;
+import com.cburch.draw.model.CanvasObject;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutator;
+import com.cburch.logisim.circuit.CircuitTransaction;
+import com.cburch.logisim.circuit.SubcircuitFactory;
+import com.cburch.logisim.circuit.Wire;
+import com.cburch.logisim.circuit.appear.AppearanceSvgReader;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.Builtin;
+import com.cburch.logisim.std.hdl.VhdlContent;
+import com.cburch.logisim.std.hdl.VhdlEntity;
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.tools.AddTool;
+import com.cburch.logisim.tools.Library;
+import com.cburch.logisim.tools.Tool;
+
+/**
+ * Builds an independent copy of a LogisimFile directly from the one in memory,
+ * giving the same result as saving the file and loading it back in, without
+ * the XML in between. Libraries, wires, and immutable attribute values are
+ * shared. Circuits, components, attribute sets, memory contents, tools, and
+ * appearances are copied, and references to the file's own circuits and vhdl
+ * entities are redirected to their copies.
+ */
+class LogisimFileCloner extends CircuitTransaction {
+
+  static LogisimFile cloneFile(LogisimFile src, Loader loader) {
+    return new LogisimFileCloner(src, loader).build();
+  }
+
+  private LogisimFile src;
+  private LogisimFile dst;
+  private Loader loader;
+  private HashMap<Library, Library> libs = new HashMap<>();
+  private HashMap<ComponentFactory, ComponentFactory> factories = new HashMap<>();
+  private LinkedHashMap<Circuit, Circuit> circuits = new LinkedHashMap<>();
+  private Document svg; // scratch document for copying appearance shapes
+
+  private LogisimFileCloner(LogisimFile src, Loader loader) {
+    this.src = src;
+    this.loader = loader;
+    this.dst = new LogisimFile(loader);
+  }
+
+  private LogisimFile build() {
+    for (Library lib : src.getLibraries()) {
+      Library copy = copyLibrary(lib);
+      libs.put(lib, copy);
+      dst.addLibrary(copy);
+    }
+
+    // Circuits start out empty, as in XmlProjectReader, so that
+    // subcircuit references can be resolved while the contents are copied.
+    for (AddTool tool : src.getTools()) {
+      ComponentFactory factory = tool.getFactory();
+      if (factory instanceof SubcircuitFactory) {
+        Circuit circ = ((SubcircuitFactory) factory).getSubcircuit();
+        Circuit copy = new Circuit(circ.getName(), dst);
+        dst.addCircuit(copy);
+        circuits.put(circ, copy);
+        factories.put(factory, copy.getSubcircuitFactory());
+      } else if (factory instanceof VhdlEntity) {
+        VhdlContent vhdl = ((VhdlEntity) factory).getContent();
+        VhdlContent copy = VhdlContent.parse(vhdl.getName(), vhdl.getContent(), dst);
+        if (vhdl.getAppearance() == StdAttr.APPEAR_CLASSIC)
+          copy.getStaticAttributes().setAttr(StdAttr.APPEARANCE, StdAttr.APPEAR_CLASSIC);
+        dst.addVhdlContent(copy);
+        factories.put(factory, copy.getEntityFactory());
+      }
+    }
+
+    if (src.getMainCircuit() != null)
+      dst.setMainCircuit(circuits.get(src.getMainCircuit()));
+
+    copyAttributes(src.getOptions().getAttributeSet(), dst.getOptions().getAttributeSet());
+
+    MouseMappings mappings = dst.getOptions().getMouseMappings();
+    for (Map.Entry<Integer, Tool> entry : src.getOptions().getMouseMappings().getMappings().entrySet()) {
+      Tool tool = copyTool(entry.getValue());
+      if (tool != null)
+        mappings.setToolFor(entry.getKey(), tool);
+    }
+
+    ToolbarData toolbar = dst.getOptions().getToolbarData();
+    for (Tool item : src.getOptions().getToolbarData().getContents()) {
+      if (item == null) {
+        toolbar.addSeparator();
+      } else {
+        Tool tool = copyTool(item);
+        if (tool != null)
+          toolbar.addTool(tool);
+      }
+    }
+
+    execute();
+
+    for (Map.Entry<Circuit, Circuit> entry : circuits.entrySet()) {
+      AddTool tool = src.findToolFor(entry.getKey());
+      AddTool copy = dst.findToolFor(entry.getValue());
+      if (tool != null && copy != null)
+        copyAttributes(tool.getAttributeSet(), copy.getAttributeSet());
+    }
+    return dst;
+  }
+
+  @Override
+  protected Map<Circuit, Integer> getAccessedCircuits() {
+    HashMap<Circuit, Integer> access = new HashMap<>();
+    for (Circuit copy : circuits.values())
+      access.put(copy, READ_WRITE);
+    return access;
+  }
+
+  @Override
+  protected void run(CircuitMutator mutator) {
+    for (Map.Entry<Circuit, Circuit> entry : circuits.entrySet())
+      copyCircuit(entry.getKey(), entry.getValue(), mutator);
+    // Appearances come last, since dynamic elements may refer to components
+    // nested anywhere within the other circuits.
+    for (Map.Entry<Circuit, Circuit> entry : circuits.entrySet())
+      copyAppearance(entry.getKey(), entry.getValue());
+  }
+
+  private void copyCircuit(Circuit circ, Circuit copy, CircuitMutator mutator) {
+    copyAttributes(circ.getStaticAttributes(), copy.getStaticAttributes());
+    for (PinBindings.Config config : circ.getFPGAConfigs()) {
+      PinBindings.Config c = new PinBindings.Config(config.boardname,
+          config.clkmode, config.clkdiv);
+      c.mappings.addAll(config.mappings);
+      copy.saveFPGAConfig(c);
+    }
+    for (Wire w : circ.getWires())
+      mutator.add(copy, w);
+    for (Component comp : circ.getNonWires()) {
+      ComponentFactory factory = factories.getOrDefault(comp.getFactory(), comp.getFactory());
+      AttributeSet attrs = factory.createAttributeSet();
+      copyAttributes(comp.getAttributeSet(), attrs);
+      Component c = factory.createComponent(comp.getLocation(), attrs);
+      if (c != null)
+        mutator.add(copy, c);
+    }
+  }
+
+  // Appearance shapes are few, and refer to pins and components by location
+  // and path, so they are copied through their svg form, just as they would
+  // be by a save and reload.
+  private void copyAppearance(Circuit circ, Circuit copy) {
+    if (circ.getAppearance().isDefaultAppearance())
+      return;
+    if (svg == null) {
+      try {
+        svg = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+      } catch (ParserConfigurationException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    Map<Location, Instance> pins = new HashMap<>();
+    for (Component comp : copy.getNonWires()) {
+      if (comp.getFactory() == Pin.FACTORY)
+        pins.put(comp.getLocation(), Instance.getInstanceFor(comp));
+    }
+    List<AbstractCanvasObject> shapes = new ArrayList<>();
+    for (CanvasObject o : circ.getAppearance().getObjectsFromBottom()) {
+      if (!(o instanceof AbstractCanvasObject))
+        continue;
+      Element elt = ((AbstractCanvasObject) o).toSvgElement(svg);
+      if (elt == null)
+        continue;
+      AbstractCanvasObject shape = AppearanceSvgReader.createShape(elt, pins, copy);
+      if (shape != null)
+        shapes.add(shape);
+    }
+    copy.getAppearance().setObjectsForce(shapes);
+    copy.getAppearance().setDefaultAppearance(false);
+  }
+
+  private Library copyLibrary(Library lib) {
+    // Other than the builtins, libraries are shared by all loaders.
+    if (loader == src.getLoader() || !Builtin.isBuiltinLibrary(lib.getClass()))
+      return lib;
+    Library copy = loader.getBuiltin().getLibrary(lib.getName());
+    if (copy == null)
+      return lib;
+    for (Tool tool : lib.getTools()) {
+      Tool t = copy.getTool(tool.getName());
+      if (t != null)
+        copyAttributes(tool.getAttributeSet(), t.getAttributeSet());
+    }
+    return copy;
+  }
+
+  private Tool copyTool(Tool tool) {
+    Tool base = null;
+    for (AddTool t : src.getTools()) {
+      if (t.sharesSource(tool)) {
+        base = dst.getTool(t.getName());
+        break;
+      }
+    }
+    for (Library lib : src.getLibraries()) {
+      if (base != null)
+        break;
+      for (Tool t : lib.getTools()) {
+        if (t.sharesSource(tool)) {
+          base = libs.get(lib).getTool(t.getName());
+          break;
+        }
+      }
+    }
+    if (base == null)
+      return null;
+    Tool copy = base.cloneTool();
+    copyAttributes(tool.getAttributeSet(), copy.getAttributeSet());
+    return copy;
+  }
+
+  // Copies the saved attribute values of src into dst, in the same order as
+  // XmlReader.initAttributeSet() would apply them. The attribute list is
+  // refetched on each step, since it can change as values are set (as it
+  // does for a splitter). Memory contents are the only mutable values.
+  private static void copyAttributes(AttributeSet src, AttributeSet dst) {
+    if (src == null || dst == null)
+      return;
+    HashMap<String, Object> values = new HashMap<>();
+    for (Attribute<?> attr : src.getAttributes()) {
+      Object val = src.getValue(attr);
+      if (val != null && src.isToSave(attr))
+        values.put(attr.getName(), val);
+    }
+    for (int i = 0; i < dst.getAttributes().size(); i++) {
+      @SuppressWarnings("unchecked")
+      Attribute<Object> attr = (Attribute<Object>) dst.getAttributes().get(i);
+      Object val = values.get(attr.getName());
+      if (val == null || !dst.isToSave(attr))
+        continue;
+      if (val instanceof MemContents)
+        val = ((MemContents) val).clone();
+      dst.setAttr(attr, val);
+    }
+  }
+}
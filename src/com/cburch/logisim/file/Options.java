@@ -32,6 +32,8 @@ package com.cburch.logisim.file;
 import static com.cburch.logisim.file.Strings.S;
 
 import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeEvent;
+import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.AttributeSets;
@@ -62,9 +64,14 @@ public class Options {
   private AttributeSet attrs;
   private MouseMappings mmappings;
   private ToolbarData toolbar;
+  private volatile int version;
 
   public Options() {
     attrs = AttributeSets.fixedSet(ATTRIBUTES, DEFAULTS);
+    attrs.addAttributeWeakListener(this, new AttributeListener() {
+      public void attributeListChanged(AttributeEvent e) { version++; }
+      public void attributeValueChanged(AttributeEvent e) { version++; }
+    });
     mmappings = new MouseMappings();
     toolbar = new ToolbarData();
   }
@@ -86,4 +93,10 @@ public class Options {
   public ToolbarData getToolbarData() {
     return toolbar;
   }
+
+  // Changes whenever any option value changes, so components can cache
+  // option values they need on every propagation.
+  public int getVersion() {
+    return version;
+  }
 }
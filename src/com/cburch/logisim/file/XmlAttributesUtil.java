@@ -39,6 +39,7 @@ import com.cburch.logisim.Main;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeDefaultProvider;
 import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.std.memory.MemContents;
 
 public class XmlAttributesUtil {
   static void addAttributeSetContent(Document doc, String outFilepath,
@@ -58,6 +59,13 @@ public class XmlAttributesUtil {
         if (dflt == null || !dflt.equals(val)) {
           Element a = doc.createElement("a");
           a.setAttribute("name", attr.getName());
+          if (val instanceof MemContents) {
+            // Potentially huge, so XmlWriter encodes it directly onto the
+            // output stream rather than through toStandardString().
+            a.setUserData(XmlReader.DECODED_VALUE, val, null);
+            elt.appendChild(a);
+            continue;
+          }
           String value = attr.toStandardString(val);
           if (value.indexOf("\n") >= 0)
             a.appendChild(doc.createTextNode(value));
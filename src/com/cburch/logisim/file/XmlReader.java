@@ -39,11 +39,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import com.bfh.logisim.fpga.PinBindings;
@@ -56,9 +62,12 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeDefaultProvider;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Location;
+import com.cburch.logisim.gui.hex.CircContentsDecoder;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.std.hdl.VhdlContent;
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.memory.Rom;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
@@ -237,6 +246,7 @@ class XmlReader {
       ArrayList<String> messages = null;
 
       HashMap<String, String> attrsDefined = new HashMap<>();
+      HashMap<String, Object> attrsDecoded = null;
       for (Element attrElt : XmlIterator.forChildElements(parentElt, "a")) {
         if (!attrElt.hasAttribute("name")) {
           if (messages == null)
@@ -245,7 +255,13 @@ class XmlReader {
         } else {
           String attrName = attrElt.getAttribute("name");
           String attrVal;
-          if (attrElt.hasAttribute("val"))
+          Object decoded = attrElt.getUserData(DECODED_VALUE);
+          if (decoded != null) {
+            if (attrsDecoded == null)
+              attrsDecoded = new HashMap<>();
+            attrsDecoded.put(attrName, decoded);
+            attrVal = "";
+          } else if (attrElt.hasAttribute("val"))
             attrVal = attrElt.getAttribute("val");
           else
             attrVal = attrElt.getTextContent();
@@ -271,7 +287,14 @@ class XmlReader {
           continue; // ignore attributes that should never have been saved (like circuit name)
         String attrName = attr.getName();
         String attrVal = attrsDefined.get(attrName);
-        if (attrVal == null) {
+        Object decoded = attrsDecoded == null ? null : attrsDecoded.get(attrName);
+        if (decoded != null && decoded.getClass().isInstance(attrs.getValue(attr))) {
+          attrs.setAttr(attr, decoded);
+        } else if (decoded != null) {
+          if (messages == null)
+            messages = new ArrayList<String>();
+          messages.add(S.fmt("attrValueInvalidError", "...", attrName));
+        } else if (attrVal == null) {
           if (setDefaults) {
             Object val = defaults.getDefaultAttributeValue(attr, sourceVersion);
             if (val != null)
@@ -295,14 +318,128 @@ class XmlReader {
 
   }
 
+  // Key for DOM user data holding an attribute value that was already decoded
+  // while the document was being read, in place of the element's text.
+  static final String DECODED_VALUE = "logisim.decodedValue";
+
+  // Builds a DOM for the given stream using a StAX pull parser. The repair
+  // passes and readers need the DOM, but memory contents, which dominate the
+  // size of many project files, are decoded straight into MemContents as the
+  // text streams past: the <a name="contents"> element of a ROM or RAM
+  // holding "addr/data:" text gets no text node, just the decoded contents as
+  // DECODED_VALUE.
   static Document loadXmlFrom(InputStream is) throws SAXException, IOException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setNamespaceAware(true);
+    Document doc;
     try {
-      return factory.newDocumentBuilder().parse(is);
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      doc = factory.newDocumentBuilder().newDocument();
     } catch (ParserConfigurationException e) {
       throw new IOException("XML parse configuration error: " + e.getMessage(), e);
     }
+    XMLInputFactory xif = XMLInputFactory.newInstance();
+    xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    xif.setProperty(XMLInputFactory.IS_COALESCING, false);
+    xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    XMLStreamReader in = null;
+    try {
+      in = xif.createXMLStreamReader(is);
+      Node parent = doc;
+      CircContentsDecoder contents = null;
+      while (in.hasNext()) {
+        switch (in.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          Element elt = createElement(doc, in);
+          parent.appendChild(elt);
+          parent = elt;
+          if (isMemoryContents(elt))
+            contents = new CircContentsDecoder();
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          if (contents != null) {
+            MemContents mem = contents.finish();
+            if (mem != null)
+              parent.setUserData(DECODED_VALUE, mem, null);
+            else if (contents.isRejected())
+              parent.appendChild(doc.createTextNode(contents.getRejectedText()));
+            contents = null;
+          }
+          parent = parent.getParentNode();
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (parent == doc)
+            break;
+          if (contents != null) {
+            if (!contents.feed(in.getTextCharacters(), in.getTextStart(),
+                  in.getTextLength())) {
+              // not memory contents after all: keep what was consumed, and
+              // take the rest of the text as is
+              parent.appendChild(doc.createTextNode(contents.getRejectedText()));
+              contents = null;
+            }
+          } else {
+            parent.appendChild(doc.createTextNode(in.getText()));
+          }
+          break;
+        default:
+          // comments, processing instructions, and the like are not used
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new SAXException(e.getMessage(), e);
+    } finally {
+      if (in != null) {
+        try { in.close(); }
+        catch (XMLStreamException e) { }
+      }
+    }
+    if (doc.getDocumentElement() == null)
+      throw new SAXException("Premature end of file.");
+    return doc;
+  }
+
+  // Whether elt is the contents attribute of a ROM or RAM, in a component or
+  // a tool. Other attributes named "contents", like the File Viewer's, are
+  // just text.
+  private static boolean isMemoryContents(Element elt) {
+    if (!elt.getTagName().equals("a") || elt.hasAttribute("val")
+        || !elt.getAttribute("name").equals(Rom.CONTENTS_ATTR.getName()))
+      return false;
+    Node owner = elt.getParentNode();
+    if (!(owner instanceof Element))
+      return false;
+    String tag = ((Element)owner).getTagName();
+    String name = ((Element)owner).getAttribute("name");
+    return (tag.equals("comp") || tag.equals("tool"))
+        && (name.equals("ROM") || name.equals("RAM"));
+  }
+
+  private static Element createElement(Document doc, XMLStreamReader in) {
+    Element elt = doc.createElementNS(emptyToNull(in.getNamespaceURI()),
+        qualifiedName(in.getPrefix(), in.getLocalName()));
+    for (int i = 0, n = in.getNamespaceCount(); i < n; i++) {
+      String prefix = in.getNamespacePrefix(i);
+      elt.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+          prefix == null || prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE
+          : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+          in.getNamespaceURI(i));
+    }
+    for (int i = 0, n = in.getAttributeCount(); i < n; i++) {
+      elt.setAttributeNS(emptyToNull(in.getAttributeNamespace(i)),
+          qualifiedName(in.getAttributePrefix(i), in.getAttributeLocalName(i)),
+          in.getAttributeValue(i));
+    }
+    return elt;
+  }
+
+  private static String qualifiedName(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+  }
+
+  private static String emptyToNull(String s) {
+    return s == null || s.isEmpty() ? null : s;
   }
 
 }
@@ -31,9 +31,14 @@
 package com.cburch.logisim.file;
 import static com.cburch.logisim.file.Strings.S;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -46,15 +51,9 @@ import java.util.Map;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -76,8 +75,11 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeDefaultProvider;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Location;
+import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.MemContents;
 import com.cburch.logisim.std.hdl.VhdlContent;
 import com.cburch.logisim.std.hdl.VhdlEntity;
 import com.cburch.logisim.tools.AddTool;
@@ -171,49 +173,153 @@ public class XmlWriter {
     }
   }
 
-  private static void xform(Document doc, OutputStream out) {
-    try {
-      TransformerFactory tfFactory = TransformerFactory.newInstance();
-      try { tfFactory.setAttribute("indent-number", Integer.valueOf(2)); }
-      catch (IllegalArgumentException e) { } // non-fatal
-        Transformer tf = tfFactory.newTransformer();
-        tf.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        tf.setOutputProperty(OutputKeys.INDENT, "yes");
-      try { tf.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2"); }
-      catch (IllegalArgumentException e) { } // non-fatal
+  // Serializes DOM subtrees onto an XMLStreamWriter, indenting elements by two
+  // spaces. Project files are written one top-level element at a time, so only
+  // that element's subtree is ever held in memory, and memory contents attached
+  // to <a> elements are encoded straight onto the stream by HexFile.
+  private static class XmlStream {
+    private Writer writer;
+    private XMLStreamWriter xml;
+    private boolean binaryMemory = AppPreferences.MEMORY_BINARY_ENCODING.get();
+
+    XmlStream(OutputStream out) throws XMLStreamException {
+      writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+      xml = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+      xml.writeStartDocument("UTF-8", "1.0");
+    }
 
-      doc.normalize();
-      sort(doc);
-      Source src = new DOMSource(doc);
-      Result dest = new StreamResult(out);
-      tf.transform(src, dest);
-    } catch (Exception e) { } // non-fatal
-  }
+    void startRoot(Element root) throws XMLStreamException {
+      xml.writeCharacters("\n");
+      xml.writeStartElement(root.getTagName());
+      writeAttributes(root);
+      for (Node n : XmlIterator.forChildren(root)) {
+        String text = n.getNodeType() == Node.TEXT_NODE ? n.getNodeValue().trim() : "";
+        if (!text.isEmpty()) {
+          indent(1);
+          xml.writeCharacters(text);
+          xml.writeCharacters("\n");
+        }
+      }
+    }
 
-  static void write(LogisimFile file, Project proj, OutputStream out, File destFile)
-      throws ParserConfigurationException, TransformerConfigurationException, TransformerException {
+    void endRoot() throws XMLStreamException, IOException {
+      xml.writeCharacters("\n");
+      xml.writeEndElement();
+      xml.writeCharacters("\n");
+      xml.writeEndDocument();
+      xml.flush();
+      writer.flush();
+    }
+
+    void write(Element elt, int depth) throws XMLStreamException, IOException {
+      indent(depth);
+      Object mem = elt.getUserData(XmlReader.DECODED_VALUE);
+      boolean hasElements = false, hasChildren = elt.hasChildNodes();
+      for (Node n : XmlIterator.forChildren(elt))
+        hasElements |= n.getNodeType() == Node.ELEMENT_NODE;
+      if (mem == null && !hasChildren) {
+        xml.writeEmptyElement(elt.getTagName());
+        writeAttributes(elt);
+        return;
+      }
+      xml.writeStartElement(elt.getTagName());
+      writeAttributes(elt);
+      if (mem instanceof MemContents) {
+        writeMemContents((MemContents) mem);
+      } else if (!hasElements) {
+        for (Node n : XmlIterator.forChildren(elt))
+          xml.writeCharacters(n.getNodeValue());
+      } else {
+        for (Node n : XmlIterator.forChildren(elt)) {
+          if (n.getNodeType() == Node.ELEMENT_NODE) {
+            write((Element) n, depth + 1);
+          } else {
+            String text = n.getNodeValue() == null ? "" : n.getNodeValue().trim();
+            if (!text.isEmpty()) {
+              indent(depth + 1);
+              xml.writeCharacters(text);
+            }
+          }
+        }
+        indent(depth);
+      }
+      xml.writeEndElement();
+    }
 
+    private void writeAttributes(Element elt) throws XMLStreamException {
+      NamedNodeMap attrs = elt.getAttributes();
+      for (int i = 0; i < attrs.getLength(); i++) {
+        Attr a = (Attr) attrs.item(i);
+        xml.writeAttribute(a.getName(), a.getValue());
+      }
+    }
+
+    private void indent(int depth) throws XMLStreamException {
+      xml.writeCharacters("\n");
+      for (int i = 0; i < depth; i++)
+        xml.writeCharacters("  ");
+    }
+
+    // Same text as Rom's ContentsAttribute.toStandardString(), but streamed.
+    private void writeMemContents(MemContents mem)
+        throws XMLStreamException, IOException {
+      xml.writeCharacters("addr/data: " + mem.getLogLength() + " "
+          + mem.getWidth() + "\n");
+      OutputStream chars = new OutputStream() {
+        char[] buf = new char[8192];
+        int len;
+        @Override
+        public void write(int b) throws IOException {
+          buf[len++] = (char) (b & 0xff);
+          if (len == buf.length)
+            flush();
+        }
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+          for (int i = 0; i < n; i++)
+            write(b[off + i]);
+        }
+        @Override
+        public void flush() throws IOException {
+          try {
+            xml.writeCharacters(buf, 0, len);
+          } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+          }
+          len = 0;
+        }
+      };
+      HexFile.saveForCircFile(mem, chars, binaryMemory);
+      chars.flush();
+    }
+  }
+
+  private static Document newDocument() throws ParserConfigurationException {
     DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
     DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-    Document doc = docBuilder.newDocument();
+    return docBuilder.newDocument();
+  }
 
+  static void write(LogisimFile file, Project proj, OutputStream out, File destFile)
+      throws ParserConfigurationException, XMLStreamException, IOException {
+    Document doc = newDocument();
     XmlWriter context = new XmlWriter(file, proj, doc, destFile);
-    context.fromLogisimFile();
-    xform(doc, out);
+    context.writeLogisimFile(new XmlStream(out));
   }
 
   public static String encodeSelection(LogisimFile file, Project proj, Object sel) {
     try {
-      DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-      DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-      Document doc = docBuilder.newDocument();
-
+      Document doc = newDocument();
       XmlWriter context = new XmlWriter(file, proj, doc, null);
-
-      context.fromSelection(sel);
-
+      Element root = context.fromSelection(sel);
       ByteArrayOutputStream out = new ByteArrayOutputStream();
-      xform(doc, out);
+      XmlStream stream = new XmlStream(out);
+      doc.normalize();
+      sort(root);
+      stream.startRoot(root);
+      for (Element elt : XmlIterator.forChildElements(root))
+        stream.write(elt, 1);
+      stream.endRoot();
       String xml = new String(out.toByteArray(), "UTF-8");
       return xml;
     } catch (Exception e) {
@@ -222,6 +328,43 @@ public class XmlWriter {
     }
   }
 
+  // Serializes one circuit or VHDL entity along with the library
+  // declarations it refers to (in file order, so their ids are stable).
+  // Comparing the result tells whether it changed between runs, e.g. to skip
+  // re-exporting an image. Subcircuits are referenced by name only, so
+  // callers wanting a whole hierarchy must combine the results themselves.
+  public static String encodeContents(LogisimFile file, Project proj, Object item) {
+    try {
+      Document doc = newDocument();
+      XmlWriter context = new XmlWriter(file, proj, doc, null);
+      Element root = doc.createElement("contents");
+      doc.appendChild(root);
+      root.setAttribute("source", Main.VERSION_NAME);
+      for (Library lib : file.getLibraries()) {
+        Element elt = context.fromLibrary(lib);
+        if (elt != null)
+          root.appendChild(elt);
+      }
+      if (item instanceof Circuit)
+        root.appendChild(context.fromCircuit((Circuit)item, file.findToolFor((Circuit)item)));
+      else if (item instanceof VhdlContent)
+        root.appendChild(context.fromVhdl((VhdlContent)item));
+      else
+        throw new IllegalArgumentException("not a circuit or vhdl entity: " + item);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      XmlStream stream = new XmlStream(out);
+      doc.normalize();
+      sort(root);
+      stream.startRoot(root);
+      for (Element elt : XmlIterator.forChildElements(root))
+        stream.write(elt, 1);
+      stream.endRoot();
+      return new String(out.toByteArray(), "UTF-8");
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
   private LogisimFile file;
   private Project proj;
   private Document doc;
@@ -439,38 +582,45 @@ public class XmlWriter {
   //   - comp*
   //   - wire*
   // - vhdl*
-  Element fromLogisimFile() {
-    Element ret = doc.createElement("project");
-    doc.appendChild(ret);
-    ret.appendChild(doc
+  void writeLogisimFile(XmlStream out) throws XMLStreamException, IOException {
+    Element root = doc.createElement("project");
+    doc.appendChild(root);
+    root.appendChild(doc
         .createTextNode("\nThis file is intended to be "
           + "loaded by Logisim-evolution (https://github.com/kevinawalsh/logisim-evolution).\n"));
-    ret.setAttribute("version", "1.0");
-    ret.setAttribute("source", Main.VERSION_NAME);
+    root.setAttribute("version", "1.0");
+    root.setAttribute("source", Main.VERSION_NAME);
+    out.startRoot(root);
 
-    for (Library lib : file.getLibraries()) {
-      Element elt = fromLibrary(lib);
-      if (elt != null)
-        ret.appendChild(elt);
-    }
+    for (Library lib : file.getLibraries())
+      writeChild(out, fromLibrary(lib));
 
     if (file.getMainCircuit() != null) {
       Element mainElt = doc.createElement("main");
       mainElt.setAttribute("name", file.getMainCircuit().getName());
-      ret.appendChild(mainElt);
+      writeChild(out, mainElt);
     }
 
-    ret.appendChild(fromOptions());
-    ret.appendChild(fromMouseMappings());
-    ret.appendChild(fromToolbarData());
+    writeChild(out, fromOptions());
+    writeChild(out, fromMouseMappings());
+    writeChild(out, fromToolbarData());
 
-    for (Circuit circ : file.getCircuits()) {
-      ret.appendChild(fromCircuit(circ, file.findToolFor(circ)));
-    }
-    for (VhdlContent vhdl : file.getVhdlContents()) {
-      ret.appendChild(fromVhdl(vhdl));
-    }
-    return ret;
+    for (Circuit circ : file.getCircuits())
+      writeChild(out, fromCircuit(circ, file.findToolFor(circ)));
+    for (VhdlContent vhdl : file.getVhdlContents())
+      writeChild(out, fromVhdl(vhdl));
+
+    out.endRoot();
+  }
+
+  // Each top-level element is sorted, written, and then discarded.
+  private void writeChild(XmlStream out, Element elt)
+      throws XMLStreamException, IOException {
+    if (elt == null)
+      return;
+    elt.normalize();
+    sort(elt);
+    out.write(elt, 1);
   }
 
   private void scanSelection(Collection<Component> sel,
@@ -47,6 +47,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
@@ -63,6 +64,8 @@ import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.border.Border;
 import javax.swing.border.TitledBorder;
@@ -177,7 +180,9 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
   private TopPanel top;
   private ResultPanel results;
   private JScrollPane scrollPane;
+  private SearchIndex index = new SearchIndex();
   private Model model = new Model();
+  private Timer typing = new Timer(250, e -> model.update());
 
   public FindFrame() {
     super(null);
@@ -211,12 +216,14 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
     contents.add(boxes, BorderLayout.CENTER);
     // contents.setMinimumSize(new Dimension(250, 300));
 
-    top.go.addActionListener(e -> model.update());
-    top.field.addActionListener(e -> model.update());
+    top.go.addActionListener(e -> search());
+    top.field.addActionListener(e -> search());
+    // search as the user types, once they pause
+    typing.setRepeats(false);
     top.field.getDocument().addDocumentListener(new DocumentListener() {
-      public void insertUpdate(DocumentEvent e) { model.clearIfNoResults(); }
-      public void removeUpdate(DocumentEvent e) { model.clearIfNoResults(); }
-      public void changedUpdate(DocumentEvent e) { model.clearIfNoResults(); }
+      public void insertUpdate(DocumentEvent e) { typing.restart(); }
+      public void removeUpdate(DocumentEvent e) { typing.restart(); }
+      public void changedUpdate(DocumentEvent e) { typing.restart(); }
     });
 
     results.addListSelectionListener(e -> reveal(results.getSelectedValue()));
@@ -235,6 +242,11 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
     localeChanged();
   }
 
+  private void search() {
+    typing.stop();
+    model.update();
+  }
+
   @Override
   public void localeChanged() {
     setTitle(S.get("findFrameTitle"));
@@ -262,6 +274,7 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
     top.options.setTitle(S.get("matchOptions"));
 
     top.go.setText(S.get("findButtonLabel"));
+    index.clear(); // component names are localized
   }
 
   // Subcircuit and VHDL entities have an attribute for the underlying factory
@@ -272,21 +285,17 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
   private static final String COMPONENT_TYPE = S.get("matchComponentName");
 
   private static final Pattern newline = Pattern.compile("\\R");
-  private class Model extends AbstractListModel {
+  private class Model extends AbstractListModel<Result> {
     String text;
     Pattern regex;
+    SearchIndex.Filter filter;
+    ArrayList<Job> jobs;
+    Search search;
 
     ArrayList<Result> data = new ArrayList<>();
 
-    void clearIfNoResults() {
-      if (data.size() == 1) {
-        data.clear();
-        fireIntervalRemoved(this, 0, 1);
-      }
-    }
-
     @Override
-    public Object getElementAt(int index) {
+    public Result getElementAt(int index) {
       return data.get(index);
     }
 
@@ -295,7 +304,14 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
       return data.size();
     }
 
+    // Collecting the strings to search happens here, on the event thread,
+    // mostly from the index. Matching them happens in a background Search,
+    // which is abandoned as soon as the query changes.
     void update() {
+      if (search != null) {
+        search.cancel(false);
+        search = null;
+      }
       int n = data.size();
       if (n > 0) {
         data.clear();
@@ -305,6 +321,7 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
       text = top.field.getText();
       if (text.equals(""))
         return;
+      String literal = top.matchRegex.isSelected() ? null : text;
       int flags = 0;
       flags |= top.caseSensitive.isSelected() ? 0 : Pattern.CASE_INSENSITIVE;
       flags |= Pattern.MULTILINE;
@@ -314,11 +331,18 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
         text = "\\b" + Pattern.quote(text) + "\\b";
       else if (top.matchExact.isSelected())
         text = "^" + Pattern.quote(text) + "$";
-      regex = Pattern.compile(text, flags);
+      try {
+        regex = Pattern.compile(text, flags);
+      } catch (PatternSyntaxException e) {
+        return; // probably still being typed
+      }
       List<Project> projects = Projects.getOpenProjects();
       if (projects.isEmpty())
         return;
+      filter = index.filter(literal);
+      jobs = new ArrayList<>();
       Project proj = projects.get(0);
+      index.watch(proj.getLogisimFile());
       LibrarySource src = new LibrarySource(proj, new ArrayList<Library>(), proj.getLogisimFile());
       if (top.inSheet.isSelected() || top.inCircuit.isSelected()) {
         Circuit circ = proj.getCurrentCircuit();
@@ -341,10 +365,15 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
         searchLibrary(proj.getLogisimFile(), proj.getLogisimFile().getName(), searched, src);
       } else {
         HashSet<Library> searched = new HashSet<>();
-        for (Project p : projects)
+        for (Project p : projects) {
+          index.watch(p.getLogisimFile());
           searchLibrary(p.getLogisimFile(), p.getLogisimFile().getName(), searched,
               new LibrarySource(p, new ArrayList<Library>(), p.getLogisimFile()));
+        }
       }
+      search = new Search(regex, jobs);
+      jobs = null;
+      search.execute();
     }
 
     void searchLibrary(Library lib, String source, HashSet<Library> searched,
@@ -355,7 +384,7 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
       searchText(lib.getDisplayName(), source, S.get("matchLibraryName"), src, null);
       for (Tool tool : lib.getTools()) {
         String subsource = source + ", " + tool.getDisplayName();
-        Source toolSrc = src.forTool(tool);
+        Source<?> toolSrc = src.forTool(tool);
         searchAttributes(tool.getAttributeSet(), subsource, toolSrc);
         if (!(tool instanceof AddTool))
           continue;
@@ -381,20 +410,13 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
         CircuitSource src) {
       if (searched != null && searched.contains(circ))
         return;
-      for (Component comp : circ.getNonWires()) {
-        String compName = comp.getDisplayName();
-        String subsource = source + "/" + compName;
-        Source compSrc = src.forComponent(comp);
-        searchAttributes(comp.getAttributeSet(), subsource, compSrc);
-        if (!(comp.getFactory() instanceof SubcircuitFactory
-              || comp.getFactory() instanceof VhdlEntity))
-          searchText(comp.getFactory().getDisplayName(),
-              subsource, COMPONENT_TYPE, compSrc, null);
-      }
+      SearchIndex.Doc doc = index.get(circ);
+      if (filter.accepts(doc))
+        jobs.add(s -> s.searchEntries(doc.entries, source, src));
       if (searched == null)
         return; // non-recursive
       searched.add(circ);
-      for (Component comp : circ.getNonWires()) {
+      for (Component comp : doc.children) {
         ComponentFactory factory = comp.getFactory();
         if (factory instanceof VhdlEntity) {
           VhdlContent vhdl = ((VhdlEntity)factory).getContent();
@@ -412,11 +434,12 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
     }
 
     void searchHdl(HdlModel hdl, String source, HdlSource src) {
-      String code = hdl.getContent();
-      searchText(code, source, null /*use line number*/, src, null);
+      SearchIndex.Doc doc = index.get(hdl);
+      if (filter.accepts(doc))
+        searchText(doc.hdlContent, source, null /*use line number*/, src, null);
     }
 
-    void searchAttributes(AttributeSet as, String source, Source src) {
+    void searchAttributes(AttributeSet as, String source, Source<?> src) {
       if (as == null)
         return;
       for (Attribute<?> a : as.getAttributes()) {
@@ -428,71 +451,129 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
       }
     }
 
-    void searchText(String content, String source, String context, Source src, Attribute a) {
-      Matcher newlines = newline.matcher(content);
-      Matcher matches = regex.matcher(content);
+    void searchText(String content, String source, String context, Source<?> src, Attribute<?> a) {
+      jobs.add(s -> s.searchText(content, source, context, src, a));
+    }
 
-      int linestart = 0, lineend = content.length(), lineno = 1;
-      boolean multiline = newlines.find();
-      if (multiline)
-        lineend = newlines.end();
+    void add(Result result) {
+      data.add(result);
+      fireIntervalAdded(this, data.size()-1, data.size());
+    }
 
-      if (context == null && !multiline)
-        context = S.get("matchTextContent");
+    private class Search extends SwingWorker<Void, Result> {
+      Pattern regex;
+      List<Job> jobs;
 
-      while (matches.find()) {
-        int s = matches.start();
-        int e = matches.end();
-        if (multiline && s >= lineend) {
-          context = null;
-          while (s >= lineend) {
-            lineno++;
-            linestart = lineend;
-            lineend = newlines.find() ? newlines.end() : content.length();
-          }
+      Search(Pattern regex, List<Job> jobs) {
+        this.regex = regex;
+        this.jobs = jobs;
+      }
+
+      @Override
+      protected Void doInBackground() {
+        for (Job job : jobs) {
+          if (isCancelled())
+            break;
+          job.run(this);
         }
-        int ls = linestart;
-        int lns = lineno;
-        if (multiline && e > lineend) {
-          context = null;
-          while (e > lineend) {
-            lineno++;
-            linestart = lineend;
-            lineend = newlines.find() ? newlines.end() : content.length();
+        return null;
+      }
+
+      @Override
+      protected void process(List<Result> chunk) {
+        if (search != this)
+          return;
+        int n = data.size();
+        data.addAll(chunk);
+        fireIntervalAdded(Model.this, n, data.size()-1);
+        fireContentsChanged(Model.this, 0, 0); // result count
+      }
+
+      void searchEntries(List<SearchIndex.Entry> entries, String source, CircuitSource src) {
+        Component comp = null;
+        Source<?> compSrc = null;
+        for (SearchIndex.Entry e : entries) {
+          if (isCancelled())
+            return;
+          if (e.comp != comp) {
+            comp = e.comp;
+            compSrc = src.forComponent(comp);
           }
+          String subsource = source + "/" + e.compName;
+          if (e.attr == null)
+            searchText(e.content, subsource, COMPONENT_TYPE, compSrc, null);
+          else if (e.attr == Text.ATTR_TEXT)
+            searchText(e.content, subsource, null /* use line number */, compSrc, e.attr);
+          else
+            searchText(e.content, subsource, e.attr.getDisplayName(), compSrc, e.attr);
         }
-        int lne = lineno;
-        int le = lineend;
-        if (context == null && lns == lne)
-          context = S.fmt("matchTextLine", lns);
-        else if (context == null)
-          context = S.fmt("matchTextLines", lns, lne);
-        add(new Result(content, ls, le, s, e, source, context, lns, src, a));
       }
 
-      // String lines = content.split("\\R", -1);
-      // int n = lines.length;
-      // if (context == null && lines.length == 0)
-      //   context = S.get("matchTextContent");
-      // for (int i = i; i < n; i++) {
-      //   String line = lines[i];
-      //   int lineno = i+1;
-      //   Matcher m = regex.matcher(line);
-      //   while (m.find()) {
-      //     int s = m.start();
-      //     int e = m.end();
-      //     String c = context != null ? context : S.fmt("matchTextLine", lineno);
-      //     add(new Result(line, s, e, source, c, lineno, src, a));
-      //   }
-      // }
-    }
+      void searchText(String content, String source, String context, Source<?> src, Attribute<?> a) {
+        Matcher newlines = newline.matcher(content);
+        Matcher matches = regex.matcher(content);
+
+        int linestart = 0, lineend = content.length(), lineno = 1;
+        boolean multiline = newlines.find();
+        if (multiline)
+          lineend = newlines.end();
+
+        if (context == null && !multiline)
+          context = S.get("matchTextContent");
+
+        while (matches.find() && !isCancelled()) {
+          int s = matches.start();
+          int e = matches.end();
+          if (multiline && s >= lineend) {
+            context = null;
+            while (s >= lineend) {
+              lineno++;
+              linestart = lineend;
+              lineend = newlines.find() ? newlines.end() : content.length();
+            }
+          }
+          int ls = linestart;
+          int lns = lineno;
+          if (multiline && e > lineend) {
+            context = null;
+            while (e > lineend) {
+              lineno++;
+              linestart = lineend;
+              lineend = newlines.find() ? newlines.end() : content.length();
+            }
+          }
+          int lne = lineno;
+          int le = lineend;
+          if (context == null && lns == lne)
+            context = S.fmt("matchTextLine", lns);
+          else if (context == null)
+            context = S.fmt("matchTextLines", lns, lne);
+          publish(new Result(content, ls, le, s, e, source, context, lns, src, a));
+        }
 
-    void add(Result result) {
-      data.add(result);
-      fireIntervalAdded(this, data.size()-1, data.size());
+        // String lines = content.split("\\R", -1);
+        // int n = lines.length;
+        // if (context == null && lines.length == 0)
+        //   context = S.get("matchTextContent");
+        // for (int i = i; i < n; i++) {
+        //   String line = lines[i];
+        //   int lineno = i+1;
+        //   Matcher m = regex.matcher(line);
+        //   while (m.find()) {
+        //     int s = m.start();
+        //     int e = m.end();
+        //     String c = context != null ? context : S.fmt("matchTextLine", lineno);
+        //     add(new Result(line, s, e, source, c, lineno, src, a));
+        //   }
+        // }
+      }
     }
   }
 
+  private interface Job {
+    void run(Model.Search s);
+  }
+
   // static int lineNumber(String t, int s) {
   //   int i = t.indexOf('\n');
   //   if (i < 0)
@@ -657,12 +738,12 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
     String content, html;
     int ls, le, s, e;
     String source, context;
-    Attribute a; // null for Hdl content and library display name
+    Attribute<?> a; // null for Hdl content and library display name
     int lineno; // only for multi-line Text.ATTR_TEXT content
-    Source src;
+    Source<?> src;
 
     Result() { }
-    Result(String content, int ls, int le, int s, int e, String source, String context, int lineno, Source src, Attribute a) {
+    Result(String content, int ls, int le, int s, int e, String source, String context, int lineno, Source<?> src, Attribute<?> a) {
       this.content = content;
       this.ls = ls;
       this.le = le;
@@ -717,7 +798,7 @@ public class FindFrame extends LFrame.Dialog implements LocaleListener {
     static final String d = "</font>";
 
     @Override
-    public java.awt.Component getListCellRendererComponent(JList list, Object value,
+    public java.awt.Component getListCellRendererComponent(JList<?> list, Object value,
         int index, boolean isSelected, boolean cellHasFocus) {
       if (value == null) {
         int n = model.data.size() - 1;
@@ -0,0 +1,303 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.find;
+
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.cburch.hdl.HdlModel;
+import com.cburch.hdl.HdlModelListener;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitEvent;
+import com.cburch.logisim.circuit.CircuitListener;
+import com.cburch.logisim.circuit.SubcircuitFactory;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeEvent;
+import com.cburch.logisim.data.AttributeListener;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.file.LibraryEvent;
+import com.cburch.logisim.file.LibraryListener;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Projects;
+import com.cburch.logisim.std.hdl.VhdlEntity;
+import com.cburch.logisim.tools.AddTool;
+
+// SearchIndex caches the searchable strings of each circuit and HDL model,
+// along with an inverted index from the (case-folded) words in those strings
+// to the documents containing them. Documents are built lazily when first
+// searched and discarded whenever a circuit, component attribute, HDL content,
+// or library change is reported, so each query only pays to re-read whatever
+// was edited since the previous query. A literal query can then skip every
+// document that lacks a word containing the longest word of the query.
+//
+// The index itself is only touched on the event thread. Built documents are
+// never modified afterwards, so they can be handed to a background search.
+class SearchIndex {
+
+  // A string attribute of a component (or of the circuit itself, when comp is
+  // null), or the type name of a component when attr is null.
+  static class Entry {
+    final Component comp;
+    final String compName;
+    final Attribute<?> attr;
+    final String content;
+
+    Entry(Component comp, String compName, Attribute<?> attr, String content) {
+      this.comp = comp;
+      this.compName = compName;
+      this.attr = attr;
+      this.content = content;
+    }
+  }
+
+  class Doc implements CircuitListener, AttributeListener, HdlModelListener {
+    final Object owner; // Circuit or HdlModel
+    final int serial;
+    final ArrayList<Entry> entries = new ArrayList<>();
+    final ArrayList<Component> children = new ArrayList<>(); // subcircuits and vhdl
+    String hdlContent;
+    final HashSet<String> words = new HashSet<>();
+    final ArrayList<AttributeSet> watched = new ArrayList<>();
+
+    Doc(Circuit circ) {
+      owner = circ;
+      serial = nextSerial++;
+      circ.addCircuitWeakListener(null, this);
+      for (Component comp : circ.getNonWires()) {
+        String compName = comp.getDisplayName();
+        AttributeSet as = comp.getAttributeSet();
+        if (as != null) {
+          as.addAttributeWeakListener(null, this);
+          watched.add(as);
+          for (Attribute<?> a : as.getAttributes()) {
+            Object o = as.getValue(a);
+            if (o instanceof String)
+              add(new Entry(comp, compName, a, (String)o));
+          }
+        }
+        if (comp.getFactory() instanceof SubcircuitFactory
+            || comp.getFactory() instanceof VhdlEntity)
+          children.add(comp);
+        else
+          add(new Entry(comp, compName, null, comp.getFactory().getDisplayName()));
+      }
+    }
+
+    Doc(HdlModel hdl) {
+      owner = hdl;
+      serial = nextSerial++;
+      hdl.addHdlModelWeakListener(null, this);
+      hdlContent = hdl.getContent();
+      tokenize(hdlContent, words);
+    }
+
+    private void add(Entry e) {
+      entries.add(e);
+      tokenize(e.content, words);
+    }
+
+    void detach() {
+      if (owner instanceof Circuit)
+        ((Circuit)owner).removeCircuitWeakListener(null, this);
+      else
+        ((HdlModel)owner).removeHdlModelWeakListener(null, this);
+      for (AttributeSet as : watched)
+        as.removeAttributeWeakListener(null, this);
+    }
+
+    boolean containsWordWith(String key) {
+      for (String w : words)
+        if (w.contains(key))
+          return true;
+      return false;
+    }
+
+    private void changed() {
+      if (docs.get(owner) == this)
+        invalidate(owner);
+    }
+
+    public void circuitChanged(CircuitEvent event) {
+      int action = event.getAction();
+      if (action == CircuitEvent.ACTION_SET_NAME)
+        clear(); // parent circuits show this name in their component names
+      else if (action != CircuitEvent.ACTION_DISPLAY_CHANGE)
+        changed();
+    }
+
+    public void attributeListChanged(AttributeEvent e) { changed(); }
+    public void attributeValueChanged(AttributeEvent e) { changed(); }
+
+    public void contentSet(HdlModel source) { changed(); }
+    public void appearanceChanged(HdlModel source) { clear(); }
+    public void aboutToSave(HdlModel source) { }
+    public void displayChanged(HdlModel source) { }
+  }
+
+  // Filter selects the documents that might match a query.
+  class Filter {
+    final String key; // null for no filtering
+    final int serial;
+    final HashSet<Doc> hits = new HashSet<>();
+
+    Filter(String key) {
+      this.key = key;
+      this.serial = nextSerial;
+      if (key == null)
+        return;
+      for (Map.Entry<String, HashSet<Doc>> e : postings.entrySet())
+        if (e.getKey().contains(key))
+          hits.addAll(e.getValue());
+    }
+
+    boolean accepts(Doc doc) {
+      if (key == null || hits.contains(doc))
+        return true;
+      // documents built since the postings were scanned are checked directly
+      return doc.serial >= serial && doc.containsWordWith(key);
+    }
+  }
+
+  private final HashMap<Object, Doc> docs = new HashMap<>();
+  private final HashMap<String, HashSet<Doc>> postings = new HashMap<>();
+  private final WeakHashMap<LogisimFile, Boolean> files = new WeakHashMap<>();
+  private int nextSerial;
+
+  private final LibraryListener libraryListener = event -> {
+    switch (event.getAction()) {
+    case LibraryEvent.REMOVE_TOOL:
+      Object t = event.getData();
+      if (t instanceof AddTool) {
+        Object f = ((AddTool)t).getFactory();
+        if (f instanceof SubcircuitFactory)
+          invalidate(((SubcircuitFactory)f).getSubcircuit());
+        else if (f instanceof VhdlEntity)
+          invalidate(((VhdlEntity)f).getContent());
+      }
+      break;
+    case LibraryEvent.REMOVE_LIBRARY:
+    case LibraryEvent.SET_NAME:
+      clear();
+      break;
+    }
+  };
+
+  private final PropertyChangeListener projectListener = e -> clear();
+
+  SearchIndex() {
+    Projects.propertyChangeProducer.addPropertyChangeListener(
+        Projects.projectListProperty, projectListener);
+  }
+
+  void watch(LogisimFile file) {
+    if (files.put(file, Boolean.TRUE) == null)
+      file.addLibraryWeakListener(null, libraryListener);
+  }
+
+  Doc get(Circuit circ) {
+    Doc doc = docs.get(circ);
+    if (doc == null)
+      put(doc = new Doc(circ));
+    return doc;
+  }
+
+  Doc get(HdlModel hdl) {
+    Doc doc = docs.get(hdl);
+    if (doc == null)
+      put(doc = new Doc(hdl));
+    return doc;
+  }
+
+  // For regex searches (literal == null) every document is a candidate.
+  Filter filter(String literal) {
+    String key = null;
+    if (literal != null) {
+      HashSet<String> words = new HashSet<>();
+      tokenize(literal, words);
+      for (String w : words)
+        if (key == null || w.length() > key.length())
+          key = w;
+    }
+    return new Filter(key);
+  }
+
+  private void put(Doc doc) {
+    docs.put(doc.owner, doc);
+    for (String w : doc.words)
+      postings.computeIfAbsent(w, k -> new HashSet<>()).add(doc);
+  }
+
+  void invalidate(Object owner) {
+    Doc doc = docs.remove(owner);
+    if (doc == null)
+      return;
+    doc.detach();
+    for (String w : doc.words) {
+      HashSet<Doc> p = postings.get(w);
+      if (p != null && p.remove(doc) && p.isEmpty())
+        postings.remove(w);
+    }
+  }
+
+  void clear() {
+    for (Doc doc : docs.values())
+      doc.detach();
+    docs.clear();
+    postings.clear();
+  }
+
+  // Words are maximal runs of letters, digits, and underscores, folded
+  // char-by-char to lower case. Any literal match of a query, with or without
+  // case sensitivity, falls within such runs wherever the query's own words
+  // do, so the folded words of a match always contain the folded query words.
+  static void tokenize(String s, HashSet<String> out) {
+    int n = s.length();
+    int start = -1;
+    for (int i = 0; i <= n; i++) {
+      char c = i < n ? s.charAt(i) : ' ';
+      boolean w = c == '_' || Character.isLetterOrDigit(c);
+      if (w && start < 0) {
+        start = i;
+      } else if (!w && start >= 0) {
+        char[] word = new char[i - start];
+        for (int j = start; j < i; j++)
+          word[j - start] = Character.toLowerCase(s.charAt(j));
+        out.add(new String(word));
+        start = -1;
+      }
+    }
+  }
+}
@@ -32,20 +32,21 @@ package com.cburch.logisim.gui.hex;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
-import java.io.ByteArrayInputStream;
-import java.io.RandomAccessFile;
-import java.io.Reader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.io.Reader;
 import java.lang.StringBuffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
 /**
  * BufferedLineReader combines features of RandomAccessFile, StringReader, and
  * BufferedReader, along with one or two other features, like the ability to
  * reset to the start of the stream, to keep count of line numbers and byte
- * positions, and to know the overall size.
+ * positions, and to know the overall size. The underlying data is also
+ * available all at once as a ByteBuffer, for decoders that scan it in place.
  */
 
 abstract class BufferedLineReader {
@@ -55,7 +56,7 @@ abstract class BufferedLineReader {
    * source.
    */
   public static BufferedLineReader forString(String s) {
-    return new ReaderForString(s);
+    return new ReaderForBuffer(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
   }
 
   /**
@@ -64,86 +65,77 @@ abstract class BufferedLineReader {
    */
   public static BufferedLineReader forFile(File filename)
       throws IOException {
-    return new ReaderForFile(filename);
+    return new ReaderForBuffer(readFile(filename));
   }
 
-  private static class ReaderForString extends BufferedLineReader {
-    StringReader cin;
-    ByteArrayInputStream bin;
-
-    ReaderForString(String s) {
-      cin = new StringReader(s);
-      try {
-        byte[] b = s.getBytes("UTF-8");
-        bin = new ByteArrayInputStream(b);
-        bsize = b.length;
-      } catch (UnsupportedEncodingException e) {
-        throw new IllegalStateException(e.getMessage());
-      }
-      bpos = 0;
-      cpos = 0;
-    }
-    public void reset() throws IOException {
-      cin.reset();
-      bin.reset();
-      super.reset();
-    }
-    public void close() throws IOException {
-      try {
-        bin.close();
-      } finally {
-        cin = null;
-        bin = null;
-        buf = null;
-      }
-    }
-    int underlyingReadUtf8(char[] cbuf, int off, int len) throws IOException {
-      return cin.read(cbuf, off, len);
-    }
-    int underlyingReadBytes(byte[] bbuf, int off, int len) throws IOException {
-      return bin.read(bbuf, off, len);
+  // The file is copied onto the heap rather than mapped: a mapping outlives
+  // close() until it is garbage collected, and on some platforms keeps the
+  // file locked, so saving back over it would fail.
+  private static ByteBuffer readFile(File f) throws IOException {
+    try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      long n = ch.size();
+      if (n > Integer.MAX_VALUE)
+        throw new IOException("File is too large: " + f);
+      ByteBuffer b = ByteBuffer.allocate((int) n);
+      while (b.hasRemaining() && ch.read(b) >= 0)
+        ;
+      b.flip();
+      return b;
     }
   }
 
   private static class Adapter extends InputStream {
-    RandomAccessFile r;
-    int n;
-    Adapter(RandomAccessFile in) { r = in; }
-    public int read() throws IOException { return r.read(); }
-    public int read(byte[] b) throws IOException { return r.read(b); }
-    public int read(byte[] b, int off, int len) throws IOException { return r.read(b, off, len); }
+    ByteBuffer b;
+    Adapter(ByteBuffer in) { b = in; }
+    public int read() { return b.hasRemaining() ? (b.get() & 0xff) : -1; }
+    public int read(byte[] a, int off, int len) {
+      if (len == 0)
+        return 0;
+      if (!b.hasRemaining())
+        return -1;
+      len = Math.min(len, b.remaining());
+      b.get(a, off, len);
+      return len;
+    }
   }
 
-  private static class ReaderForFile extends BufferedLineReader {
-    RandomAccessFile bin;
+  private static class ReaderForBuffer extends BufferedLineReader {
+    ByteBuffer bin;
     Reader cin;
-    ReaderForFile(File f) throws IOException {
-      bin = new RandomAccessFile(f, "r");
-      cin = new InputStreamReader(new Adapter(bin), "UTF-8");
-      bsize = bin.length();
+    ReaderForBuffer(ByteBuffer b) {
+      bin = b;
+      cin = new InputStreamReader(new Adapter(bin), StandardCharsets.UTF_8);
+      bsize = bin.limit();
       bpos = 0;
       cpos = 0;
     }
     public void reset() throws IOException {
-      bin.seek(0);
-      cin = new InputStreamReader(new Adapter(bin), "UTF-8"); // ISR buffers internally
+      bin.position(0);
+      cin = new InputStreamReader(new Adapter(bin), StandardCharsets.UTF_8); // ISR buffers internally
       super.reset();
     }
     public void close() throws IOException {
-      try {
-        bin.close();
-      } finally {
-        bin = null;
-        cin = null;
-        buf = null;
-      }
+      bin = null;
+      cin = null;
+      buf = null;
+    }
+    public ByteBuffer contents() throws IOException {
+      if (bin == null)
+        throw new IOException("stream closed");
+      ByteBuffer b = bin.duplicate();
+      b.position(0);
+      return b;
     }
 
     int underlyingReadUtf8(char[] cbuf, int off, int len) throws IOException {
       return cin.read(cbuf, off, len);
     }
     int underlyingReadBytes(byte[] bbuf, int off, int len) throws IOException {
-      return bin.read(bbuf, off, len);
+      if (!bin.hasRemaining())
+        return -1;
+      len = Math.min(len, bin.remaining());
+      bin.get(bbuf, off, len);
+      return len;
     }
   }
 
@@ -180,6 +172,12 @@ abstract class BufferedLineReader {
   abstract int underlyingReadBytes(byte[] bbuf, int off, int len) throws IOException;
   public abstract void close() throws IOException;
 
+  /**
+   * Returns all of the underlying data, positioned at the start, independent
+   * of the read position of this reader.
+   */
+  public abstract ByteBuffer contents() throws IOException;
+
 
   public int readBytes(byte bbuf[], int off, int len) throws IOException {
     if (buf == null)
@@ -0,0 +1,386 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.hex;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.cburch.logisim.std.memory.MemContents;
+
+// Incremental decoder for memory contents as stored in .circ files, i.e. the
+// text produced by Rom's contents attribute: an "addr/data: A D" header line,
+// followed by "v2.0 raw" run-length data, optionally deflated and base64
+// encoded behind a "compressed" line (see HexFile.saveToStringForCircFile), or
+// by a "binary" line and the deflated, base64 encoded words themselves, each
+// stored big-endian in as few bytes as the data width allows (see
+// HexFile.saveForCircFile).
+// Characters are pushed in as an XML parser delivers them, and decoded words
+// are stored directly into MemContents pages, so large images never exist as
+// one big String. Malformed tokens are skipped, just as the non-interactive
+// HexFile parser does.
+public class CircContentsDecoder {
+
+  private static final String COMPRESSED = "compressed\n";
+  private static final String BINARY = "binary\n";
+  private static final int PAGE_SIZE = 4096; // matches MemContents paging
+
+  private static final int HEADER = 0; // reading "addr/data: A D" line
+  private static final int PREFIX = 1; // looking for "compressed" line
+  private static final int RAW = 2; // plain run-length text
+  private static final int BASE64 = 3; // deflated, base64 run-length text
+  private static final int BINARY64 = 4; // deflated, base64 binary words
+  private static final int REJECTED = 5; // not memory contents after all
+
+  private int state = HEADER;
+  private StringBuilder pending = new StringBuilder();
+  private MemContents dst;
+  private long end;
+
+  // run-length tokenizer state
+  private boolean lineStart = true, firstLine = true, skipLine = false;
+  private boolean inToken = false, starSeen = false, badToken = false;
+  private boolean decimal = true;
+  private long hex, count;
+  private int digits;
+
+  // buffered words, flushed to dst one page at a time
+  private int[] buf = new int[PAGE_SIZE];
+  private int bufLen;
+  private long bufStart, addr;
+
+  // base64 and inflater state
+  private int quad, quadLen;
+  private boolean padded;
+  private byte[] zin = new byte[3 * 1024];
+  private int zinLen;
+  private byte[] zout = new byte[16 * 1024];
+  private Inflater inflater;
+
+  // binary word assembly
+  private int bytesPerWord, wordBytes, word;
+
+  public CircContentsDecoder() { }
+
+  // Creates a decoder for text that has no "addr/data:" header line, with the
+  // memory dimensions given directly.
+  public CircContentsDecoder(int addrBits, int width) {
+    start(MemContents.create(addrBits, width));
+  }
+
+  // Pushes more characters into the decoder. Returns false once it is clear
+  // that the text is not memory contents, in which case getRejectedText()
+  // returns the characters consumed so far, and nothing more should be fed.
+  public boolean feed(char[] text, int off, int len) {
+    if (state == REJECTED)
+      return false;
+    int stop = off + len;
+    for (int i = off; i < stop; i++) {
+      if (state == REJECTED) {
+        pending.append(text, i, stop - i);
+        return false;
+      }
+      char c = text[i];
+      switch (state) {
+      case HEADER:
+        pending.append(c);
+        if (c == '\n')
+          parseHeader();
+        else if (pending.length() > 200)
+          state = REJECTED;
+        break;
+      case PREFIX:
+        pending.append(c);
+        String p = pending.toString();
+        if (p.equals(COMPRESSED) || p.equals(BINARY)) {
+          state = p.equals(BINARY) ? BINARY64 : BASE64;
+          inflater = new Inflater();
+          pending = null;
+        } else if (!COMPRESSED.startsWith(p) && !BINARY.startsWith(p)) {
+          state = RAW;
+          for (int j = 0; j < p.length(); j++)
+            rawChar(p.charAt(j));
+          pending = null;
+        }
+        break;
+      case RAW:
+        rawChar(c);
+        break;
+      case BASE64:
+      case BINARY64:
+        base64Char(c);
+        break;
+      }
+    }
+    return state != REJECTED;
+  }
+
+  public boolean isRejected() {
+    return state == REJECTED;
+  }
+
+  public String getRejectedText() {
+    return pending == null ? "" : pending.toString();
+  }
+
+  // Completes decoding, returning the memory contents, or null if the text
+  // did not look like memory contents.
+  public MemContents finish() {
+    if (state == HEADER && pending.length() > 0)
+      parseHeader();
+    if (state == REJECTED || dst == null)
+      return null;
+    if (state == PREFIX)
+      for (int j = 0; j < pending.length(); j++)
+        rawChar(pending.charAt(j));
+    if (state == BASE64 || state == BINARY64) {
+      inflate();
+      inflater.end();
+    }
+    endToken();
+    flush();
+    return dst;
+  }
+
+  private void parseHeader() {
+    String[] toks = pending.toString().trim().split("\\s+");
+    if (toks.length != 3 || !toks[0].equals("addr/data:")) {
+      state = REJECTED;
+      return;
+    }
+    try {
+      int addrBits = Integer.parseInt(toks[1]);
+      int width = Integer.parseInt(toks[2]);
+      start(MemContents.create(addrBits, width));
+    } catch (RuntimeException e) {
+      state = REJECTED;
+    }
+  }
+
+  private void start(MemContents mem) {
+    dst = mem;
+    end = dst.getLastOffset();
+    bytesPerWord = (dst.getWidth() + 7) / 8;
+    pending = new StringBuilder();
+    state = PREFIX;
+  }
+
+  private void base64Char(char c) {
+    int v;
+    if (c >= 'A' && c <= 'Z')
+      v = c - 'A';
+    else if (c >= 'a' && c <= 'z')
+      v = c - 'a' + 26;
+    else if (c >= '0' && c <= '9')
+      v = c - '0' + 52;
+    else if (c == '+')
+      v = 62;
+    else if (c == '/')
+      v = 63;
+    else {
+      if (c == '=' && !padded) {
+        padded = true;
+        // emit whatever complete bytes the partial quad holds
+        if (quadLen == 2) {
+          zin[zinLen++] = (byte) (quad >> 4);
+        } else if (quadLen == 3) {
+          zin[zinLen++] = (byte) (quad >> 10);
+          zin[zinLen++] = (byte) (quad >> 2);
+        }
+        quadLen = 0;
+        inflate();
+      }
+      return; // line breaks and other MIME noise are ignored
+    }
+    if (padded)
+      return;
+    quad = (quad << 6) | v;
+    if (++quadLen == 4) {
+      zin[zinLen++] = (byte) (quad >> 16);
+      zin[zinLen++] = (byte) (quad >> 8);
+      zin[zinLen++] = (byte) quad;
+      quad = 0;
+      quadLen = 0;
+      if (zinLen == zin.length)
+        inflate();
+    }
+  }
+
+  private void inflate() {
+    inflater.setInput(zin, 0, zinLen);
+    zinLen = 0;
+    try {
+      while (!inflater.needsInput() && !inflater.finished()) {
+        int n = inflater.inflate(zout);
+        if (state == BINARY64) {
+          for (int i = 0; i < n; i++)
+            binaryByte(zout[i] & 0xff);
+        } else {
+          for (int i = 0; i < n; i++)
+            rawChar((char) (zout[i] & 0xff));
+        }
+        if (n == 0 && inflater.needsDictionary())
+          break;
+      }
+    } catch (DataFormatException e) {
+      // treat corrupt data like the end of the stream
+      inflater.end();
+      inflater = new Inflater();
+      padded = true;
+    }
+  }
+
+  private void binaryByte(int b) {
+    word = (word << 8) | b;
+    if (++wordBytes == bytesPerWord) {
+      put(word, 1);
+      word = 0;
+      wordBytes = 0;
+    }
+  }
+
+  private void rawChar(char c) {
+    if (c == '\n') {
+      endToken();
+      if (!lineStart)
+        firstLine = false;
+      lineStart = true;
+      skipLine = false;
+      return;
+    }
+    if (skipLine)
+      return;
+    if (c == '#') {
+      endToken();
+      skipLine = true;
+      return;
+    }
+    if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+      endToken();
+      return;
+    }
+    if (lineStart && firstLine && !inToken && c == 'v') {
+      // optional "v2.0 raw" header line
+      skipLine = true;
+      lineStart = false;
+      return;
+    }
+    lineStart = false;
+    if (!inToken) {
+      inToken = true;
+      starSeen = false;
+      badToken = false;
+      decimal = true;
+      hex = 0;
+      count = 0;
+      digits = 0;
+    }
+    if (c == '*') {
+      if (starSeen || digits == 0 || !decimal)
+        badToken = true;
+      starSeen = true;
+      hex = 0;
+      digits = 0;
+      return;
+    }
+    int d = hexDigit(c);
+    if (d < 0) {
+      badToken = true;
+      return;
+    }
+    if (!starSeen) {
+      if (d >= 10)
+        decimal = false;
+      else
+        count = count * 10 + d;
+    }
+    hex = (hex << 4) | d;
+    if (++digits > 16)
+      badToken = true;
+  }
+
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9')
+      return c - '0';
+    else if (c >= 'a' && c <= 'f')
+      return 0xa + (c - 'a');
+    else if (c >= 'A' && c <= 'F')
+      return 0xA + (c - 'A');
+    else
+      return -1;
+  }
+
+  private void endToken() {
+    if (!inToken)
+      return;
+    inToken = false;
+    if (badToken || digits == 0)
+      return;
+    if (starSeen)
+      put((int) hex, count);
+    else
+      put((int) hex, 1);
+  }
+
+  private void put(int value, long n) {
+    if (addr > end)
+      return;
+    n = Math.min(n, end - addr + 1);
+    if (n > 16) {
+      // long runs skip the word buffer; zero runs need no storage at all
+      flush();
+      if (value != 0)
+        dst.fill(addr, n, value);
+      addr += n;
+      return;
+    }
+    for (long i = 0; i < n; i++) {
+      if (bufLen == 0)
+        bufStart = addr;
+      buf[bufLen++] = value;
+      addr++;
+      if ((addr % PAGE_SIZE) == 0)
+        flush();
+    }
+  }
+
+  private void flush() {
+    if (bufLen == 0)
+      return;
+    if (bufLen == buf.length) {
+      dst.set(bufStart, buf);
+    } else {
+      int[] vals = new int[bufLen];
+      System.arraycopy(buf, 0, vals, 0, bufLen);
+      dst.set(bufStart, vals);
+    }
+    bufLen = 0;
+  }
+}
@@ -158,6 +158,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -165,6 +166,9 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
@@ -193,6 +197,7 @@ import java.awt.Dialog;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Frame;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
@@ -770,9 +775,9 @@ public class HexFile {
     }
 
     MemContents warnAndAsk(String errmsg) throws IOException {
-      if (Main.headless) {
-        System.out.println(errmsg);
-        System.out.println("Warnings:\n" + warnings.toString());
+      if (Main.headless || GraphicsEnvironment.isHeadless()) {
+        System.err.println(errmsg);
+        System.err.println("Warnings:\n" + warnings.toString());
         return null;
       }
       HexFormatDialog d = new HexFormatDialog(errmsg, this);
@@ -786,9 +791,16 @@ public class HexFile {
       if (in.byteLength() == 0)
         throw new IOException("File contains no data.");
 
-      String hdr = in.readLine();
-      while (hdr != null && (hdr = hdr.trim()).length() == 0)
-        hdr = in.readLine();
+      // the header is the first non-blank line
+      text = in.contents();
+      textPos = 0;
+      String hdr = null;
+      while (hdr == null && textPos < text.limit()) {
+        int s = textPos;
+        hdr = ascii(s, scanLine()).trim();
+        if (hdr.length() == 0)
+          hdr = null;
+      }
 
       if (hdr == null)
         return warnAndAsk("File does not contain any header, and appears to contain only whitespace.");
@@ -845,21 +857,26 @@ public class HexFile {
       return dst;
     }
 
+    private ByteBuffer text; // the whole input, scanned in place
+    private int textPos; // start of the next line not yet scanned
     private int curLineNo;
-    private String curLine;
-    private String curWords[];
-    private int curWordIdx;
+    private boolean haveLine;
+    private int lineStart, lineEnd; // current line, without comment
+    private int[] wordStart = new int[64], wordEnd = new int[64];
+    private int numWords, curWordIdx;
     private boolean skipDoubleSpaces;
 
     void reset() throws IOException {
       in.reset();
+      text = in.contents();
+      textPos = 0;
       dst.clear();
       curLineNo = 0;
       decodedWordCount = 0;
       warnings.getBuffer().setLength(0);
       numWarnings = 0;
-      curLine = null;
-      curWords = null;
+      haveLine = false;
+      numWords = 0;
       curWordIdx = 0;
       skipDoubleSpaces = false;
       bLen = 0;
@@ -872,46 +889,189 @@ public class HexFile {
       bigEndian = bigEndian();
     }
 
+    private int at(int p) {
+      return text.get(p) & 0xff;
+    }
+
+    // Same as the characters matched by "\\s" in String.split().
+    private boolean isSpace(int c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r';
+    }
+
+    // Scans the next line, returning its end, and advances textPos past the
+    // line terminator (any of "\n", "\r", or "\r\n", as for readLine()).
+    private int scanLine() {
+      int limit = text.limit();
+      int e = textPos;
+      while (e < limit && at(e) != '\n' && at(e) != '\r')
+        e++;
+      if (e < limit && at(e) == '\r' && e + 1 < limit && at(e + 1) == '\n')
+        textPos = e + 2;
+      else
+        textPos = Math.min(e + 1, limit);
+      return e;
+    }
+
+    private String ascii(int s, int e) {
+      byte[] b = new byte[e - s];
+      for (int i = s; i < e; i++)
+        b[i - s] = text.get(i);
+      return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // Finds the next line with any words on it, after removing comments and
+    // trimming, and splits it into words, all in place and mostly in a
+    // single pass over the line.
     private void findNonemptyLine(boolean skipHeader) throws IOException {
-      curLine = null;
-      curWords = null;
+      haveLine = false;
       curWordIdx = 0;
-      for (String line = in.readLine(); line != null; line = in.readLine()) {
+      int limit = text.limit();
+      while (textPos < limit) {
         curLineNo++;
-        int index = line.indexOf("#");
-        if (index >= 0)
-          line = line.substring(0, index);
+        numWords = 0;
+        int ls = textPos, p = textPos, ce = -1;
+        for (; p < limit; p++) {
+          int c = at(p);
+          if (c == '\n' || c == '\r')
+            break;
+          if (ce >= 0 || isSpace(c))
+            continue;
+          if (c == '#') {
+            ce = p;
+            continue;
+          }
+          if (numWords == wordStart.length) {
+            wordStart = Arrays.copyOf(wordStart, 2 * numWords);
+            wordEnd = Arrays.copyOf(wordEnd, 2 * numWords);
+          }
+          wordStart[numWords] = p;
+          while (p + 1 < limit && !isSpace(c = at(p + 1)) && c != '#')
+            p++;
+          wordEnd[numWords++] = p + 1;
+        }
+        if (ce < 0)
+          ce = p;
+        if (p < limit && at(p) == '\r' && p + 1 < limit && at(p + 1) == '\n')
+          textPos = p + 2;
+        else
+          textPos = Math.min(p + 1, limit);
+
+        boolean trimmed = false;
         if (skipHeader) {
-          line = line.trim();
-          if (line.length() == 0)
+          trimWords();
+          trimmed = true;
+          if (numWords == 0)
             continue;
           skipHeader = false;
-          if (line.charAt(0) == 'v')
+          if (at(wordStart[0]) == 'v')
             continue;
         }
-        int idx;
-        if (skipDoubleSpaces && (idx = line.indexOf("  ")) >= 0)
-          line = line.substring(0, idx);
-        line = line.trim();
-        if (line.length() == 0)
+        if (skipDoubleSpaces && numWords > 0) {
+          // The line ends at the first double space, which can only be
+          // between words (or before the first, if not already trimmed).
+          int from = trimmed ? wordStart[0] : ls;
+          for (int w = 0; w < numWords; w++) {
+            int gs = w == 0 ? from : wordEnd[w - 1];
+            if (hasDoubleSpace(gs, wordStart[w])) {
+              numWords = w;
+              break;
+            }
+          }
+        }
+        trimWords();
+        if (numWords == 0)
           continue;
-        String[] t = line.split("\\s+");
-        if (t.length > 0) {
-          curLine = line;
-          curWords = t;
-          return;
+        haveLine = true;
+        lineStart = wordStart[0];
+        lineEnd = wordEnd[numWords - 1];
+        return;
+      }
+      numWords = 0;
+    }
+
+    private boolean hasDoubleSpace(int s, int e) {
+      for (int i = s; i + 1 < e; i++) {
+        if (at(i) == ' ' && at(i + 1) == ' ')
+          return true;
+      }
+      return false;
+    }
+
+    // Removes the other control characters that String.trim() would, which
+    // the split into words has left at either end of the line.
+    private void trimWords() {
+      while (numWords > 0 && at(wordStart[0]) <= ' ') {
+        if (++wordStart[0] == wordEnd[0]) {
+          numWords--;
+          System.arraycopy(wordStart, 1, wordStart, 0, numWords);
+          System.arraycopy(wordEnd, 1, wordEnd, 0, numWords);
         }
       }
+      while (numWords > 0 && at(wordEnd[numWords - 1] - 1) <= ' ') {
+        if (--wordEnd[numWords - 1] == wordStart[numWords - 1])
+          numWords--;
+      }
     }
 
-    private String nextWord() throws IOException {
-      return hasNextWord() ? curWords[curWordIdx++] : null;
+    // Returns the index of the next word, or -1 if there are no more.
+    private int nextWord() throws IOException {
+      return hasNextWord() ? curWordIdx++ : -1;
     }
 
     public boolean hasNextWord() throws IOException {
-      if (curWords == null || curWordIdx >= curWords.length)
+      if (!haveLine || curWordIdx >= numWords)
         findNonemptyLine(false);
-      return curWords != null;
+      return haveLine;
+    }
+
+    private String word(int w) {
+      return ascii(wordStart[w], wordEnd[w]);
+    }
+
+    private boolean hexPrefix(int s, int e) {
+      return e - s >= 2 && at(s) == '0' && (at(s + 1) == 'x' || at(s + 1) == 'X');
+    }
+
+    // Warns about a character that is not a hex digit, returning the number of
+    // bytes it occupies (more than one for non-ASCII characters).
+    private int warnNotHex(int p, int e) {
+      int c = at(p);
+      int n = c >= 0xf0 ? 4 : c >= 0xe0 ? 3 : c >= 0xc0 ? 2 : 1;
+      if (p + n > e)
+        n = 1;
+      for (int i = 1; i < n; i++) {
+        if ((at(p + i) & 0xc0) != 0x80)
+          n = 1;
+      }
+      warn("Character '%s' is not a hex digit.",
+          OutputStreamEscaper.escape(ascii(p, p + n)));
+      return n;
+    }
+
+    // Parses text[s..e) like Long.parseLong(), returning false if invalid.
+    private long parsed;
+    private boolean parseLong(int s, int e, int radix) {
+      if (s >= e)
+        return false;
+      boolean neg = false;
+      if (at(s) == '-' || at(s) == '+') {
+        neg = at(s) == '-';
+        if (++s >= e)
+          return false;
+      }
+      long limit = neg ? Long.MIN_VALUE : -Long.MAX_VALUE;
+      long val = 0; // accumulated negatively, as Long.parseLong() does
+      for (int i = s; i < e; i++) {
+        int d = hex2int(at(i));
+        if (d < 0 || d >= radix || val < limit / radix)
+          return false;
+        val *= radix;
+        if (val < limit + d)
+          return false;
+        val -= d;
+      }
+      parsed = neg ? val : -val;
+      return true;
     }
 
     private int[] subarray(int[] a, int n) {
@@ -972,36 +1132,36 @@ public class HexFile {
       }
       if (pos >= data.length)
         return data;
-      for (String word = nextWord(); word != null; word = nextWord()) {
-        int star = word.indexOf("*");
-        if (star < 0) {
-          try {
-            rleValue = Long.parseLong(word, 16);
-          } catch (NumberFormatException e) {
-            warn("\"%s\" is not valid hex data.", word);
+      for (int w = nextWord(); w >= 0; w = nextWord()) {
+        int s = wordStart[w], e = wordEnd[w];
+        int star = s;
+        while (star < e && at(star) != '*')
+          star++;
+        if (star == e) {
+          if (!parseLong(s, e, 16)) {
+            warn("\"%s\" is not valid hex data.", word(w));
             continue;
           }
+          rleValue = parsed;
           rleCount = 1;
-        } else if (star == 0) {
-          warn("Run-length encoded token \"%s\" missing count, use \"count*data\" instead.", word);
+        } else if (star == s) {
+          warn("Run-length encoded token \"%s\" missing count, use \"count*data\" instead.", word(w));
           continue;
-        } else if (star == word.length() - 1) {
-          warn("Run-length encoded token \"%s\" missing hex data, use \"count*data\" instead.", word);
+        } else if (star == e - 1) {
+          warn("Run-length encoded token \"%s\" missing hex data, use \"count*data\" instead.", word(w));
           continue;
         } else {
-          try {
-            rleCount = Long.parseLong(word.substring(0, star));
-          } catch (NumberFormatException e) {
-            warn("\"%s\" is not valid (base-10 decimal) count.", word.substring(0, star));
+          if (!parseLong(s, star, 10)) {
+            warn("\"%s\" is not valid (base-10 decimal) count.", ascii(s, star));
             continue;
           }
-          try {
-            rleValue = Long.parseLong(word.substring(star + 1), 16);
-          } catch (NumberFormatException e) {
-            warn("\"%s\" is not valid hex data.", word.substring(star + 1));
+          rleCount = parsed;
+          if (!parseLong(star + 1, e, 16)) {
+            warn("\"%s\" is not valid hex data.", ascii(star + 1, e));
             rleCount = 0;
             continue;
           }
+          rleValue = parsed;
         }
         int n = (int) Math.min(data.length - pos, rleCount);
         Arrays.fill(data, pos, pos + n, (int) rleValue);
@@ -1051,11 +1211,13 @@ public class HexFile {
             nbits -= mWidth;
           }
         }
-        // there may be a few (nbits) bits of a partial word leftover
+        // there may be a few (nbits) bits of a partial word leftover, which
+        // don't count as a decoded word: at the end of the input they are
+        // just the padding of the last byte
         if (nbits > 0) {
-          set(mAddr, dst.get(mAddr) | (val  << (mWidth - nbits)));
+          if (mAddr <= mEnd)
+            dst.set(mAddr, (int)(dst.get(mAddr) | (val  << (mWidth - nbits))));
           mAddrFrac = nbits;
-          decodedWordCount--;
         } else  {
           mAddrFrac = 0;
         }
@@ -1072,11 +1234,11 @@ public class HexFile {
             val = val >>> mWidth;
           }
         }
-        // there may be a few (nbits) bits of a partial word leftover
+        // there may be a few (nbits) bits of a partial word leftover, as above
         if (nbits > 0) {
-          set(mAddr, get(mAddr) | val);
+          if (mAddr <= mEnd)
+            dst.set(mAddr, (int)(get(mAddr) | val));
           mAddrFrac = nbits;
-          decodedWordCount--;
         } else  {
           mAddrFrac = 0;
         }
@@ -1092,17 +1254,19 @@ public class HexFile {
 
     void decodeHexAuto() throws IOException {
       findNonemptyLine(true);
-      if (curLine == null) {
+      if (!haveLine) {
         // File appears to contain no data, only maybe some whitespace,
         // comments, and/or a header line.
         return;
-      } else if (curLine.indexOf(":") >= 0) {
-        reset();
+      }
+      boolean colon = false;
+      for (int i = lineStart; i < lineEnd && !colon; i++)
+        colon = at(i) == ':';
+      reset();
+      if (colon)
         decodeHexAddressed();
-      } else {
-        reset();
+      else
         decodeHexPlain();
-      }
     }
 
     void decodeHexPlain() throws IOException {
@@ -1116,18 +1280,17 @@ public class HexFile {
       bLen = 0;
       findNonemptyLine(true);
       boolean left = true;
-      String word;
-      while ((word = nextWord()) != null) {
-        int i = 0, n = word.length();
-        if (n >= 2 && (word.startsWith("0x") || word.startsWith("0X")))
+      for (int w = nextWord(); w >= 0; w = nextWord()) {
+        int i = wordStart[w], n = wordEnd[w];
+        if (hexPrefix(i, n))
           i += 2;
-        for (; i < n; i++) {
-          int d = hex2int(word.charAt(i));
+        while (i < n) {
+          int d = hex2int(at(i));
           if (d < 0) {
-            warn("Character '%s' is not a hex digit.",
-                OutputStreamEscaper.escape(word.charAt(i)));
+            i += warnNotHex(i, n);
             continue;
           }
+          i++;
           if (left)
             bytes[bLen++] = (byte)(d << 4);
           else
@@ -1146,19 +1309,18 @@ public class HexFile {
     void decodeHexPlainWords() throws IOException {
       long offs = 0;
       findNonemptyLine(true);
-      String word;
-      while ((word = nextWord()) != null) {
-        int i = 0, n = word.length();
-        if (n >= 2 && (word.startsWith("0x") || word.startsWith("0X")))
+      for (int w = nextWord(); w >= 0; w = nextWord()) {
+        int i = wordStart[w], n = wordEnd[w];
+        if (hexPrefix(i, n))
           i += 2;
         int v = 0;
-        for (; i < n; i++) {
-          int d = hex2int(word.charAt(i));
+        while (i < n) {
+          int d = hex2int(at(i));
           if (d < 0) {
-            warn("Character '%s' is not a hex digit.",
-                OutputStreamEscaper.escape(word.charAt(i)));
+            i += warnNotHex(i, n);
             continue;
           }
+          i++;
           v = (v << 4) | d;
         }
         set(offs++, v);
@@ -1172,24 +1334,35 @@ public class HexFile {
         decodeHexAddressedBytes();
     }
 
+    // Parses the "addr:" that starts the current line of an addressed
+    // style file, returning the address, or -1 if it is not valid hex. Sets
+    // dataWord to the first word following the address.
+    private int dataWord;
+    private long lineAddress() {
+      int s = wordStart[0], e = wordEnd[0];
+      boolean foundColon = at(e - 1) == ':';
+      if (hexPrefix(s, e))
+        s += 2;
+      if (foundColon)
+        e = Math.max(s, e - 1);
+      dataWord = 1;
+      if (!foundColon && numWords >= 2
+          && wordEnd[1] - wordStart[1] == 1 && at(wordStart[1]) == ':')
+        dataWord++;
+      return hex2ulong(s, e);
+    }
+
     void decodeHexAddressedBytes() throws IOException {
       // byte addressed style:
       // 0000: 00 00 00 00  [ascii] # comments
       skipDoubleSpaces = true;
       findNonemptyLine(true);
-      while (curWords != null) {
+      while (haveLine) {
         // first word should be "addr:"
-        String addr = curWords[0];
-        boolean foundColon = addr.endsWith(":");
-        boolean stripOx = addr.startsWith("0x") || addr.startsWith("0X");
-        if (foundColon)
-          addr = addr.substring(stripOx ? 2 : 0, addr.length() - 1);
-        else if (stripOx)
-          addr = addr.substring(2);
         bLen = 0;
-        long boffs = hex2ulong(addr);
+        long boffs = lineAddress();
         if (boffs < 0) {
-          warn("\"%s\" is not a valid hex address.", addr);
+          warn("\"%s\" is not a valid hex address.", addressText());
           // Continue on with previous address, I guess?
         } else {
           // reposition
@@ -1198,22 +1371,18 @@ public class HexFile {
           mAddr = (boffs * 8) / mWidth;
           mAddrFrac = (boffs * 8) % mWidth;
         }
-        int i = 1, n = curWords.length;
-        if (!foundColon && n >= 2 && curWords[1].equals(":"))
-          i++;
-        for (; i < n; i++) {
-          String word = curWords[i];
+        for (int w = dataWord; w < numWords; w++) {
           boolean left = true;
-          int j = 0, m = word.length();
-          if (word.startsWith("0x") || word.startsWith("0X"))
-            j = 2;
-          for (; j < m; j++) {
-            int d = hex2int(word.charAt(j));
+          int j = wordStart[w], m = wordEnd[w];
+          if (hexPrefix(j, m))
+            j = j + 2;
+          while (j < m) {
+            int d = hex2int(at(j));
             if (d < 0) {
-              warn("Character '%s' is not a hex digit.",
-                  OutputStreamEscaper.escape(word.charAt(j)));
+              j += warnNotHex(j, m);
               continue;
             }
+            j++;
             if (left)
               bytes[bLen++] = (byte)(d << 4);
             else
@@ -1231,39 +1400,39 @@ public class HexFile {
       }
     }
 
+    // The address word of the current line, as shown in warnings.
+    private String addressText() {
+      int s = wordStart[0], e = wordEnd[0];
+      boolean foundColon = at(e - 1) == ':';
+      boolean stripOx = hexPrefix(s, e);
+      if (foundColon)
+        return ascii(stripOx ? s + 2 : s, Math.max(stripOx ? s + 2 : s, e - 1));
+      return ascii(stripOx ? s + 2 : s, e);
+    }
+
     void decodeHexAddressedWords() throws IOException {
       // word addressed style:
       // 0000: 0000 0000 0000 0000  [ascii] # comments
       findNonemptyLine(true);
       skipDoubleSpaces = true;
       long offs = 0;
-      while (curWords != null) {
+      while (haveLine) {
         // first word should be "addr:"
-        String addr = curWords[0];
-        boolean foundColon = addr.endsWith(":");
-        boolean stripOx = addr.startsWith("0x") || addr.startsWith("0X");
-        if (foundColon)
-          addr = addr.substring(stripOx ? 2 : 0, addr.length() - 1);
-        else if (stripOx)
-          addr = addr.substring(2);
-        long a = hex2ulong(addr);
+        long a = lineAddress();
         if (a < 0) {
-          warn("\"%s\" is not a valid hex address.", curWords[0]);
+          warn("\"%s\" is not a valid hex address.", word(0));
           // Continue on with previous address, I guess?
         } else {
           offs = a;
         }
-        int i = 1, n = curWords.length;
-        if (!foundColon && n >= 2 && curWords[1].equals(":"))
-          i++;
-        for (; i < n; i++) {
-          String word = curWords[i];
-          if (word.startsWith("0x") || word.startsWith("0X"))
-            word = word.substring(2);
-          long val = hex2ulong(word);
+        for (int w = dataWord; w < numWords; w++) {
+          int s = wordStart[w], e = wordEnd[w];
+          if (hexPrefix(s, e))
+            s += 2;
+          long val = hex2ulong(s, e);
           if (val < 0) {
             warn("Data word \"%s\" contains non-hex characters.",
-                OutputStreamEscaper.escape(word));
+                OutputStreamEscaper.escape(ascii(s, e)));
             continue;
           }
           set(offs++, val);
@@ -1274,12 +1443,45 @@ public class HexFile {
 
     void decodeBinary() throws IOException {
       bLen = 0;
-      int n = in.readBytes(bytes, 0, 4096);
-      while (n > 0) {
+      int p = 0, limit = text.limit();
+      if (mWidth % 8 == 0) {
+        // Fast path for byte-sized words: decode whole words straight from
+        // the buffer, a page of memory at a time.
+        int k = mWidth / 8;
+        ByteBuffer b = text.duplicate().order(bigEndian
+            ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int[] words = new int[4096];
+        while (limit - p >= k && mAddr <= mEnd) {
+          int n = (int) Math.min((limit - p) / k, mEnd - mAddr + 1);
+          n = Math.min(n, words.length - (int) (mAddr & (words.length - 1)));
+          for (int i = 0; i < n; i++, p += k) {
+            if (k == 1)
+              words[i] = b.get(p) & 0xff;
+            else if (k == 2)
+              words[i] = b.getShort(p) & 0xffff;
+            else if (k == 4)
+              words[i] = b.getInt(p);
+            else if (bigEndian)
+              words[i] = ((b.get(p) & 0xff) << 16) | (b.getShort(p + 1) & 0xffff);
+            else
+              words[i] = (b.getShort(p) & 0xffff) | ((b.get(p + 2) & 0xff) << 16);
+          }
+          dst.set(mAddr, subarray(words, n));
+          mAddr += n;
+          mMaxAddr = Math.max(mMaxAddr, mAddr - 1);
+          decodedWordCount += n;
+        }
+      }
+      // anything left over goes through the general, bit-at-a-time path, in
+      // the same 4096-byte blocks as always so decoding halts at the same place
+      while (p < limit) {
+        int n = Math.min(4096 - (p & 4095), limit - p);
+        for (int i = 0; i < n; i++)
+          bytes[bLen + i] = text.get(p + i);
+        p += n;
         bLen += n;
         if (!deliver())
           return;
-        n = in.readBytes(bytes, bLen, 4096 - bLen);
       }
     }
 
@@ -1305,65 +1507,70 @@ public class HexFile {
       return val;
     }
 
+    private long hex2ulong(int s, int e) {
+      long val = 0;
+      for (int i = s; i < e; i++) {
+        int d = hex2int(at(i));
+        if (d < 0)
+          return d;
+        val = (val << 4) + d;
+      }
+      return val;
+    }
+
     void decodeEscapedAscii() throws IOException {
-      byte[] buf = new byte[4096];
       bLen = 0;
-      int n = in.readBytes(buf, 0, 4096);
       curLineNo = 1;
       int esc = 0;
       int ehex = 0;
-      while (n > 0) {
-        // decode buf[] into bytes[]
-        for (int i = 0; i < n; i++) {
-          byte c = buf[i];
-          if (c == '\n')
-            curLineNo++;
-          if (c < 0x20 || c > 0x7E)
-            continue;
-          if (esc == 3) { // backslash "x" hexdigit __
-            int d = hex2int(c);
-            if (d < 0)
-              warn("Invalid hex escape sequence.");
-            else
-              bytes[bLen++] = (byte)(16 * ehex + d);
+      int limit = text.limit();
+      for (int i = 0; i < limit; i++) {
+        int c = at(i);
+        if (c == '\n')
+          curLineNo++;
+        if (c < 0x20 || c > 0x7E) {
+          // silently ignore
+        } else if (esc == 3) { // backslash "x" hexdigit __
+          int d = hex2int(c);
+          if (d < 0)
+            warn("Invalid hex escape sequence.");
+          else
+            bytes[bLen++] = (byte)(16 * ehex + d);
+          esc = 0;
+        } else if (esc == 2) { // backslash "x" __ __
+          int d = hex2int(c);
+          if (d < 0) {
+            warn("Invalid hex escape sequence.");
             esc = 0;
-          } else if (esc == 2) { // backslash "x" __ __
-            int d = hex2int(c);
-            if (d < 0) {
-              warn("Invalid hex escape sequence.");
-              esc = 0;
-            } else {
-              ehex = d;
-              esc++;
-            }
-          } else if (esc == 1 && c == 'x') {
+          } else {
+            ehex = d;
             esc++;
-          } else if (esc == 1) {
-            esc = 0;
-            if (c == 'n') bytes[bLen++] = 0x0a;
-            else if (c == 'r') bytes[bLen++] = 0x0d;
-            else if (c == 't') bytes[bLen++] = 0x09;
-            else if (c == '0') bytes[bLen++] = 0x00;
-            else if (c == '\\') bytes[bLen++] = 0x5c;
-            else if (c == '\'') bytes[bLen++] = 0x27;
-            else if (c == '\"') bytes[bLen++] = 0x22;
-            else if (c == 'a') bytes[bLen++] = 0x07;
-            else if (c == 'b') bytes[bLen++] = 0x08;
-            else if (c == 'v') bytes[bLen++] = 0x0b;
-            else if (c == 'f') bytes[bLen++] = 0x0c;
-            else if (c == '?') bytes[bLen++] = 0x3f;
-            else warn("Invalid ascii escape sequence.");
-          } else if (c == '\\') {
-            esc = 1;
-          } else if (c >= 0x20 && c <= 0x7E) {
-            bytes[bLen++] = c;
-          } // else silently ignore
+          }
+        } else if (esc == 1 && c == 'x') {
+          esc++;
+        } else if (esc == 1) {
+          esc = 0;
+          if (c == 'n') bytes[bLen++] = 0x0a;
+          else if (c == 'r') bytes[bLen++] = 0x0d;
+          else if (c == 't') bytes[bLen++] = 0x09;
+          else if (c == '0') bytes[bLen++] = 0x00;
+          else if (c == '\\') bytes[bLen++] = 0x5c;
+          else if (c == '\'') bytes[bLen++] = 0x27;
+          else if (c == '\"') bytes[bLen++] = 0x22;
+          else if (c == 'a') bytes[bLen++] = 0x07;
+          else if (c == 'b') bytes[bLen++] = 0x08;
+          else if (c == 'v') bytes[bLen++] = 0x0b;
+          else if (c == 'f') bytes[bLen++] = 0x0c;
+          else if (c == '?') bytes[bLen++] = 0x3f;
+          else warn("Invalid ascii escape sequence.");
+        } else if (c == '\\') {
+          esc = 1;
+        } else {
+          bytes[bLen++] = (byte)c;
         }
-        // deliver the bytes, move remaining to front of array
-        if (!deliver())
+        // deliver the bytes after each 4096-byte block of input
+        if ((((i + 1) & 4095) == 0 || i + 1 == limit) && !deliver())
           return;
-        // get more data, but not too much that bytes[] might overflow
-        n = in.readBytes(buf, 0, 4096 - bLen);
       }
       if (esc != 0)
         warn("Truncated escape sequence at end of file.");
@@ -1399,7 +1606,7 @@ public class HexFile {
     return open(dst, src, null);
   }
 
-  private static boolean open(MemContents dst, File src, String desc) throws IOException {
+  static boolean open(MemContents dst, File src, String desc) throws IOException {
     BufferedLineReader in = BufferedLineReader.forFile(src);
     try {
       HexReader r = new HexReader(in, dst.getLogLength(), dst.getValueWidth());
@@ -1451,6 +1658,15 @@ public class HexFile {
       src = result.toString("UTF-8");
       uncompress.close();
     }
+    if (src.startsWith("binary\n")) {
+      CircContentsDecoder decoder = new CircContentsDecoder(addrSize, wordSize);
+      char[] chars = src.toCharArray();
+      decoder.feed(chars, 0, chars.length);
+      MemContents dst = decoder.finish();
+      if (dst == null)
+        throw new IOException("malformed binary memory contents");
+      return dst;
+    }
     return parse(false, src, "v2.0 raw", addrSize, wordSize).model;
   }
 
@@ -1471,7 +1687,7 @@ public class HexFile {
     }
   }
 
-  private static void save(File f, MemContents src, String desc) throws IOException {
+  static void save(File f, MemContents src, String desc) throws IOException {
     OutputStream out;
     try {
       out = new FileOutputStream(f);
@@ -1509,6 +1725,107 @@ public class HexFile {
     }
   }
 
+  // Streaming counterpart to saveToStringForCircFile(), producing the same
+  // text directly on out, without first building it in memory. If binary is
+  // set, the words are instead written in a compact form: a "binary" line,
+  // then the words packed big-endian into (width+7)/8 bytes each, deflated
+  // and base64 encoded. Only plain ascii is written, and out is not closed.
+  public static void saveForCircFile(MemContents src, OutputStream out,
+      boolean binary) throws IOException {
+    if (binary) {
+      out.write("binary\n".getBytes("UTF-8"));
+      OutputStream z = new CompressingStream(out);
+      long end = src.getLastOffset();
+      while (end > 0 && src.get(end) == 0)
+        end--;
+      int n = (src.getWidth() + 7) / 8;
+      byte[] buf = new byte[4096 * n];
+      int len = 0;
+      for (long addr = 0; addr <= end; addr++) {
+        int val = src.get(addr);
+        for (int i = n - 1; i >= 0; i--)
+          buf[len++] = (byte) (val >>> (8 * i));
+        if (len == buf.length) {
+          z.write(buf, 0, len);
+          len = 0;
+        }
+      }
+      z.write(buf, 0, len);
+      z.close();
+    } else {
+      new HexWriter(new ThresholdStream(out), src, "v2.0 raw").save();
+    }
+  }
+
+  // Deflates and base64-encodes everything written to it, as used for large
+  // memory contents in circ files. Closing it finishes the encoding but leaves
+  // the underlying stream open.
+  private static class CompressingStream extends DeflaterOutputStream {
+    CompressingStream(OutputStream out) throws IOException {
+      super(Base64.getMimeEncoder(76, System.lineSeparator().getBytes("UTF-8"))
+          .wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+              out.write(b, off, len);
+            }
+            @Override
+            public void close() throws IOException {
+              flush();
+            }
+          }), new Deflater(), 8192);
+    }
+
+    @Override
+    public void close() throws IOException {
+      finish();
+      def.end();
+      out.close(); // flushes base64 padding
+    }
+  }
+
+  // Passes short text through unchanged, but switches to the "compressed"
+  // form once more than 5000 bytes have been written, matching
+  // saveToStringForCircFile(). Closing it leaves the underlying stream open.
+  private static class ThresholdStream extends OutputStream {
+    private OutputStream out;
+    private ByteArrayOutputStream head = new ByteArrayOutputStream();
+    private OutputStream compressed;
+
+    ThresholdStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (compressed != null) {
+        compressed.write(b, off, len);
+        return;
+      }
+      head.write(b, off, len);
+      if (head.size() > 5000) {
+        out.write("compressed\n".getBytes("UTF-8"));
+        compressed = new CompressingStream(out);
+        head.writeTo(compressed);
+        head = null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (compressed != null)
+        compressed.close();
+      else if (head != null)
+        head.writeTo(out);
+      head = null;
+      compressed = null;
+    }
+  }
+
   // No header is output. As a special case, if desc is null, v2.0 raw will be
   // used.
   // For binary format, this uses binary sanitizer (non-ascii printable bytes
@@ -1581,7 +1898,7 @@ public class HexFile {
           }
         }
         // there may be 0 to 7 bits of a partial byte leftover
-        if (mAddr <= mEnd && nbits > 0)
+        if (nbits > 0)
           bytes[bLen++] = (byte)((val << (8 - nbits)) & 0xffL);
       } else {
         long val = 0;
@@ -1606,7 +1923,7 @@ public class HexFile {
           }
         }
         // there may be 0 to 7 bits of a partial byte leftover
-        if (mAddr <= mEnd && nbits > 0)
+        if (nbits > 0)
           bytes[bLen++] = (byte)(val & ((1 << nbits)-1));
       }
     }
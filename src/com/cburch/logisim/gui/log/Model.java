@@ -34,6 +34,7 @@ import static com.cburch.logisim.gui.log.Strings.S;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;;
+import java.util.HashSet;
 import java.util.List;
 
 import com.cburch.logisim.circuit.Circuit;
@@ -47,6 +48,7 @@ import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
@@ -79,7 +81,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
 
   private ArrayList<SignalInfo> info = new ArrayList<>();
   private ArrayList<Signal> signals = new ArrayList<>();
-  private long tEnd = -1; // signals go from 0 <= t < tEnd
+  private volatile long tEnd = -1; // signals go from 0 <= t < tEnd
   private Signal spotlight;
   private SignalInfo clockSource;
   private Value curClockVal;
@@ -96,6 +98,15 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   private long elapsedSinceTrigger;
   private long lastRealtimeUpdate;
 
+  // Signal histories are extended by the sampler thread, from values the
+  // simulation thread captures. Anything else that changes the signals or
+  // their histories must hold this lock. A reset bumps the epoch, so samples
+  // still in flight from before the reset get discarded.
+  final Object lock = new Object();
+  private volatile Signal[] sampled = new Signal[0];
+  private volatile int epoch;
+  private final SampleBuffer sampler = new SampleBuffer(this);
+
   public Model(CircuitState root) {
     circuitState = root;
 
@@ -155,6 +166,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
             duration, 0, historyLimit));
     }
     tEnd = duration;
+    renumberSignals();
 
     // Listen for new pins, clocks, etc., and changes to Signals
     for (SignalInfo item : info)
@@ -162,40 +174,53 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     circ.addCircuitWeakListener(null, this);
   }
   
+  // precondition: lock held, or during construction
   private void renumberSignals() {
     for (int i = 0; i < signals.size(); i++)
       signals.get(i).idx = i;
+    sampled = signals.toArray(new Signal[signals.size()]);
   }
 
   public void addOrMove(List<SignalInfo> items, int idx) {
     int changed = items.size();
-    for (SignalInfo item : items) {
-      int i = info.indexOf(item);
-      if (i < 0) {
-        info.add(idx, item); // put new item at idx
-        signals.add(idx,
-            new Signal(idx, item, item.fetchValue(circuitState),
-              1, tEnd - 1, historyLimit));
-        idx++;
-        item.setListener(this);
-      } else if (i > idx) {
-        info.add(idx, info.remove(i)); // move later item up
-        signals.add(idx, signals.remove(i));
-        idx++;
-      } else if (i < idx) {
-        info.add(idx-1, info.remove(i)); // move earlier item down
-        signals.add(idx-1, signals.remove(i));
-      } else {
-        changed--;
+    synchronized (lock) {
+      for (SignalInfo item : items) {
+        int i = info.indexOf(item);
+        if (i < 0) {
+          info.add(idx, item); // put new item at idx
+          signals.add(idx,
+              new Signal(idx, item, item.fetchValue(circuitState),
+                1, tEnd - 1, historyLimit));
+          idx++;
+          item.setListener(this);
+        } else if (i > idx) {
+          info.add(idx, info.remove(i)); // move later item up
+          signals.add(idx, signals.remove(i));
+          idx++;
+        } else if (i < idx) {
+          info.add(idx-1, info.remove(i)); // move earlier item down
+          signals.add(idx-1, signals.remove(i));
+        } else {
+          changed--;
+        }
       }
+      if (changed > 0)
+        renumberSignals();
     }
-    if (changed > 0) {
-      renumberSignals();
+    if (changed > 0)
       fireSelectionChanged(null);
-    }
   }
 
   public boolean addOrMoveSignals(List<Signal> items, int idx) {
+    synchronized (lock) {
+      if (!addOrMoveSignalsLocked(items, idx))
+        return false;
+    }
+    fireSelectionChanged(null);
+    return true;
+  }
+
+  private boolean addOrMoveSignalsLocked(List<Signal> items, int idx) {
     int changed = items.size();
     long newEnd = tEnd;
     for (Signal item : items) {
@@ -234,7 +259,6 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       return false;
     tEnd = newEnd;
     renumberSignals();
-    fireSelectionChanged(null);
     return true;
   }
 
@@ -256,19 +280,22 @@ public class Model implements CircuitListener, SignalInfo.Listener {
 
   public int remove(List<SignalInfo> items) {
     int count = 0;
-    for (SignalInfo item : items) {
-      int idx = info.indexOf(item);
-      if (idx < 0)
-        continue;
-      info.remove(idx);
-      signals.remove(idx);
-      count++;
-      item.setListener(null);
+    synchronized (lock) {
+      for (SignalInfo item : items) {
+        int idx = info.indexOf(item);
+        if (idx < 0)
+          continue;
+        info.remove(idx);
+        signals.remove(idx);
+        count++;
+        item.setListener(null);
+      }
+      if (count > 0)
+        renumberSignals();
     }
     if (count > 0) {
       if (spotlight != null && items.contains(spotlight))
         spotlight = null;
-      renumberSignals();
       fireSelectionChanged(null);
     }
     return count;
@@ -287,27 +314,31 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       return; // no-op
     ArrayList<SignalInfo> items = new ArrayList<>();
     ArrayList<Signal> vals = new ArrayList<>();
-    for (int i = n-1; i >= 0; i--) {
-      if (fromIndex[i] < toIndex)
-        toIndex--;
-      items.add(info.remove(fromIndex[i]));
-      vals.add(signals.remove(fromIndex[i]));
-    }
-    for (int i = n-1; i >= 0; i--) {
-      info.add(toIndex, items.get(i));
-      signals.add(toIndex, vals.get(i));
-      toIndex++;
+    synchronized (lock) {
+      for (int i = n-1; i >= 0; i--) {
+        if (fromIndex[i] < toIndex)
+          toIndex--;
+        items.add(info.remove(fromIndex[i]));
+        vals.add(signals.remove(fromIndex[i]));
+      }
+      for (int i = n-1; i >= 0; i--) {
+        info.add(toIndex, items.get(i));
+        signals.add(toIndex, vals.get(i));
+        toIndex++;
+      }
+      renumberSignals();
     }
-    renumberSignals();
     fireSelectionChanged(null);
   }
 
   public void remove(int idx) {
     if (spotlight != null && signals.get(idx) == spotlight)
       spotlight = null;
-    info.remove(idx).setListener(null);
-    signals.remove(idx);
-    renumberSignals();
+    synchronized (lock) {
+      info.remove(idx).setListener(null);
+      signals.remove(idx);
+      renumberSignals();
+    }
     fireSelectionChanged(null);
   }
 
@@ -345,9 +376,11 @@ public class Model implements CircuitListener, SignalInfo.Listener {
   public void setHistoryLimit(int limit) {
     if (historyLimit == limit)
       return;
-    historyLimit = limit;
-    for (Signal s : signals)
-      s.resize(historyLimit);
+    synchronized (lock) {
+      historyLimit = limit;
+      for (Signal s : signals)
+        s.resize(historyLimit);
+    }
     fireHistoryLimitChanged(null);
   }
 
@@ -401,10 +434,13 @@ public class Model implements CircuitListener, SignalInfo.Listener {
         circuitState.setTemporaryClock(clockSource.getComponent());
       // Add the clock as a courtesy, even though this is not required.
       if (!info.contains(clockSource)) {
-        info.add(0, clockSource); // put it at the top of the list
-        signals.add(0,
-            new Signal(0, clockSource, clockSource.fetchValue(circuitState),
-              1, tEnd - 1, historyLimit));
+        synchronized (lock) {
+          info.add(0, clockSource); // put it at the top of the list
+          signals.add(0,
+              new Signal(0, clockSource, clockSource.fetchValue(circuitState),
+                1, tEnd - 1, historyLimit));
+          renumberSignals();
+        }
         clockSource.setListener(this);
         fireSelectionChanged(null);
       }
@@ -463,11 +499,15 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     int idx = info.indexOf(item);
     if (idx >= 0)
       return signals.get(idx);
-    idx = info.size();
-    info.add(item);
-    Signal s = new Signal(idx, item, item.fetchValue(circuitState),
-        1, tEnd - 1, historyLimit);
-    signals.add(idx, s);
+    Signal s;
+    synchronized (lock) {
+      idx = info.size();
+      info.add(item);
+      s = new Signal(idx, item, item.fetchValue(circuitState),
+          1, tEnd - 1, historyLimit);
+      signals.add(idx, s);
+      renumberSignals();
+    }
     item.setListener(this);
     if (fireUpdate)
       fireSelectionChanged(null);
@@ -493,7 +533,7 @@ public class Model implements CircuitListener, SignalInfo.Listener {
       l.signalsReset(e);
   }
 
-  private void fireSignalsExtended(Event e) {
+  void fireSignalsExtended(Event e) {
     for (Listener l : listeners)
       l.signalsExtended(e);
   }
@@ -579,32 +619,55 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     return selected;
   }
 
+  // The extend and replace operations below are called on the simulation
+  // thread. They only capture values, which the sampler thread later applies
+  // (see applySample), firing signalsExtended once it has caught up.
   private void extendWithOldValues(long duration) {
-    for (Signal s : signals) {
-      Value v = s.info.fetchValue(circuitState);
-      s.extend(duration);
-    }
+    sample(SampleBuffer.EXTEND_OLD, duration);
     elapsedSinceTrigger += duration;
-    tEnd += duration;
-    fireSignalsExtended(null);
   }
 
   private void extendWithNewValues(long duration) {
-    for (Signal s : signals) {
-      Value v = s.info.fetchValue(circuitState);
-      s.extend(v, duration);
-    }
+    sample(SampleBuffer.EXTEND, duration);
     elapsedSinceTrigger += duration;
-    tEnd += duration;
-    fireSignalsExtended(null);
   }
 
   private void replaceWithNewValues(long duration) {
-    for (Signal s : signals) {
-      Value v = s.info.fetchValue(circuitState);
-      s.replaceRecent(v, duration);
+    sample(SampleBuffer.REPLACE, duration);
+  }
+
+  private void sample(int kind, long duration) {
+    boolean drop = AppPreferences.CHRONO_OVERFLOW.get()
+        .equals(AppPreferences.CHRONO_OVERFLOW_DROP);
+    sampler.put(kind, duration, sampled, epoch, circuitState, drop);
+  }
+
+  int getEpoch() {
+    return epoch;
+  }
+
+  // precondition: lock held
+  void applySample(int kind, long duration, Signal[] sigs, Value[] vals) {
+    for (int i = 0; i < sigs.length; i++) {
+      Signal s = sigs[i];
+      Value v = vals == null ? Value.createUnknown(s.getWidth()) : vals[i];
+      if (kind == SampleBuffer.EXTEND_OLD)
+        s.extend(duration);
+      else if (kind == SampleBuffer.REPLACE)
+        s.replaceRecent(v, duration); // changed, not extended
+      else
+        s.extend(v, duration);
+    }
+    if (kind == SampleBuffer.REPLACE)
+      return;
+    if (sigs != sampled) {
+      // Signals added since this was captured must still keep pace.
+      HashSet<Signal> old = new HashSet<>(Arrays.asList(sigs));
+      for (Signal s : signals)
+        if (!old.contains(s))
+          s.extend(duration);
     }
-    fireSignalsExtended(null); // changed, not extended, but works fine for now
+    tEnd += duration;
   }
 
   public void propagationCompleted(boolean ticked, boolean stepped, boolean propagated) {
@@ -737,12 +800,15 @@ public class Model implements CircuitListener, SignalInfo.Listener {
     if (mode == REAL)
       lastRealtimeUpdate = System.nanoTime();
     elapsedSinceTrigger = 0;
-    for (Signal s: signals) {
-      Value v = s.info.fetchValue(circuitState);
-      s.reset(v, duration);
+    synchronized (lock) {
+      epoch++;
+      for (Signal s: signals) {
+        Value v = s.info.fetchValue(circuitState);
+        s.reset(v, duration);
+      }
+      tEnd = duration;
     }
     elapsedSinceTrigger += duration;
-    tEnd = duration;
 	}
 
   public void setFile(File value) {
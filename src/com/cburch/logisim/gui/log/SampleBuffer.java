@@ -0,0 +1,188 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.util.UniquelyNamedThread;
+
+// SampleBuffer carries signal values from the simulation thread to the
+// Signal histories. The simulation thread (the only producer) just copies the
+// current value of each logged signal into the next free slot of a ring. A
+// separate consumer thread applies whatever slots have accumulated, under the
+// model's lock, then fires a single signalsExtended event for all of them. The
+// consumer exits after being idle for a while, and is restarted on demand, so
+// an unused Model is not kept alive by it.
+class SampleBuffer {
+
+  static final int EXTEND = 0; // extend with new values
+  static final int EXTEND_OLD = 1; // extend most recent values
+  static final int REPLACE = 2; // replace most recent values
+
+  private static final int CAPACITY = 1024; // must be a power of 2
+  private static final int MASK = CAPACITY - 1;
+  private static final int BATCH = 256; // most slots applied per lock hold
+  private static final long IDLE_NANOS = 1000000000L;
+  private static final long FULL_NANOS = 100000L;
+
+  private static class Sample {
+    int kind;
+    long duration;
+    int epoch;
+    Signal[] sigs;
+    Value[] vals; // null means unknown, for samples lost when full
+  }
+
+  private final Model model;
+  private final Sample[] ring = new Sample[CAPACITY];
+  private volatile long head; // written only by producer
+  private volatile long tail; // written only by consumer
+  private volatile boolean sleeping;
+  private volatile Thread consumer;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  // Samples dropped while full, used only by the producer. Lost extensions
+  // accumulate into one unknown extension. A lost replacement matters only if
+  // it was for a period that was itself recorded.
+  private long gapExtend, gapReplace;
+  private int gapEpoch;
+
+  SampleBuffer(Model model) {
+    this.model = model;
+    for (int i = 0; i < CAPACITY; i++)
+      ring[i] = new Sample();
+  }
+
+  // Called only from the simulation thread. When the buffer is full, this
+  // either waits for the consumer to catch up, or drops the sample and
+  // records a gap that will be shown as unknown values.
+  void put(int kind, long duration, Signal[] sigs, int epoch,
+      CircuitState state, boolean drop) {
+    if (gapEpoch != epoch)
+      gapExtend = gapReplace = 0; // reset since, nothing to mark
+    int need = (gapExtend > 0 || gapReplace > 0) ? 2 : 1;
+    while (head - tail > CAPACITY - need) {
+      if (drop) {
+        if (kind != REPLACE) {
+          gapExtend += duration;
+          gapReplace = 0;
+        } else if (gapExtend == 0) {
+          gapReplace = duration;
+        }
+        gapEpoch = epoch;
+        wake();
+        return;
+      }
+      wake();
+      LockSupport.parkNanos(FULL_NANOS);
+    }
+    if (gapExtend > 0)
+      publish(EXTEND, gapExtend, sigs, epoch, null);
+    else if (gapReplace > 0)
+      publish(REPLACE, gapReplace, sigs, epoch, null);
+    gapExtend = gapReplace = 0;
+    publish(kind, duration, sigs, epoch, state);
+    wake();
+  }
+
+  private void publish(int kind, long duration, Signal[] sigs, int epoch,
+      CircuitState state) {
+    Sample s = ring[(int)head & MASK];
+    s.kind = kind;
+    s.duration = duration;
+    s.epoch = epoch;
+    s.sigs = sigs;
+    if (state == null) {
+      s.vals = null;
+    } else if (kind != EXTEND_OLD) {
+      if (s.vals == null || s.vals.length < sigs.length)
+        s.vals = new Value[Math.max(sigs.length, 8)];
+      for (int i = 0; i < sigs.length; i++)
+        s.vals[i] = sigs[i].info.fetchValue(state);
+    }
+    head = head + 1;
+  }
+
+  private void wake() {
+    if (!running.get()) {
+      if (running.compareAndSet(false, true)) {
+        Consumer c = new Consumer();
+        consumer = c;
+        c.start();
+      }
+    } else if (sleeping) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  private class Consumer extends UniquelyNamedThread {
+    Consumer() {
+      super("LogSampler");
+      setDaemon(true);
+    }
+
+    public void run() {
+      for (;;) {
+        long t = tail, h = head;
+        if (t != h) {
+          drain(t, Math.min(h, t + BATCH));
+          continue;
+        }
+        sleeping = true;
+        if (head == t)
+          LockSupport.parkNanos(IDLE_NANOS);
+        sleeping = false;
+        if (head != t)
+          continue;
+        running.set(false);
+        if (head == t || !running.compareAndSet(false, true))
+          return;
+      }
+    }
+  }
+
+  private void drain(long t, long h) {
+    synchronized (model.lock) {
+      int epoch = model.getEpoch();
+      for (long i = t; i < h; i++) {
+        Sample s = ring[(int)i & MASK];
+        if (s.epoch == epoch)
+          model.applySample(s.kind, s.duration, s.sigs, s.vals);
+        s.sigs = null;
+      }
+    }
+    tail = h;
+    model.fireSignalsExtended(null);
+  }
+}
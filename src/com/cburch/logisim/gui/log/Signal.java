@@ -116,8 +116,8 @@ public class Signal {
       long[][] dur2 = new long[c+1][];
       System.arraycopy(val, 0, val2, 0, c);
       System.arraycopy(dur, 0, dur2, 0, c);
-      val2[c+1] = new Value[maxSize == 0 || (maxSize-cap) > CHUNK ? CHUNK : (maxSize-cap)];
-      dur2[c+1] = new long[maxSize == 0 || (maxSize-cap) > CHUNK ? CHUNK : (maxSize-cap)];
+      val2[c] = new Value[maxSize == 0 || (maxSize-cap) > CHUNK ? CHUNK : (maxSize-cap)];
+      dur2[c] = new long[maxSize == 0 || (maxSize-cap) > CHUNK ? CHUNK : (maxSize-cap)];
       val = val2;
       dur = dur2;
       val[curSize/CHUNK][curSize%CHUNK] = v;
@@ -197,9 +197,11 @@ public class Signal {
     if (newMaxSize == maxSize)
       return;
     if (newMaxSize == 0 || newMaxSize > maxSize) {
-      // growing
-      if (firstIndex != 0)
-        retainOnly(0, curSize, newMaxSize); // keeps all data, but shifts it left
+      // growing: keeps all data, but shifts it left if needed, and makes sure
+      // the last chunk can hold more than the old limit allowed
+      int c = val.length;
+      if (firstIndex != 0 || val[c-1].length < CHUNK)
+        retainOnly(0, curSize, newMaxSize);
     } else {
       // shrinking: newMaxSize < maxSize
       if (curSize <= newMaxSize) {
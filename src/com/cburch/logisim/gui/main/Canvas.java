@@ -307,6 +307,7 @@ public class Canvas extends JPanel
 
     @Override
     public void circuitChanged(CircuitEvent event) {
+      painter.circuitChanged(event);
       int act = event.getAction();
       if (act == CircuitEvent.ACTION_REMOVE) {
         Component c = (Component) event.getData();
@@ -958,6 +959,7 @@ public class Canvas extends JPanel
 
   @Override
   public void localeChanged() {
+    painter.invalidateLayer();
     paintThread.requestRepaint();
   }
 
@@ -36,17 +36,27 @@ import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.WidthIncompatibilityData;
+import com.cburch.logisim.circuit.Wire;
 import com.cburch.logisim.circuit.WireSet;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
+import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
@@ -60,18 +70,54 @@ import com.cburch.logisim.util.GraphicsUtil;
 class CanvasPainter implements PropertyChangeListener {
   private static final Set<Component> NO_COMPONENTS = Collections.emptySet();
 
+  // The grid, halo and circuit are kept in an offscreen layer covering the
+  // visible part of the canvas. As long as nothing but the simulation changes,
+  // a repaint only redraws the parts of the layer whose values changed: wires
+  // and components whose end values differ from the last paint, plus every
+  // component holding instance data, since that may be drawn any way at all.
+  // Everything else (selection, tool, width errors, step points) is drawn on
+  // top of the layer each time, exactly as before.
+  private static final int LAYER_PAD = 10; // around value-dependent drawing
+  private static final int LAYER_MAX_DIRTY = 4; // redraw it all past 1/4
+
+  private static class LayerItem {
+    Bounds bounds; // circuit coordinates, padded
+    Value[] values; // at the ends, or null if it has instance data
+  }
+
   private Canvas canvas;
   private GridPainter grid;
   private Component haloedComponent = null;
   private Circuit haloedCircuit = null;
   private WireSet highlightedWires = WireSet.EMPTY;
 
+  private BufferedImage layer;
+  private volatile boolean layerValid;
+  private Rectangle layerView; // canvas coordinates covered by layer
+  private Circuit layerCircuit;
+  private CircuitState layerState;
+  private double layerZoom;
+  private boolean layerPrinterView;
+  private boolean layerShowGrid;
+  private Component layerHalo;
+  private WireSet layerHighlight;
+  private HashMap<Component, LayerItem> layerItems = new HashMap<>();
+  private Set<Component> layerInvalidated = ConcurrentHashMap.newKeySet();
+
+  // Any preference may change how components draw themselves.
+  private PropertyChangeListener layerListener = new PropertyChangeListener() {
+    public void propertyChange(PropertyChangeEvent event) {
+      invalidateLayer();
+    }
+  };
+
   CanvasPainter(Canvas canvas) {
     this.canvas = canvas;
     this.grid = new GridPainter(canvas);
 
     AppPreferences.PRINTER_VIEW.addPropertyChangeListener(this);
     AppPreferences.ATTRIBUTE_HALO.addPropertyChangeListener(this);
+    AppPreferences.propertyChangeProducer.addPropertyChangeListener(layerListener);
   }
 
   private void drawWidthIncompatibilityData(Graphics base, Graphics g,
@@ -127,26 +173,26 @@ class CanvasPainter implements PropertyChangeListener {
     GraphicsUtil.switchToWidth(g, 1);
   }
 
-  private void drawWithUserState(Graphics base, Graphics g, Project proj) {
-    Circuit circ = proj.getCurrentCircuit();
-    if (circ == null)
-      return;
-    Selection sel = proj.getSelection();
-    Set<Component> hidden;
+  private Set<Component> getHiddenComponents() {
     Tool dragTool = canvas.getDragTool();
-    if (dragTool == null) {
-      hidden = NO_COMPONENTS;
-    } else {
-      hidden = dragTool.getHiddenComponents(canvas);
-      if (hidden == null)
-        hidden = NO_COMPONENTS;
-    }
+    if (dragTool == null)
+      return NO_COMPONENTS;
+    Set<Component> hidden = dragTool.getHiddenComponents(canvas);
+    return hidden == null ? NO_COMPONENTS : hidden;
+  }
 
-    // draw halo around component whose attributes we are viewing
+  private Component getVisibleHalo(Circuit circ, Set<Component> hidden) {
     boolean showHalo = AppPreferences.ATTRIBUTE_HALO.get();
     if (showHalo && haloedComponent != null && haloedCircuit == circ
-        && !hidden.contains(haloedComponent)) {
-      Bounds bds = haloedComponent.getBounds(g).expand(5);
+        && !hidden.contains(haloedComponent))
+      return haloedComponent;
+    return null;
+  }
+
+  // draw halo around component whose attributes we are viewing
+  private void drawHalo(Graphics g, Component halo) {
+    if (halo != null) {
+      Bounds bds = halo.getBounds(g).expand(5);
       int x = bds.getX();
       int y = bds.getY();
       int w = bds.getWidth();
@@ -165,6 +211,20 @@ class CanvasPainter implements PropertyChangeListener {
       GraphicsUtil.switchToWidth(g, 1);
       g.setColor(Color.BLACK);
     }
+  }
+
+  // If fromLayer, the halo and circuit have already been painted.
+  private void drawWithUserState(Graphics base, Graphics g, Project proj,
+      boolean fromLayer) {
+    Circuit circ = proj.getCurrentCircuit();
+    if (circ == null)
+      return;
+    Selection sel = proj.getSelection();
+    Set<Component> hidden = getHiddenComponents();
+    Tool dragTool = canvas.getDragTool();
+
+    if (!fromLayer)
+      drawHalo(g, getVisibleHalo(circ, hidden));
 
     // draw circuit and selection
     CircuitState circState = proj.getCircuitState();
@@ -172,7 +232,8 @@ class CanvasPainter implements PropertyChangeListener {
     ComponentDrawContext context = new ComponentDrawContext(canvas, circ,
         circState, base, g, printerView);
     context.setHighlightedWires(highlightedWires);
-    circ.draw(context, hidden);
+    if (!fromLayer)
+      circ.draw(context, hidden);
     sel.draw(context, hidden);
 
     // draw tool
@@ -230,13 +291,15 @@ class CanvasPainter implements PropertyChangeListener {
     // g.setColor(Color.magenta);
     // g.fillRect(clip.x, clip.y, clip.width, clip.height);
 
-    grid.paintGrid(g);
+    boolean fromLayer = paintLayer(g, proj);
+    if (!fromLayer)
+      grid.paintGrid(g);
     g.setColor(Color.black);
 
     Graphics gScaled = g.create();
     if (zoomFactor != 1.0)
       ((Graphics2D) gScaled).scale(zoomFactor, zoomFactor);
-    drawWithUserState(g, gScaled, proj);
+    drawWithUserState(g, gScaled, proj, fromLayer);
     drawWidthIncompatibilityData(g, gScaled, proj);
     Circuit circ = proj.getCurrentCircuit();
 
@@ -253,6 +316,168 @@ class CanvasPainter implements PropertyChangeListener {
     gScaled.dispose();
   }
 
+  //
+  // offscreen layer
+  //
+  void invalidateLayer() {
+    layerValid = false;
+  }
+
+  void circuitChanged(CircuitEvent event) {
+    if (event.getAction() == CircuitEvent.ACTION_INVALIDATE
+        && event.getData() instanceof Component)
+      layerInvalidated.add((Component) event.getData());
+    else
+      invalidateLayer();
+  }
+
+  // Brings the layer up to date and copies it to g, or returns false if the
+  // layer can't be used for this paint, e.g. while components are being
+  // dragged or if g is scaled.
+  private boolean paintLayer(Graphics g, Project proj) {
+    Circuit circ = proj.getCurrentCircuit();
+    CircuitState circState = proj.getCircuitState();
+    Rectangle view = canvas.getVisibleRect();
+    if (circ == null || circState == null || view.isEmpty()
+        || !(g instanceof Graphics2D)
+        || !getHiddenComponents().isEmpty()) {
+      return false;
+    }
+    Graphics2D g2 = (Graphics2D) g;
+    AffineTransform xform = g2.getTransform();
+    if ((xform.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0)
+      return false;
+
+    double zoom = canvas.getZoomFactor();
+    boolean printerView = AppPreferences.PRINTER_VIEW.get();
+    Component halo = getVisibleHalo(circ, NO_COMPONENTS);
+    boolean same = layerValid && view.equals(layerView)
+        && circ == layerCircuit && circState == layerState
+        && zoom == layerZoom && printerView == layerPrinterView
+        && grid.getShowGrid() == layerShowGrid && halo == layerHalo
+        && highlightedWires == layerHighlight;
+    layerValid = true;
+    layerView = view;
+    layerCircuit = circ;
+    layerState = circState;
+    layerZoom = zoom;
+    layerPrinterView = printerView;
+    layerShowGrid = grid.getShowGrid();
+    layerHalo = halo;
+    layerHighlight = highlightedWires;
+
+    Bounds viewBounds = Bounds.create(
+        (int) Math.floor(view.x / zoom), (int) Math.floor(view.y / zoom),
+        (int) Math.ceil(view.width / zoom) + 1,
+        (int) Math.ceil(view.height / zoom) + 1).expand(LAYER_PAD);
+    Collection<Component> visible = circ.getAllIntersecting(viewBounds);
+    if (!same || layer == null || layer.getWidth() != view.width
+        || layer.getHeight() != view.height) {
+      layerInvalidated.clear();
+      renderLayerFully(g2, visible);
+    } else {
+      List<Bounds> dirty = new ArrayList<>();
+      for (Component c : visible) {
+        LayerItem item = layerItems.get(c);
+        if (item == null) {
+          item = new LayerItem();
+          layerItems.put(c, item);
+          updateLayerItem(item, c, circState);
+          dirty.add(item.bounds);
+        } else if (item.values == null || layerInvalidated.remove(c)
+            || !sameValues(item, c, circState)) {
+          Bounds old = item.bounds;
+          updateLayerItem(item, c, circState);
+          dirty.add(old.add(item.bounds));
+        }
+      }
+      layerInvalidated.clear();
+      if (dirty.size() * LAYER_MAX_DIRTY > visible.size()) {
+        renderLayerFully(g2, visible);
+      } else {
+        for (Bounds b : dirty) {
+          int x0 = (int) Math.floor(b.getX() * zoom) - 1;
+          int y0 = (int) Math.floor(b.getY() * zoom) - 1;
+          int x1 = (int) Math.ceil((b.getX() + b.getWidth()) * zoom) + 1;
+          int y1 = (int) Math.ceil((b.getY() + b.getHeight()) * zoom) + 1;
+          renderLayer(g2, new Rectangle(x0, y0, x1 - x0, y1 - y0));
+        }
+      }
+    }
+    g.drawImage(layer, view.x, view.y, null);
+    return true;
+  }
+
+  private void renderLayerFully(Graphics2D g, Collection<Component> visible) {
+    Rectangle view = layerView;
+    if (layer == null || layer.getWidth() != view.width
+        || layer.getHeight() != view.height)
+      layer = new BufferedImage(view.width, view.height,
+          BufferedImage.TYPE_INT_RGB);
+    layerItems.clear();
+    for (Component c : visible) {
+      LayerItem item = new LayerItem();
+      updateLayerItem(item, c, layerState);
+      layerItems.put(c, item);
+    }
+    renderLayer(g, view);
+  }
+
+  // Repaints part of the layer (in canvas coordinates) just as paintContents
+  // would paint it directly: background, grid, halo, then the circuit.
+  private void renderLayer(Graphics2D screen, Rectangle r) {
+    Rectangle view = layerView;
+    Graphics2D g = layer.createGraphics();
+    g.setRenderingHints(screen.getRenderingHints());
+    g.setFont(screen.getFont());
+    g.translate(-view.x, -view.y);
+    g.clipRect(r.x, r.y, r.width, r.height);
+    g.setColor(Color.WHITE);
+    g.fillRect(r.x, r.y, r.width, r.height);
+    grid.paintGrid(g);
+    g.setColor(Color.black);
+    Graphics2D gScaled = (Graphics2D) g.create();
+    if (layerZoom != 1.0)
+      gScaled.scale(layerZoom, layerZoom);
+    drawHalo(gScaled, layerHalo);
+    ComponentDrawContext context = new ComponentDrawContext(canvas,
+        layerCircuit, layerState, g, gScaled, layerPrinterView);
+    context.setHighlightedWires(layerHighlight);
+    layerCircuit.draw(context, NO_COMPONENTS);
+    gScaled.dispose();
+    g.dispose();
+  }
+
+  private static void updateLayerItem(LayerItem item, Component c,
+      CircuitState state) {
+    item.bounds = c.getBounds().expand(LAYER_PAD);
+    if (!(c instanceof Wire) && state.getData(c) != null) {
+      item.values = null;
+      return;
+    }
+    List<EndData> ends = c.getEnds();
+    if (item.values == null || item.values.length != ends.size())
+      item.values = new Value[ends.size()];
+    for (int i = 0; i < item.values.length; i++) {
+      EndData end = ends.get(i);
+      item.values[i] = end == null ? null : state.getValue(end.getLocation());
+    }
+  }
+
+  private static boolean sameValues(LayerItem item, Component c,
+      CircuitState state) {
+    List<EndData> ends = c.getEnds();
+    if (item.values.length != ends.size())
+      return false;
+    for (int i = 0; i < item.values.length; i++) {
+      EndData end = ends.get(i);
+      Value v = end == null ? null : state.getValue(end.getLocation());
+      if (v == null ? item.values[i] != null : !v.equals(item.values[i]))
+        return false;
+    }
+    return true;
+  }
+
   public void propertyChange(PropertyChangeEvent event) {
     if (AppPreferences.PRINTER_VIEW.isSource(event)
         || AppPreferences.ATTRIBUTE_HALO.isSource(event)) {
@@ -272,5 +497,6 @@ class CanvasPainter implements PropertyChangeListener {
 
   void setHighlightedWires(WireSet value) {
     highlightedWires = value == null ? WireSet.EMPTY : value;
+    invalidateLayer();
   }
 }
@@ -40,7 +40,11 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import javax.imageio.ImageIO;
@@ -70,6 +74,7 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.util.GifEncoder;
+import com.cburch.logisim.util.PngEncoder;
 import com.cburch.logisim.util.UniquelyNamedThread;
 
 public class ExportImage {
@@ -126,13 +131,23 @@ public class ExportImage {
   }
 
   public static String exportImage(Canvas canvas, Circuit circuit, double scale, boolean printerView, File dest, String format, ProgressMonitor monitor) {
+    CircuitState circuitState = canvas.getProject().getCircuitStateForPrinting(circuit);
+    return exportImage(canvas, circuit, circuitState, scale, printerView, dest, format, monitor);
+  }
+
+  // The canvas may be null (e.g. when exporting headless), in which case only
+  // the printer view bounds are available. Nothing here touches shared GUI
+  // state, so different circuits can be exported on different threads.
+  public static String exportImage(Canvas canvas, Circuit circuit, CircuitState circuitState,
+      double scale, boolean printerView, File dest, String format, ProgressMonitor monitor) {
     Bounds bds;
-    if (!printerView) {
+    if (!printerView && canvas != null) {
       bds = circuit.getCircuitBounds(canvas.getGraphics()).expand(BORDER_SIZE);
     } else {
       BufferedImage img = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
       Graphics base = img.getGraphics();
       bds = circuit.getCircuitBounds(base).expand(BORDER_SIZE);
+      base.dispose();
     }
     int width = (int) Math.round(bds.getWidth() * scale);
     int height = (int) Math.round(bds.getHeight() * scale);
@@ -140,48 +155,88 @@ public class ExportImage {
       width = 100;
     if (height == 0)
       height = 100;
-    BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-    Graphics base = img.getGraphics();
-    Graphics2D g = (Graphics2D)base.create();
-    g.setRenderingHint(
-        RenderingHints.KEY_TEXT_ANTIALIASING,
-        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-    g.setRenderingHint(
-        RenderingHints.KEY_ANTIALIASING,
-        RenderingHints.VALUE_ANTIALIAS_ON);
-    g.setColor(Color.white);
-    g.fillRect(0, 0, width, height);
-    g.setColor(Color.black);
-    g.scale(scale, scale);
-    g.translate(-bds.getX(), -bds.getY());
-
-    CircuitState circuitState = canvas.getProject().getCircuitStateForPrinting(circuit);
-    ComponentDrawContext context = new ComponentDrawContext(canvas,
-        circuit, circuitState, base, g, printerView);
-    circuit.draw(context, null);
 
     try {
       switch (format) {
       case FORMAT_GIF:
-        GifEncoder.toFile(img, dest, monitor);
+        GifEncoder.toFile(paint(canvas, circuit, circuitState, bds, scale,
+              printerView, width, height, 0, height), dest, monitor);
         break;
       case FORMAT_PNG:
-        ImageIO.write(img, "PNG", dest);
+        writePng(canvas, circuit, circuitState, bds, scale, printerView,
+            width, height, dest);
         break;
       case FORMAT_JPG:
-        ImageIO.write(img, "JPEG", dest);
+        ImageIO.write(paint(canvas, circuit, circuitState, bds, scale,
+              printerView, width, height, 0, height), "JPEG", dest);
         break;
       }
     } catch (Exception e) {
       return S.get("couldNotCreateFile");
     } finally {
-      g.dispose();
       if (monitor != null)
         monitor.close();
     }
     return null;
   }
 
+  // PNGs are drawn in bands of about BAND_PIXELS and encoded as each band is
+  // finished, so a huge circuit doesn't need a huge image. Circuit.draw skips
+  // components outside the clip, so each band only draws what it shows.
+  private static void writePng(Canvas canvas, Circuit circuit, CircuitState circuitState,
+      Bounds bds, double scale, boolean printerView, int width, int height, File dest)
+      throws IOException {
+    int band = Math.max(1, Math.min(height, BAND_PIXELS / width));
+    BufferedImage img = null;
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(dest))) {
+      PngEncoder png = new PngEncoder(out, width, height);
+      for (int y = 0; y < height; y += band) {
+        int rows = Math.min(band, height - y);
+        img = paint(canvas, circuit, circuitState, bds, scale, printerView,
+            width, band, y, rows, img);
+        png.writeRows(img, rows);
+      }
+      png.finish();
+    }
+  }
+
+  private static BufferedImage paint(Canvas canvas, Circuit circuit, CircuitState circuitState,
+      Bounds bds, double scale, boolean printerView, int width, int height, int y, int rows) {
+    return paint(canvas, circuit, circuitState, bds, scale, printerView,
+        width, height, y, rows, null);
+  }
+
+  // Draws image rows [y, y+rows) of the export into the top of img (which is
+  // width x height, and allocated if null).
+  private static BufferedImage paint(Canvas canvas, Circuit circuit, CircuitState circuitState,
+      Bounds bds, double scale, boolean printerView, int width, int height,
+      int y, int rows, BufferedImage img) {
+    if (img == null)
+      img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics base = img.getGraphics();
+    Graphics2D g = (Graphics2D)base.create();
+    g.setRenderingHint(
+        RenderingHints.KEY_TEXT_ANTIALIASING,
+        RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g.setRenderingHint(
+        RenderingHints.KEY_ANTIALIASING,
+        RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setColor(Color.white);
+    g.fillRect(0, 0, width, height);
+    g.setColor(Color.black);
+    g.clipRect(0, 0, width, rows);
+    g.translate(0, -y);
+    g.scale(scale, scale);
+    g.translate(-bds.getX(), -bds.getY());
+
+    ComponentDrawContext context = new ComponentDrawContext(canvas,
+        circuit, circuitState, base, g, printerView);
+    circuit.draw(context, null);
+    g.dispose();
+    base.dispose();
+    return img;
+  }
+
   private static class OptionsPanel extends JPanel implements ChangeListener {
     private static final long serialVersionUID = 1L;
     JSlider slider;
@@ -397,6 +452,8 @@ public class ExportImage {
 
   private static final int BORDER_SIZE = 5;
 
+  private static final int BAND_PIXELS = 1 << 20;
+
   private ExportImage() {
   }
 }
@@ -0,0 +1,193 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+package com.cburch.logisim.gui.main;
+import static com.cburch.logisim.gui.main.Strings.S;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.cburch.logisim.circuit.SimulationMetrics;
+import com.cburch.logisim.circuit.Simulator;
+import com.cburch.logisim.proj.Project;
+
+// Shows the simulator's metrics for the current circuit state, refreshing
+// twice per second. Unlike profiling, these are always collected, so opening
+// the dialog doesn't slow the simulation.
+public class MetricsDialog extends JDialog implements ActionListener {
+
+  private static final String[] ROWS = {
+    "metricsPropagations", "metricsEvents", "metricsEventsPerPropagation",
+    "metricsQueueHighWater", "metricsIterations", "metricsMaxIterations",
+    "metricsAverageIterations", "metricsOscillations", "metricsDirtyPoints",
+    "metricsDirtyComponents", "metricsTickRate", "metricsRequestedTickRate",
+  };
+
+  private static class MetricsTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private SimulationMetrics.Snapshot metrics;
+
+    void setMetrics(SimulationMetrics.Snapshot value) {
+      metrics = value;
+      fireTableDataChanged();
+    }
+
+    public int getColumnCount() {
+      return 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return S.get(column == 0 ? "metricsNameColumn" : "metricsValueColumn");
+    }
+
+    public int getRowCount() {
+      return ROWS.length;
+    }
+
+    public Object getValueAt(int row, int column) {
+      if (row < 0 || row >= ROWS.length)
+        return "";
+      if (column == 0)
+        return S.get(ROWS[row]);
+      SimulationMetrics.Snapshot m = metrics;
+      if (m == null)
+        return "";
+      switch (row) {
+      case 0:
+        return Long.toString(m.getPropagations());
+      case 1:
+        return Long.toString(m.getEventsProcessed());
+      case 2:
+        return m.getPropagations() == 0 ? ""
+            : String.format("%.1f", (double)m.getEventsProcessed() / m.getPropagations());
+      case 3:
+        return Integer.toString(m.getQueueHighWater());
+      case 4:
+        return S.fmt("metricsOfLimit", m.getLastIterations(), m.getIterationLimit());
+      case 5:
+        return S.fmt("metricsOfLimit", m.getMaxIterations(), m.getIterationLimit());
+      case 6:
+        return String.format("%.2f", m.getAverageIterations());
+      case 7:
+        return Long.toString(m.getOscillations());
+      case 8:
+        return String.format("%.1f", m.getDirtyPointsNanos() / 1e6);
+      case 9:
+        return String.format("%.1f", m.getDirtyComponentsNanos() / 1e6);
+      case 10:
+        return S.fmt("tickRateHz", String.format("%.1f", m.getTickRate()));
+      case 11:
+        return m.getRequestedTickRate() <= 0 ? ""
+            : S.fmt("tickRateHz", String.format("%.1f", m.getRequestedTickRate()));
+      default:
+        return ""; // should never happen
+      }
+    }
+  }
+
+  public static void show(JFrame parent, Project proj) {
+    Simulator sim = proj.getSimulator();
+    if (sim == null)
+      return;
+    MetricsDialog dlog = new MetricsDialog(parent, sim,
+        proj.getLogisimFile().getName());
+    dlog.setVisible(true);
+  }
+
+  private static final long serialVersionUID = 1L;
+
+  private Simulator sim;
+  private MetricsTableModel model = new MetricsTableModel();
+  private JButton reset = new JButton(S.get("profileResetButton"));
+  private JButton close = new JButton(S.get("statsCloseButton"));
+  private Timer timer = new Timer(500, this);
+
+  private MetricsDialog(JFrame parent, Simulator sim, String projectName) {
+    super(parent, false);
+    this.sim = sim;
+    setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    setTitle(S.fmt("metricsDialogTitle", projectName));
+
+    JTable table = new JTable(model);
+    JScrollPane tablePane = new JScrollPane(table);
+
+    reset.addActionListener(this);
+    close.addActionListener(this);
+    JPanel buttonPanel = new JPanel();
+    buttonPanel.add(reset);
+    buttonPanel.add(close);
+
+    Container contents = this.getContentPane();
+    contents.setLayout(new BorderLayout());
+    contents.add(tablePane, BorderLayout.CENTER);
+    contents.add(buttonPanel, BorderLayout.PAGE_END);
+    this.pack();
+    this.setSize(new Dimension(450, 300));
+
+    addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(WindowEvent e) {
+        timer.stop();
+      }
+    });
+    refresh();
+    timer.start();
+  }
+
+  private void refresh() {
+    model.setMetrics(sim.getMetrics());
+  }
+
+  public void actionPerformed(ActionEvent e) {
+    Object src = e.getSource();
+    if (src == close) {
+      this.dispose();
+    } else if (src == reset) {
+      sim.resetMetrics();
+      refresh();
+    } else {
+      refresh();
+    }
+  }
+}
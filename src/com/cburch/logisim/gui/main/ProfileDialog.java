@@ -0,0 +1,203 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+package com.cburch.logisim.gui.main;
+import static com.cburch.logisim.gui.main.Strings.S;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.SimulationProfiler;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.util.TableSorter;
+
+// Profiles the simulation for as long as the dialog stays open, refreshing
+// the table once per second.
+public class ProfileDialog extends JDialog implements ActionListener {
+
+  private static class ProfileTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private List<SimulationProfiler.Entry> entries = Collections.emptyList();
+
+    void setEntries(List<SimulationProfiler.Entry> value) {
+      entries = value;
+      fireTableDataChanged();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return column == 0 ? String.class : column == 3 ? Double.class : Long.class;
+    }
+
+    public int getColumnCount() {
+      return 4;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      switch (column) {
+      case 0:
+        return S.get("profileNameColumn");
+      case 1:
+        return S.get("profilePropagationsColumn");
+      case 2:
+        return S.get("profileEventsColumn");
+      case 3:
+        return S.get("profileTimeColumn");
+      default:
+        return "??"; // should never happen
+      }
+    }
+
+    public int getRowCount() {
+      return entries.size();
+    }
+
+    public Object getValueAt(int row, int column) {
+      if (row < 0 || row >= entries.size())
+        return "";
+      SimulationProfiler.Entry e = entries.get(row);
+      switch (column) {
+      case 0:
+        return e.getName();
+      case 1:
+        return Long.valueOf(e.getPropagations());
+      case 2:
+        return Long.valueOf(e.getEvents());
+      case 3:
+        return Double.valueOf(e.getNanos() / 1000 / 1000.0);
+      default:
+        return ""; // should never happen
+      }
+    }
+  }
+
+  public static void show(JFrame parent, Project proj) {
+    CircuitState state = proj.getCircuitState();
+    if (state == null)
+      return;
+    ProfileDialog dlog = new ProfileDialog(parent, state.getPropagator(),
+        state.getAncestorState().getCircuit().getName());
+    dlog.setVisible(true);
+  }
+
+  private static final long serialVersionUID = 1L;
+
+  private Propagator prop;
+  private SimulationProfiler profiler = new SimulationProfiler();
+  private ProfileTableModel model = new ProfileTableModel();
+  private JComboBox<String> view = new JComboBox<>(new String[] {
+      S.get("profileByComponent"), S.get("profileBySubcircuit"),
+      S.get("profileByBus") });
+  private JButton reset = new JButton(S.get("profileResetButton"));
+  private JButton close = new JButton(S.get("statsCloseButton"));
+  private Timer timer = new Timer(1000, this);
+
+  private ProfileDialog(JFrame parent, Propagator prop, String circuitName) {
+    super(parent, false);
+    this.prop = prop;
+    setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    setTitle(S.fmt("profileDialogTitle", circuitName));
+
+    JTable table = new JTable();
+    table.setModel(new TableSorter(model, table.getTableHeader()));
+    JScrollPane tablePane = new JScrollPane(table);
+
+    view.addActionListener(this);
+    reset.addActionListener(this);
+    close.addActionListener(this);
+    JPanel buttonPanel = new JPanel();
+    buttonPanel.add(view);
+    buttonPanel.add(reset);
+    buttonPanel.add(close);
+
+    Container contents = this.getContentPane();
+    contents.setLayout(new BorderLayout());
+    contents.add(tablePane, BorderLayout.CENTER);
+    contents.add(buttonPanel, BorderLayout.PAGE_END);
+    this.pack();
+    this.setSize(new Dimension(650, 450));
+
+    addWindowListener(new WindowAdapter() {
+      @Override
+      public void windowClosed(WindowEvent e) {
+        timer.stop();
+        if (ProfileDialog.this.prop.getProfiler() == profiler)
+          ProfileDialog.this.prop.setProfiler(null);
+      }
+    });
+    prop.setProfiler(profiler);
+    timer.start();
+  }
+
+  private void refresh() {
+    switch (view.getSelectedIndex()) {
+    case 1:
+      model.setEntries(profiler.getSubcircuitEntries());
+      break;
+    case 2:
+      model.setEntries(profiler.getBusEntries());
+      break;
+    default:
+      model.setEntries(profiler.getComponentEntries());
+      break;
+    }
+  }
+
+  public void actionPerformed(ActionEvent e) {
+    Object src = e.getSource();
+    if (src == close) {
+      this.dispose();
+    } else if (src == reset) {
+      profiler.reset();
+      refresh();
+    } else {
+      refresh();
+    }
+  }
+}
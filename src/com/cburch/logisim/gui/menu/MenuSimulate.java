@@ -48,6 +48,8 @@ import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.Simulator;
+import com.cburch.logisim.gui.main.MetricsDialog;
+import com.cburch.logisim.gui.main.ProfileDialog;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.hdl.VhdlSimulator;
 
@@ -106,6 +108,10 @@ public class MenuSimulate extends Menu {
         proj.getLogFrame().setVisible(true);
       } else if (src == test) {
         proj.getTestFrame().setVisible(true);
+      } else if (src == profile) {
+        ProfileDialog.show(proj.getFrame(), proj);
+      } else if (src == metrics) {
+        MetricsDialog.show(proj.getFrame(), proj);
       }
 
       Simulator sim = proj.getSimulator();
@@ -278,6 +284,8 @@ public class MenuSimulate extends Menu {
   private ArrayList<CircuitStateMenuItem> upStateItems = new ArrayList<CircuitStateMenuItem>();
   private JMenuItem log = new JMenuItem();
   private JMenuItem test = new JMenuItem();
+  private JMenuItem profile = new JMenuItem();
+  private JMenuItem metrics = new JMenuItem();
 
   public MenuSimulate(LogisimMenuBar menubar) {
     this.menubar = menubar;
@@ -337,6 +345,8 @@ public class MenuSimulate extends Menu {
     addSeparator();
     add(log);
     add(test);
+    add(profile);
+    add(metrics);
 
     setEnabled(false);
     runToggle.setEnabled(false);
@@ -369,6 +379,8 @@ public class MenuSimulate extends Menu {
     // ticksEnabled.addActionListener(myListener);
     log.addActionListener(myListener);
     test.addActionListener(myListener);
+    profile.addActionListener(myListener);
+    metrics.addActionListener(myListener);
 
     computeEnabled();
   }
@@ -422,6 +434,8 @@ public class MenuSimulate extends Menu {
     upStateMenu.setText(S.get("simulateUpStateMenu"));
     log.setText(S.get("simulateLogItem"));
     test.setText(S.get("simulateTestItem"));
+    profile.setText(S.get("simulateProfileItem"));
+    metrics.setText(S.get("simulateMetricsItem"));
   }
 
   private void recreateStateMenu(JMenu menu,
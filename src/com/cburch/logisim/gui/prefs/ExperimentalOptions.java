@@ -47,6 +47,8 @@ class ExperimentalOptions extends OptionsPanel {
   private PrefOptionList accel;
   // private JLabel dualScreenRestart = new JLabel();
   private PrefOptionList dualScreen;
+  private PrefBoolean memoryBinary;
+  private PrefOptionList chronoOverflow;
 
   public ExperimentalOptions(PreferencesFrame window) {
     super(window);
@@ -97,10 +99,30 @@ class ExperimentalOptions extends OptionsPanel {
     JPanel dualScreenPanel2 = new JPanel();
     dualScreenPanel2.add(dualScreenPanel);
 
+    memoryBinary = new PrefBoolean(AppPreferences.MEMORY_BINARY_ENCODING,
+        S.getter("memoryBinaryEncoding"));
+    JPanel memoryBinaryPanel = new JPanel();
+    memoryBinaryPanel.add(memoryBinary);
+
+    chronoOverflow = new PrefOptionList(AppPreferences.CHRONO_OVERFLOW,
+        S.getter("chronoOverflowLabel"), new PrefOption[] {
+          new PrefOption(AppPreferences.CHRONO_OVERFLOW_BLOCK,
+              S.getter("chronoOverflowBlock")),
+          new PrefOption(AppPreferences.CHRONO_OVERFLOW_DROP,
+              S.getter("chronoOverflowDrop")), });
+
+    JPanel chronoOverflowPanel = new JPanel(new BorderLayout());
+    chronoOverflowPanel.add(chronoOverflow.getJLabel(), BorderLayout.LINE_START);
+    chronoOverflowPanel.add(chronoOverflow.getJComboBox(), BorderLayout.CENTER);
+    JPanel chronoOverflowPanel2 = new JPanel();
+    chronoOverflowPanel2.add(chronoOverflowPanel);
+
     setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
     add(Box.createGlue());
     add(accelPanel2);
     add(dualScreenPanel2);
+    add(memoryBinaryPanel);
+    add(chronoOverflowPanel2);
     add(Box.createGlue());
   }
 
@@ -119,6 +141,8 @@ class ExperimentalOptions extends OptionsPanel {
     accel.localeChanged();
     accelRestart.setText(S.get("accelRestartLabel"));
     dualScreen.localeChanged();
+    memoryBinary.localeChanged();
+    chronoOverflow.localeChanged();
     // dualScreenRestart.setText(S.get("dualScreenRestartLabel"));
   }
 }
@@ -86,11 +86,13 @@ public class Startup {
     options.put("-questa", ONEPARAM);
     options.put("-sub", TWOPARAM);
     options.put("-test", TWOPARAM); // is this a tty option? what is this?
+    options.put("-testthreads", ONEPARAM);
 
     options.put("-version", HEADLESS);
     options.put("-help", HEADLESS);
     options.put("-list", HEADLESS | NEEDFILE);
     options.put("-png", HEADLESS | ONEPARAM | NEEDFILE);
+    options.put("-manifest", HEADLESS | ONEPARAM);
     options.put("-tty", HEADLESS | ONEPARAM | NEEDFILE);
     options.put("-circuit", HEADLESS | ONEPARAM);
     options.put("-load", HEADLESS | ONEPARAM);
@@ -191,12 +193,50 @@ public class Startup {
             ret.ttyFormat |= TtyInterface.FORMAT_TURING;
             TtyInterface.turingInitialTape = fmt.substring(7);
           }
+          else if (fmt.startsWith("video:")) {
+            // video:N or video:N:ppm dumps RGB Video displays every N ticks
+            ret.ttyFormat |= TtyInterface.FORMAT_VIDEO;
+            String[] p = fmt.split(":");
+            if (p.length < 2 || p.length > 3
+                || (p.length == 3 && !p[2].equals("ppm") && !p[2].equals("png")))
+              fail("can't parse args for tty args video:N[:png|:ppm]");
+            try {
+              TtyInterface.videoFrameInterval = Integer.parseInt(p[1]);
+            } catch (NumberFormatException e) {
+              fail("can't parse args for tty video: " + fmt + " - " + e.getMessage());
+            }
+            if (TtyInterface.videoFrameInterval <= 0)
+              fail("can't parse args for tty args video:N[:png|:ppm]");
+            TtyInterface.videoPpm = p.length == 3 && p[2].equals("ppm");
+          }
           else if (fmt.equals("speed"))
             ret.ttyFormat |= TtyInterface.FORMAT_SPEED;
           else if (fmt.equals("tty"))
             ret.ttyFormat |= TtyInterface.FORMAT_TTY;
           else if (fmt.equals("halt"))
             ret.ttyFormat |= TtyInterface.FORMAT_HALT;
+          else if (fmt.equals("cycle"))
+            ret.ttyFormat |= TtyInterface.FORMAT_CYCLE;
+          else if (fmt.equals("profile"))
+            ret.ttyFormat |= TtyInterface.FORMAT_PROFILE;
+          else if (fmt.startsWith("profile:")) {
+            // profile:FILE writes the profile to FILE instead of stdout
+            ret.ttyFormat |= TtyInterface.FORMAT_PROFILE;
+            TtyInterface.profileFile = fmt.substring(8);
+          }
+          else if (fmt.equals("metrics"))
+            ret.ttyFormat |= TtyInterface.FORMAT_METRICS;
+          else if (fmt.startsWith("metrics:")) {
+            // metrics:N dumps simulator metrics every N milliseconds
+            ret.ttyFormat |= TtyInterface.FORMAT_METRICS;
+            try {
+              TtyInterface.metricsInterval = Integer.parseInt(fmt.substring(8));
+            } catch (NumberFormatException e) {
+              fail("can't parse args for tty metrics: " + fmt + " - " + e.getMessage());
+            }
+            if (TtyInterface.metricsInterval <= 0)
+              fail("can't parse args for tty args metrics:N");
+          }
           else if (fmt.equals("stats"))
             ret.ttyFormat |= TtyInterface.FORMAT_STATISTICS;
           else if (fmt.equals("binary"))
@@ -237,6 +277,8 @@ public class Startup {
         if (circuits.length == 0)
           fail(S.get("pngArgError"));
         ret.headlessPngCircuits = circuits;
+      } else if (arg.equals("-manifest")) {
+        ret.pngManifest = new File(param0);
       } else if (arg.equals("-list")) {
         ret.headlessList = true;
       } else if (arg.equals("-sub")) {
@@ -324,6 +366,14 @@ public class Startup {
         ret.testVector = param1;
         ret.showSplash = false;
         ret.exitAfterStartup = true;
+      } else if (arg.equals("-testthreads")) {
+        try {
+          ret.testThreads = Integer.parseInt(param0);
+        } catch (NumberFormatException e) {
+          fail(S.get("argTestThreadsError"));
+        }
+        if (ret.testThreads <= 0)
+          fail(S.get("argTestThreadsError"));
       } else if (arg.equals("-circuit")) {
         ret.circuitToTest = param0;
       } else if (arg.equals("-clearprefs") || arg.equals("-clearprops")) {
@@ -363,6 +413,7 @@ public class Startup {
     System.err.println("   " + S.get("argQuestaOption")); // OK
     System.err.println("   " + S.get("argSubOption")); // OK
     System.err.println("   " + S.get("argTestOption")); // OK
+    System.err.println("   " + S.get("argTestThreadsOption")); // OK
     System.err.println(); // OK
     System.err.println(S.get("argTTYOptionHeader")); // OK
     System.err.println("   " + S.get("argVersionOption")); // OK
@@ -370,6 +421,7 @@ public class Startup {
     System.err.println("   " + S.get("argListOption")); // OK
     System.err.println("   " + S.get("argPngOption")); // OK
     System.err.println("   " + S.get("argPngsOption")); // OK
+    System.err.println("   " + S.get("argManifestOption")); // OK
     System.err.println("   " + S.get("argTtyOption")); // OK
     System.err.println("   " + S.get("argCircuitOption")); // OK
     System.err.println("   " + S.get("argLoadOption")); // OK
@@ -467,12 +519,14 @@ public class Startup {
   // based on command line
   boolean headlessTty, headlessPng, headlessList;
   String headlessPngCircuits[];
+  private File pngManifest;
   private File templFile = null;
   private boolean templEmpty = false;
   private boolean templPlain = false;
   private ArrayList<File> filesToOpen = new ArrayList<>();
   private String testVector = null;
   private String circuitToTest = null;
+  private int testThreads = 0; // 0 means one per processor
   private boolean exitAfterStartup = false;
   private boolean showSplash;
   private File loadFile;
@@ -511,6 +565,10 @@ public class Startup {
     return filesToOpen;
   }
 
+  File getPngManifest() {
+    return pngManifest;
+  }
+
   File getLoadFile() {
     return loadFile;
   }
@@ -631,7 +689,7 @@ public class Startup {
           if (testVector != null) {
             Project proj = ProjectActions.doOpenNoWindow(monitor,
                 fileToOpen, substitutions);
-            proj.doTestVector(testVector, circuitToTest);
+            proj.doTestVector(testVector, circuitToTest, testThreads);
           } else {
             ProjectActions.doOpen(monitor, fileToOpen, substitutions);
           }
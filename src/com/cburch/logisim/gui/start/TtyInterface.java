@@ -33,13 +33,33 @@ import static com.cburch.logisim.gui.start.Strings.S;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.cburch.logisim.analyze.model.TruthTable;
 import com.cburch.logisim.analyze.model.Var;
@@ -47,7 +67,11 @@ import com.cburch.logisim.circuit.Analyze;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.SimulationMetrics;
+import com.cburch.logisim.circuit.SimulationProfiler;
+import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.FileStatistics;
@@ -55,16 +79,20 @@ import com.cburch.logisim.file.LoadCanceledByUser;
 import com.cburch.logisim.file.LoadFailedException;
 import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.file.XmlWriter;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.log.Loggable;
-import com.cburch.logisim.gui.main.Canvas;
 import com.cburch.logisim.gui.main.ExportImage;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.hdl.VhdlContent;
+import com.cburch.logisim.std.hdl.VhdlEntity;
 import com.cburch.logisim.std.io.Keyboard;
 import com.cburch.logisim.std.io.Tty;
+import com.cburch.logisim.std.io.Video;
 import com.cburch.logisim.std.memory.MemContents;
 import com.cburch.logisim.std.memory.Ram;
 import com.cburch.logisim.std.memory.Register;
@@ -84,45 +112,124 @@ public class TtyInterface {
   // It's possible to avoid using the separate thread using
   // System.in.available(),
   // but this doesn't quite work because on some systems, the keyboard input
-  // is not interactively echoed until System.in.read() is invoked.
+  // is not interactively echoed until System.in.read() is invoked. The thread
+  // decodes stdin into a bounded buffer, from which the simulation takes only
+  // as many characters as the keyboards have room for. When the buffer is
+  // full, the thread stops reading until there is space, so no input is lost.
   private static class StdinThread extends UniquelyNamedThread {
-    private LinkedList<char[]> queue; // of char[]
+    private static final int CAPACITY = 4096;
+    private final char[] queue = new char[CAPACITY];
+    private int head, count; // guarded by this
+    private volatile int available; // same as count, for polling without lock
 
     public StdinThread() {
       super("TtyInterface-StdInThread");
-      queue = new LinkedList<char[]>();
+      setDaemon(true);
     }
 
-    public char[] getBuffer() {
-      synchronized (queue) {
-        if (queue.isEmpty()) {
-          return null;
-        } else {
-          return queue.removeFirst();
-        }
+    public boolean isEmpty() {
+      return available == 0;
+    }
+
+    public synchronized int take(char[] dst, int max) {
+      int n = Math.min(max, count);
+      for (int i = 0; i < n; i++)
+        dst[i] = queue[(head + i) % CAPACITY];
+      head = (head + n) % CAPACITY;
+      count -= n;
+      available = count;
+      notifyAll();
+      return n;
+    }
+
+    private synchronized void put(CharBuffer cb) throws InterruptedException {
+      while (cb.hasRemaining()) {
+        while (count == CAPACITY)
+          wait();
+        int n = Math.min(cb.remaining(), CAPACITY - count);
+        for (int i = 0; i < n; i++)
+          queue[(head + count + i) % CAPACITY] = cb.get();
+        count += n;
+        available = count;
       }
     }
 
     @Override
     public void run() {
-      InputStreamReader stdin = new InputStreamReader(System.in);
-      char[] buffer = new char[32];
-      while (true) {
-        try {
-          int nbytes = stdin.read(buffer);
-          if (nbytes > 0) {
-            char[] add = new char[nbytes];
-            System.arraycopy(buffer, 0, add, 0, nbytes);
-            synchronized (queue) {
-              queue.addLast(add);
-            }
-          }
-        } catch (IOException e) {
+      ReadableByteChannel stdin = Channels.newChannel(System.in);
+      CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      ByteBuffer bytes = ByteBuffer.allocate(1024);
+      CharBuffer chars = CharBuffer.allocate(1024);
+      try {
+        while (stdin.read(bytes) >= 0) {
+          bytes.flip();
+          decoder.decode(bytes, chars, false);
+          bytes.compact();
+          chars.flip();
+          put(chars);
+          chars.clear();
         }
+      } catch (IOException | InterruptedException e) {
       }
     }
   }
 
+  // Characters sent to stdout by Tty components are collected here, then
+  // encoded and written through a channel in batches, rather than printed
+  // one at a time.
+  private static class StdoutBuffer {
+    private static final int CAPACITY = 8192;
+    private final CharBuffer chars = CharBuffer.allocate(CAPACITY);
+    private final ByteBuffer bytes = ByteBuffer.allocate(4 * CAPACITY);
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private WritableByteChannel channel;
+    private Object channelFor;
+
+    void put(char c) {
+      if (!chars.hasRemaining())
+        flush();
+      chars.put(c);
+    }
+
+    boolean isEmpty() {
+      return chars.position() == 0;
+    }
+
+    void flush() {
+      if (isEmpty())
+        return;
+      if (channelFor != System.out) {
+        channelFor = System.out;
+        channel = Channels.newChannel(System.out);
+      }
+      chars.flip();
+      try {
+        CoderResult r;
+        do {
+          r = encoder.encode(chars, bytes, false);
+          bytes.flip();
+          while (bytes.hasRemaining())
+            channel.write(bytes);
+          bytes.clear();
+        } while (r.isOverflow());
+      } catch (IOException e) {
+        bytes.clear();
+      }
+      chars.compact(); // may keep half of a surrogate pair
+      System.out.flush();
+    }
+  }
+
+  private static final StdoutBuffer stdout = new StdoutBuffer();
+
+  // Pending Tty output is written out at least this often (ns), so prompts
+  // and partial lines show up while the simulation keeps running.
+  private static final long STDOUT_FLUSH_INTERVAL = 20000000L;
+
   private static int countDigits(int num) {
     int digits = 1;
     int lessThan = 10;
@@ -133,6 +240,15 @@ public class TtyInterface {
     return digits;
   }
 
+  private static void displayMetrics(SimulationMetrics.Snapshot m) {
+    System.err.println(S.fmt("ttyMetricsMsg",
+          m.getEventsProcessed(), m.getQueueHighWater(),
+          String.format("%.1f", m.getAverageIterations()),
+          m.getMaxIterations(), m.getIterationLimit(), m.getOscillations(),
+          m.getDirtyPointsNanos() / 1000000, m.getDirtyComponentsNanos() / 1000000,
+          String.format("%.1f", m.getTickRate())));
+  }
+
   private static void displaySpeed(long tickCount, long elapse) {
     double hertz = (double) tickCount / elapse * 1000.0;
     double precision;
@@ -259,6 +375,7 @@ public class TtyInterface {
   }
 
   private static void ensureLineTerminated() {
+    stdout.flush();
     if (!lastIsNewline) {
       lastIsNewline = true;
       System.out.print('\n'); // OK
@@ -298,7 +415,8 @@ public class TtyInterface {
         ttyFactory.sendToStdout(ttyState);
         found = true;
       } else if (factory instanceof Keyboard) {
-        keybStates.add(circState.getInstanceState(comp));
+        // not getInstanceState(), as that object gets reused for other components
+        keybStates.add(new InstanceStateImpl(circState, comp));
         found = true;
       }
     }
@@ -309,6 +427,34 @@ public class TtyInterface {
     return found;
   }
 
+  private static void prepareForVideo(CircuitState circState,
+      ArrayList<CircuitState> videoStates, ArrayList<Video> videos) {
+    for (Component comp : circState.getCircuit().getNonWires()) {
+      if (comp.getFactory() == Video.factory) {
+        videoStates.add(circState);
+        videos.add((Video)comp);
+      }
+    }
+    for (CircuitState sub : circState.getSubstates()) {
+      prepareForVideo(sub, videoStates, videos);
+    }
+  }
+
+  private static void writeVideoFrames(ArrayList<CircuitState> videoStates,
+      ArrayList<Video> videos, long frame) {
+    String ext = videoPpm ? ".ppm" : ".png";
+    for (int i = 0; i < videos.size(); i++) {
+      String name = videos.size() == 1 ? "video" : "video" + (i+1);
+      File f = new File(String.format("%s_%06d%s", name, frame, ext));
+      try {
+        videos.get(i).writeFrame(videoStates.get(i), f, videoPpm);
+      } catch (IOException e) {
+        System.out.println(S.fmt("ttyVideoError", f.getName(), e.toString()));
+        System.exit(-1);
+      }
+    }
+  }
+
   public static void run(Startup args) {
     File fileToOpen = args.getFilesToOpen().get(0);
     Loader loader = new Loader(null);
@@ -334,7 +480,7 @@ public class TtyInterface {
       ret = doList(file);
     }
     if (ret == 0 && args.headlessPng) {
-      ret = doPng(args.headlessPngCircuits, file);
+      ret = doPng(args.headlessPngCircuits, file, args.getPngManifest());
     }
     if (ret == 0 && args.headlessTty) {
       ret = doTty(args.getTtyFormat(), args.getLoadFile(), file, args.getCircuitToTest(),
@@ -357,35 +503,160 @@ public class TtyInterface {
 		return filename + ext;
 	}
 
-  static int doPng(String names[], LogisimFile.FileWithSimulations file) {
+  // Circuits are rendered in parallel, each into its own image by its own
+  // job. With a manifest (lines of "hash filename"), circuits whose contents
+  // hash the same as in the previous export, and whose image still exists,
+  // are skipped; the manifest is rewritten afterwards.
+  static int doPng(String names[], LogisimFile.FileWithSimulations file, File manifest) {
     double scale = 1.0;
+    boolean printerView = true;
     String format = ExportImage.FORMAT_PNG;
     Project proj = new Project(file);
-    Canvas canvas = new Canvas(proj);
-    int err = 0;
+
+    HashMap<String, String> oldHashes = new HashMap<>();
+    if (manifest != null && manifest.exists()) {
+      try {
+        for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+          int sp = line.indexOf(' ');
+          if (sp > 0)
+            oldHashes.put(line.substring(sp + 1), line.substring(0, sp));
+        }
+      } catch (IOException e) {
+        System.err.println("Could not read " + manifest + ": " + e.getMessage());
+        return 1;
+      }
+    }
+    TreeMap<String, String> newHashes = new TreeMap<>(oldHashes);
+    HashMap<Object, byte[]> digests = new HashMap<>();
+    String settings = "scale=" + scale + " printerView=" + printerView + "\n";
+
+    ArrayList<String> dests = new ArrayList<>();
+    ArrayList<Callable<String>> jobs = new ArrayList<>();
     for (Circuit c : file.file.getCircuits()) {
-      for (String n : names) {
-        if (!n.trim().equals("*") && !n.trim().equals(c.toString()))
-          continue;
-        File dest = new File(sanitize(c.toString(), ".png"));
-        System.out.println("Exporting " + c + " as " + dest);
-        String msg = ExportImage.exportImage(canvas, c, scale, true, dest, format, null);
-        if (msg != null) {
-          System.err.println(msg);
-          err = 1;
+      boolean selected = false;
+      for (String n : names)
+        selected |= n.trim().equals("*") || n.trim().equals(c.toString());
+      if (!selected)
+        continue;
+      File dest = new File(sanitize(c.toString(), ".png"));
+      String hash = manifest == null ? null : contentHash(proj, c, settings, digests);
+      newHashes.remove(dest.getName());
+      if (hash != null && hash.equals(oldHashes.get(dest.getName())) && dest.exists()) {
+        System.out.println("Skipping " + c + ", unchanged since " + dest + " was exported");
+        newHashes.put(dest.getName(), hash);
+        continue;
+      }
+      System.out.println("Exporting " + c + " as " + dest);
+      // states are created here, on one thread, before any job runs
+      CircuitState state = proj.getCircuitStateForPrinting(c);
+      dests.add(dest.getName());
+      jobs.add(() -> {
+        String msg = ExportImage.exportImage(null, c, state, scale, printerView, dest, format, null);
+        if (msg == null && hash != null) {
+          synchronized (newHashes) {
+            newHashes.put(dest.getName(), hash);
+          }
         }
+        return msg;
+      });
+    }
+
+    int err = 0;
+    if (!jobs.isEmpty()) {
+      ExecutorService pool = Executors.newFixedThreadPool(
+          Math.min(jobs.size(), Runtime.getRuntime().availableProcessors()));
+      try {
+        List<Future<String>> results = pool.invokeAll(jobs);
+        for (int i = 0; i < results.size(); i++) {
+          String msg;
+          try {
+            msg = results.get(i).get();
+          } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            msg = e.getCause().toString();
+          }
+          if (msg != null) {
+            System.err.println(dests.get(i) + ": " + msg);
+            err = 1;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return 1;
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    if (manifest != null) {
+      StringBuilder buf = new StringBuilder();
+      for (Map.Entry<String, String> e : newHashes.entrySet())
+        buf.append(e.getValue()).append(' ').append(e.getKey()).append('\n');
+      try {
+        Files.write(manifest.toPath(), buf.toString().getBytes(StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        System.err.println("Could not write " + manifest + ": " + e.getMessage());
+        err = 1;
       }
     }
     return err;
   }
 
+  // Hash of everything that goes into a circuit's image: its own contents
+  // and those of every circuit and VHDL entity it uses, directly or not,
+  // plus the export settings. Per-item digests are memoized in digests, so
+  // shared subcircuits are serialized only once per run.
+  private static String contentHash(Project proj, Circuit circ, String settings,
+      HashMap<Object, byte[]> digests) {
+    TreeMap<String, Object> used = new TreeMap<>();
+    ArrayList<Circuit> todo = new ArrayList<>();
+    used.put("circuit " + circ.getName(), circ);
+    todo.add(circ);
+    while (!todo.isEmpty()) {
+      Circuit c = todo.remove(todo.size() - 1);
+      for (Component comp : c.getNonWires()) {
+        ComponentFactory f = comp.getFactory();
+        if (f instanceof SubcircuitFactory) {
+          Circuit sub = ((SubcircuitFactory)f).getSubcircuit();
+          if (used.put("circuit " + sub.getName(), sub) == null)
+            todo.add(sub);
+        } else if (f instanceof VhdlEntity) {
+          VhdlContent vhdl = ((VhdlEntity)f).getContent();
+          used.put("vhdl " + vhdl.getName(), vhdl);
+        }
+      }
+    }
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      md.update(settings.getBytes(StandardCharsets.UTF_8));
+      for (Map.Entry<String, Object> e : used.entrySet()) {
+        byte[] d = digests.get(e.getValue());
+        if (d == null) {
+          String xml = XmlWriter.encodeContents(proj.getLogisimFile(), proj, e.getValue());
+          if (xml == null)
+            return null;
+          d = MessageDigest.getInstance("SHA-256").digest(xml.getBytes(StandardCharsets.UTF_8));
+          digests.put(e.getValue(), d);
+        }
+        md.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+        md.update(d);
+      }
+      StringBuilder hex = new StringBuilder();
+      for (byte b : md.digest())
+        hex.append(String.format("%02x", b & 0xff));
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+  }
+
   static int doTty(int format, File loadfile, LogisimFile.FileWithSimulations file, String circuitToTest,
       int head, int body, int tail) {
     if ((format & FORMAT_STATISTICS) != 0) {
       format &= ~FORMAT_STATISTICS;
       displayStatistics(file.file);
     }
-    if (format == 0) { // no simulation remaining to perform, so just exit
+    if ((format & ~(FORMAT_CYCLE | FORMAT_PROFILE | FORMAT_METRICS)) == 0) { // no simulation remaining to perform, so just exit
       System.exit(0);
     }
 
@@ -451,9 +722,18 @@ public class TtyInterface {
     }
 
     CircuitState circState = CircuitState.createRootState(proj, circuit);
+    if ((format & FORMAT_CYCLE) != 0)
+      circState.getPropagator().setCycleMode(true);
+    SimulationProfiler profiler = null;
+    if ((format & FORMAT_PROFILE) != 0) {
+      profiler = new SimulationProfiler();
+      circState.getPropagator().setProfiler(profiler);
+    }
     // we have to do our initial propagation before the simulation starts -
     // it's necessary to populate the circuit with substates.
     circState.getPropagator().propagate();
+    if ((format & FORMAT_CYCLE) != 0 && circState.getPropagator().getCycleFallback() != null)
+      System.err.println(S.fmt("ttyCycleFallback", circState.getPropagator().getCycleFallback()));
     if (loadfile != null) {
       try {
         boolean loaded = loadRam(circState, loadfile);
@@ -474,9 +754,23 @@ public class TtyInterface {
       circState.getPropagator().propagate();
     }
     int simCode = runSimulation(circState, outputPins, pinNames, haltPin, sreg, tape, format);
+    if (profiler != null)
+      writeProfile(profiler);
     return simCode;
   }
 
+  private static void writeProfile(SimulationProfiler profiler) {
+    if (profileFile == null) {
+      profiler.writeCollapsedStacks(new PrintWriter(System.out));
+      return;
+    }
+    try (PrintWriter out = new PrintWriter(profileFile, "UTF-8")) {
+      profiler.writeCollapsedStacks(out);
+    } catch (IOException e) {
+      System.err.println(S.fmt("ttyProfileError", profileFile, e.getMessage()));
+    }
+  }
+
   private static int runSimulation(CircuitState circState,
       ArrayList<Instance> outputPins, Map<Instance, String> pinNames,
       Instance haltPin, Component sreg, Component tape, int format) {
@@ -485,6 +779,20 @@ public class TtyInterface {
     boolean showTty = (format & FORMAT_TTY) != 0;
     boolean showTuring = (format & FORMAT_TURING) != 0;
     boolean showHalt = (format & FORMAT_HALT) != 0;
+    boolean showVideo = (format & FORMAT_VIDEO) != 0;
+    boolean showMetrics = (format & FORMAT_METRICS) != 0;
+
+    ArrayList<CircuitState> videoStates = null;
+    ArrayList<Video> videos = null;
+    if (showVideo) {
+      videoStates = new ArrayList<>();
+      videos = new ArrayList<>();
+      prepareForVideo(circState, videoStates, videos);
+      if (videos.isEmpty()) {
+        System.out.println(S.get("ttyNoVideoError"));
+        System.exit(-1);
+      }
+    }
 
     ArrayList<InstanceState> keyboardStates = null;
     StdinThread stdinThread = null;
@@ -540,6 +848,9 @@ public class TtyInterface {
     }
 
     int nrows = 0, ndup = 0;
+    char[] keyBuffer = keyboardStates == null ? null : new char[256];
+    long lastFlush = System.nanoTime();
+    long lastMetrics = lastFlush;
     while (true) {
       ArrayList<Object> curOutputs = new ArrayList<>();
       for (Instance pin : outputPins) {
@@ -562,6 +873,7 @@ public class TtyInterface {
         // halted |= p.isHalted(val, vals);
       }
       if (showTable) {
+        stdout.flush(); // keep Tty output in order with the table
         if (displayTableRow(needTableHeader, prevOutputs, curOutputs, headers, formats, format)) {
           needTableHeader = false;
           ndup = 0;
@@ -576,11 +888,14 @@ public class TtyInterface {
       }
 
       if (turingMaxSteps > 0 && nrows >= turingMaxSteps && !halted) {
+        stdout.flush();
         System.out.println("Halting after executing for " + turingMaxSteps + " steps.");
         halted = true;
       }
 
       if (halted) {
+        if (showVideo && tickCount % videoFrameInterval != 0)
+          writeVideoFrames(videoStates, videos, tickCount / videoFrameInterval + 1);
         retCode = 0; // normal exit
         break;
       }
@@ -588,18 +903,34 @@ public class TtyInterface {
         retCode = 1; // abnormal exit
         break;
       }
-      if (keyboardStates != null) {
-        char[] buffer = stdinThread.getBuffer();
-        if (buffer != null) {
-          for (InstanceState keyState : keyboardStates) {
-            Keyboard.addToBuffer(keyState, buffer);
-          }
+      if (keyboardStates != null && !stdinThread.isEmpty()) {
+        int space = keyBuffer.length;
+        for (InstanceState keyState : keyboardStates)
+          space = Math.min(space, Keyboard.getBufferSpace(keyState));
+        int n = stdinThread.take(keyBuffer, space);
+        for (InstanceState keyState : keyboardStates)
+          Keyboard.addToBuffer(keyState, keyBuffer, 0, n);
+      }
+      if (!stdout.isEmpty()) {
+        long now = System.nanoTime();
+        if (now - lastFlush >= STDOUT_FLUSH_INTERVAL) {
+          stdout.flush();
+          lastFlush = now;
+        }
+      }
+      if (showMetrics) {
+        long now = System.nanoTime();
+        if (now - lastMetrics >= metricsInterval * 1000000L) {
+          displayMetrics(prop.getMetrics().snapshot());
+          lastMetrics = now;
         }
       }
       prevOutputs = curOutputs;
       tickCount++;
       prop.toggleClocks();
       prop.propagate();
+      if (showVideo && tickCount % videoFrameInterval == 0)
+        writeVideoFrames(videoStates, videos, tickCount / videoFrameInterval);
     }
     long elapse = System.currentTimeMillis() - start;
     if (showTty)
@@ -614,6 +945,8 @@ public class TtyInterface {
     if (showSpeed) {
       displaySpeed(tickCount, elapse);
     }
+    if (showMetrics)
+      displayMetrics(prop.getMetrics().snapshot());
     return retCode;
   }
 
@@ -796,7 +1129,7 @@ public class TtyInterface {
 
   public static void sendFromTty(char c) {
     lastIsNewline = c == '\n';
-    System.out.print(c); // OK
+    stdout.put(c);
   }
 
   public static final int FORMAT_TABLE = 1;
@@ -814,5 +1147,17 @@ public class TtyInterface {
   public static String turingInitialTape = "";
   public static int turingMaxSteps = -1;
 
+  public static final int FORMAT_VIDEO = 1 << 10;
+  public static int videoFrameInterval = 1; // ticks between RGB Video dumps
+  public static boolean videoPpm = false;
+
+  public static final int FORMAT_CYCLE = 1 << 11; // cycle-based simulation, if possible
+
+  public static final int FORMAT_PROFILE = 1 << 12;
+  public static String profileFile = null; // collapsed stacks, or null for stdout
+
+  public static final int FORMAT_METRICS = 1 << 13;
+  public static int metricsInterval = 1000; // msec between dumps to stderr
+
   private static boolean lastIsNewline = true;
 }
@@ -36,18 +36,26 @@
 package com.cburch.logisim.gui.test;
 import static com.cburch.logisim.gui.test.Strings.S;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.FailException;
 import com.cburch.logisim.data.TestException;
 import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.Ram;
 import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.util.UniquelyNamedThread;
 
@@ -55,50 +63,65 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
   // used only for automated testing via command line arguments
   public static int doTestVector(Project proj, Circuit circuit,
-      String vectorname) {
+      String vectorname, int numThreads) {
     System.out.println(S.fmt("testLoadingVector", vectorname));
     TestVector vec;
     try {
-      vec = new TestVector(vectorname);
+      vec = TestVector.open(new File(vectorname));
     } catch (Exception e) {
       System.err.println(S.fmt("testLoadingFailed", e.getMessage()));
       return -1;
     }
 
-    TestThread tester;
     try {
-      tester = new TestThread(proj, circuit, vec);
-    } catch (TestException e) {
-      System.err.println(S.fmt("testSetupFailed", e.getMessage()));
-      return -1;
-    }
+      TestThread tester;
+      try {
+        tester = new TestThread(proj, circuit, vec, numThreads);
+      } catch (TestException e) {
+        System.err.println(S.fmt("testSetupFailed", e.getMessage()));
+        return -1;
+      }
 
-    System.out.println(S.fmt("testRunning", Integer.toString(vec.data.size())));
+      System.out.println(S.get("testRunningAll"));
 
-    int numPass = 0, numFail = 0;
-    for (int i = 0; i < vec.data.size(); i++) {
+      int[] count = new int[2]; // pass, fail
       try {
-        System.out.print((i + 1) + " \r");
-        tester.test(i);
-        numPass++;
-      } catch (FailException e) {
-        System.out.println();
-        System.err.println(S.fmt("testFailed", Integer.toString(i + 1)));
-        for (; e != null; e = e.getMore())
-          System.out.println("  " + e.getMessage());
-        numFail++;
-        continue;
-      } catch (TestException e) {
+        tester.runVectors((i, err) -> {
+          System.out.print((i + 1) + " \r");
+          if (err == null) {
+            count[0]++;
+          } else if (err instanceof FailException) {
+            System.out.println();
+            System.err.println(S.fmt("testFailed", Integer.toString(i + 1)));
+            for (FailException e = (FailException)err; e != null; e = e.getMore())
+              System.out.println("  " + e.getMessage());
+            count[1]++;
+          } else {
+            System.out.println();
+            System.err.println(S.fmt("testFailed", Integer.toString(i + 1) + " " + err.getMessage()));
+            count[1]++;
+          }
+          return true;
+        });
+      } catch (IOException e) {
         System.out.println();
-        System.err.println(S.fmt("testFailed", Integer.toString(i + 1) + " " + e.getMessage()));
-        numFail++;
-        continue;
+        System.err.println(S.fmt("testLoadingFailed", e.getMessage()));
+        return -1;
       }
+      System.out.println();
+      System.out.println(S.fmt("testResults", Integer.toString(count[0]), Integer.toString(count[1])));
+      return 0;
+    } finally {
+      vec.close();
     }
-    System.out.println();
-    System.out.println(S.fmt("testResults", Integer.toString(numPass), Integer.toString(numFail)));
-    return 0;
   }
+
+  // Receives results strictly in vector order, on the thread that called
+  // runVectors(). Returning false cancels the remaining vectors.
+  private interface ResultHandler {
+    boolean result(int idx, TestException err);
+  }
+
   private Instance[] pin;
   private Project project;
   private Circuit circuit;
@@ -106,8 +129,27 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   private TestVector vector;
   private Model model;
 
+  // Each worker simulates on its own clone of this state, so the user's
+  // simulation is left alone and workers never share a propagator.
+  private CircuitState template;
+  private int numThreads;
+
   private boolean canceled = false, paused = false;
 
+  // Vectors opened for streaming are read and run this many rows at a time,
+  // so memory use does not grow with the size of the file.
+  private static final int CHUNK_SIZE = 4096;
+  private boolean dataRead = false;
+
+  // Guarded by this: the rows being run, which are the vectors numbered from
+  // chunkStart onward (null once there are no more), the next vector not yet
+  // claimed by a worker, and the results finished so far in this chunk
+  // (which may run ahead of what has been reported).
+  private ArrayList<Value[]> chunk;
+  private int chunkStart, nextVector;
+  private boolean[] finished;
+  private TestException[] results;
+
   public TestThread(Model model) throws TestException {
     super("TestThread-Model");
     this.model = model;
@@ -115,25 +157,31 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     this.project = model.getProject();
     this.circuit = model.getCircuit();
     this.vector = model.getVector();
+    this.numThreads = Runtime.getRuntime().availableProcessors();
 
+    forkState();
     matchPins();
 
     model.getCircuit().addCircuitWeakListener(null, this);
   }
 
   // used only for automated testing via command line arguments
-  private TestThread(Project proj, Circuit circuit, TestVector vec)
-      throws TestException {
+  private TestThread(Project proj, Circuit circuit, TestVector vec,
+      int numThreads) throws TestException {
     super("TestThread-Project");
     this.project = proj;
     this.circuit = circuit;
     this.vector = vec;
+    this.numThreads = numThreads > 0 ? numThreads
+        : Runtime.getRuntime().availableProcessors();
 
+    forkState();
     matchPins();
   }
 
-  public void cancel() {
+  public synchronized void cancel() {
     canceled = true;
+    notifyAll();
   }
 
   public void circuitChanged(CircuitEvent event) {
@@ -144,10 +192,20 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
       model.clearResults();
   }
 
+  private void forkState() {
+    // Start from the user's simulation, if it is of this circuit, so that
+    // memory contents they loaded are still visible to the vectors.
+    CircuitState live = project.getCircuitState();
+    if (live != null && live.getCircuit() == circuit)
+      template = live.cloneAsNewRootState();
+    else
+      template = CircuitState.createRootState(project, circuit);
+  }
+
   void matchPins() throws TestException {
     int n = vector.columnName.length;
     pin = new Instance[n];
-    CircuitState state = CircuitState.createRootState(this.project, this.circuit);
+    CircuitState state = template;
 
     for (int i = 0; i < n; i++) {
       String columnName = vector.columnName[i];
@@ -174,36 +232,153 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     }
   }
 
+  // Non-volatile RAM keeps its contents across the reset done before each
+  // vector, so a vector can see what earlier vectors wrote. Such circuits are
+  // run on a single worker, in order, so results do not depend on how the
+  // vectors happen to be divided between workers.
+  private static boolean hasPersistentState(Circuit circ, HashSet<Circuit> seen) {
+    if (!seen.add(circ))
+      return false;
+    for (Component comp : circ.getNonWires()) {
+      if (comp.getFactory() instanceof Ram) {
+        if (((Ram)comp.getFactory()).isNonVolatile(Instance.getInstanceFor(comp)))
+          return true;
+      } else if (comp.getFactory() instanceof SubcircuitFactory) {
+        Circuit sub = ((SubcircuitFactory)comp.getFactory()).getSubcircuit();
+        if (hasPersistentState(sub, seen))
+          return true;
+      }
+    }
+    return false;
+  }
+
   public void run() {
     try {
-      for (int i = 0; i < vector.data.size() && !canceled; i++) {
-        while (paused) {
-          if (canceled)
-            return;
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException e) {
+      runVectors((i, err) -> model.setResult(vector, i, err));
+    } catch (IOException e) {
+      // not possible: the model's vectors are already in memory
+    } finally {
+      model.stop();
+    }
+  }
+
+  private ArrayList<Value[]> nextRows() throws IOException {
+    if (vector.data == null)
+      return vector.readRows(CHUNK_SIZE);
+    if (dataRead || vector.data.isEmpty())
+      return null;
+    dataRead = true;
+    return vector.data;
+  }
+
+  private synchronized void setChunk(ArrayList<Value[]> rows, int start) {
+    chunk = rows;
+    chunkStart = start;
+    nextVector = start;
+    finished = rows == null ? null : new boolean[rows.size()];
+    results = rows == null ? null : new TestException[rows.size()];
+    notifyAll();
+  }
+
+  private void runVectors(ResultHandler handler) throws IOException {
+    ArrayList<Value[]> rows = nextRows();
+    if (rows == null)
+      return;
+    int workers = numThreads;
+    if (rows.size() < CHUNK_SIZE)
+      workers = Math.min(workers, rows.size());
+    if (workers > 1 && hasPersistentState(circuit, new HashSet<>()))
+      workers = 1;
+    setChunk(rows, 0);
+    for (int w = 0; w < workers; w++)
+      new Worker().start();
+    try {
+      int start = 0;
+      while (rows != null) {
+        // read ahead while the workers are busy with the current rows
+        ArrayList<Value[]> next = nextRows();
+        for (int i = 0; i < rows.size(); i++) {
+          TestException err;
+          synchronized (this) {
+            while (!finished[i] && !canceled)
+              wait();
+            if (canceled)
+              return;
+            err = results[i];
+            results[i] = null;
           }
+          if (!handler.result(start + i, err))
+            return;
         }
+        start += rows.size();
+        rows = next;
+        setChunk(rows, start);
+      }
+    } catch (InterruptedException e) {
+      // stop early
+    } finally {
+      cancel();
+    }
+  }
+
+  private class Worker extends UniquelyNamedThread {
+    Worker() {
+      super("TestThread-Worker");
+      setDaemon(true);
+    }
+
+    public void run() {
+      CircuitState state = null;
+      for (;;) {
+        int i;
+        Value[] row;
+        synchronized (TestThread.this) {
+          i = claimVector();
+          if (i < 0)
+            return;
+          row = chunk.get(i);
+        }
+        // Anything thrown here is reported as this vector's failure, since
+        // runVectors waits for every claimed vector to be marked finished.
+        TestException err = null;
         try {
-          test(i);
-          canceled = canceled || !model.setResult(vector, i, null);
+          if (state == null)
+            state = template.cloneAsNewRootState();
+          circuit.doTestVector(state, pin, row);
         } catch (TestException e) {
-          canceled = canceled || !model.setResult(vector, i, e);
+          err = e;
+        } catch (Throwable e) {
+          err = new TestException(e.toString());
+        }
+        synchronized (TestThread.this) {
+          results[i] = err;
+          finished[i] = true;
+          TestThread.this.notifyAll();
         }
-        Thread.yield();
       }
-    } finally {
-      model.stop();
     }
   }
 
-  public void setPaused(boolean paused) {
-    this.paused = paused;
+  // Returns the index within the current chunk of the next vector to run,
+  // waiting while paused or until the next chunk has been read, or -1 once
+  // there are none left or the run has been canceled.
+  private synchronized int claimVector() {
+    while (!canceled && (paused
+          || (chunk != null && nextVector == chunkStart + chunk.size()))) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        return -1;
+      }
+    }
+    if (canceled || chunk == null)
+      return -1;
+    return nextVector++ - chunkStart;
   }
 
-  private void test(int idx) throws TestException {
-    circuit.doTestVector(project, pin, vector.data.get(idx));
+  public synchronized void setPaused(boolean paused) {
+    this.paused = paused;
+    notifyAll();
   }
 
 }
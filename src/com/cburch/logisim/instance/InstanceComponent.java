@@ -37,6 +37,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
+import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
@@ -96,6 +97,21 @@ public /*final*/ class InstanceComponent
   private boolean attrListenRequested;
   private InstanceTextField textField;
   private InstanceStateImpl instanceState;
+  private ConnectedPorts connectedPorts;
+
+  // Which of the first 64 ports are connected to anything in the circuit, as
+  // of a given version of the circuit's connections.
+  private static class ConnectedPorts {
+    final Circuit circ;
+    final int version;
+    final long mask;
+
+    ConnectedPorts(Circuit circ, int version, long mask) {
+      this.circ = circ;
+      this.version = version;
+      this.mask = mask;
+    }
+  }
 
   public InstanceComponent(InstanceFactory factory, Location loc,
       AttributeSet attrs) {
@@ -202,6 +218,8 @@ public /*final*/ class InstanceComponent
       endArray = es;
       endList = new UnmodifiableList<EndData>(es);
     }
+    if (endsChangedOld != null)
+      connectedPorts = null;
     widthAttrs = wattrs;
     hasToolTips = toolTipFound;
     if (endsChangedOld != null) {
@@ -370,6 +388,24 @@ public /*final*/ class InstanceComponent
     factory.propagate(state.getInstanceState(this));
   }
 
+  boolean isPortConnected(Circuit circ, int index) {
+    if (index >= 64)
+      return circ.isConnected(endArray[index].getLocation(), this);
+    ConnectedPorts c = connectedPorts;
+    int version = circ.getConnectionVersion();
+    if (c == null || c.circ != circ || c.version != version) {
+      EndData[] ends = endArray;
+      long mask = 0;
+      for (int i = 0; i < ends.length && i < 64; i++) {
+        if (circ.isConnected(ends[i].getLocation(), this))
+          mask |= 1L << i;
+      }
+      c = new ConnectedPorts(circ, version, mask);
+      connectedPorts = c;
+    }
+    return ((c.mask >> index) & 1) != 0;
+  }
+
   void recomputeBounds() {
     Location p = loc;
     bounds = factory.getOffsetBounds(attrs).translate(p.getX(), p.getY());
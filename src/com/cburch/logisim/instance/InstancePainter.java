@@ -242,6 +242,8 @@ public class InstancePainter implements InstanceState {
 
   public boolean isPortConnected(int index) {
     Circuit circ = context.getCircuit();
+    if (comp instanceof InstanceComponent)
+      return ((InstanceComponent) comp).isPortConnected(circ, index);
     Location loc = comp.getEnd(index).getLocation();
     return circ.isConnected(loc, comp);
   }
@@ -117,6 +117,8 @@ public class InstanceStateImpl implements InstanceState {
 
   public boolean isPortConnected(int index) {
     Circuit circ = circuitState.getCircuit();
+    if (component instanceof InstanceComponent)
+      return ((InstanceComponent) component).isPortConnected(circ, index);
     Location loc = component.getEnd(index).getLocation();
     return circ.isConnected(loc, component);
   }
@@ -425,6 +425,14 @@ public class AppPreferences {
     new PrefMonitor("dualScreenFixes",
           new String[] { DUALSCREEN_NONE, DUALSCREEN_FIX, DUALSCREEN_MORE, DUALSCREEN_MOST },
           DUALSCREEN_NONE);
+  public static final PrefMonitor<Boolean>
+      MEMORY_BINARY_ENCODING = new PrefMonitor("memoryBinaryEncoding", false);
+  public static final String CHRONO_OVERFLOW_BLOCK = "block";
+  public static final String CHRONO_OVERFLOW_DROP = "drop";
+  public static final PrefMonitor<String> CHRONO_OVERFLOW =
+    new PrefMonitor("chronoOverflow",
+          new String[] { CHRONO_OVERFLOW_BLOCK, CHRONO_OVERFLOW_DROP },
+          CHRONO_OVERFLOW_BLOCK);
 
   // Third party softwares preferences
   public static final PrefMonitor<String>
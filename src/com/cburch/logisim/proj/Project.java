@@ -217,14 +217,14 @@ public class Project {
     fireEvent(new ProjectEvent(ProjectEvent.ACTION_COMPLETE, this, act));
   }
 
-  public int doTestVector(String vectorname, String name) {
+  public int doTestVector(String vectorname, String name, int numThreads) {
     Circuit circuit = (name == null ? file.getMainCircuit() : file.getCircuit(name));
     if (circuit == null) {
       System.err.println("Circuit '" + name + "' not found.");
       return -1;
     }
     setCurrentCircuit(circuit);
-    return TestThread.doTestVector(this, circuit, vectorname);
+    return TestThread.doTestVector(this, circuit, vectorname, numThreads);
   }
 
   private void fireEvent(int action, Object data) {
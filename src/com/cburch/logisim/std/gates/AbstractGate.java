@@ -39,6 +39,7 @@ import javax.swing.Icon;
 import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -52,6 +53,7 @@ import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.prefs.AppPreferences;
@@ -557,28 +559,26 @@ abstract class AbstractGate extends InstanceFactory {
     GateAttributes attrs = (GateAttributes) state.getAttributeSet();
     int inputCount = attrs.inputs;
     int negated = attrs.negated;
-    AttributeSet opts = state.getProject().getOptions().getAttributeSet();
-    boolean errorIfUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED)
-        .equals(Options.GATE_UNDEFINED_ERROR);
+    PropagationContext ctx = getPropagationContext(state, attrs);
 
-    Value[] inputs = new Value[inputCount];
+    Value[] inputs = scratch.get();
+    if (inputs.length < inputCount) {
+      inputs = new Value[inputCount];
+      scratch.set(inputs);
+    }
     int numInputs = 0;
-    boolean error = false;
     for (int i = 1; i <= inputCount; i++) {
-      if (state.isPortConnected(i)) {
-        int negatedBit = (negated >> (i - 1)) & 1;
-        if (negatedBit == 1) {
-          inputs[numInputs] = state.getPortValue(i).not();
-        } else {
-          inputs[numInputs] = state.getPortValue(i);
-        }
-        numInputs++;
+      if (((ctx.connected >> (i - 1)) & 1) == 0)
+        continue;
+      int negatedBit = (negated >> (i - 1)) & 1;
+      if (negatedBit == 1) {
+        inputs[numInputs] = state.getPortValue(i).not();
       } else {
-        if (errorIfUndefined) {
-          error = true;
-        }
+        inputs[numInputs] = state.getPortValue(i);
       }
+      numInputs++;
     }
+    boolean error = ctx.errorIfUndefined && numInputs < inputCount;
     Value out = null;
     if (numInputs == 0 || error) {
       out = Value.createError(attrs.width);
@@ -589,6 +589,59 @@ abstract class AbstractGate extends InstanceFactory {
     state.setPort(0, out, GateAttributes.DELAY);
   }
 
+  // Input values are gathered here rather than in a fresh array. Circuits can
+  // be simulated on several threads at once (e.g. test vectors), so there is
+  // one array per thread.
+  private static final ThreadLocal<Value[]> scratch =
+      ThreadLocal.withInitial(() -> new Value[GateAttributes.MAX_INPUTS]);
+
+  // What propagate() needs to know beyond the input values: which inputs are
+  // connected, and how to treat those that aren't. This is cached with the
+  // gate's attributes and rebuilt only when the circuit's connections or the
+  // project options change.
+  static class PropagationContext {
+    final Circuit circ;
+    final int connectionVersion;
+    final Options opts;
+    final int optionsVersion;
+    final int inputCount;
+    final int connected; // bit i-1 is set if input i is connected
+    final boolean errorIfUndefined;
+
+    PropagationContext(InstanceState state, GateAttributes attrs,
+        Circuit circ, Options opts) {
+      this.circ = circ;
+      this.connectionVersion = circ == null ? 0 : circ.getConnectionVersion();
+      this.opts = opts;
+      this.optionsVersion = opts.getVersion();
+      this.inputCount = attrs.inputs;
+      int mask = 0;
+      for (int i = 1; i <= inputCount; i++) {
+        if (state.isPortConnected(i))
+          mask |= 1 << (i - 1);
+      }
+      this.connected = mask;
+      this.errorIfUndefined = opts.getAttributeSet().getValue(Options.ATTR_GATE_UNDEFINED)
+          .equals(Options.GATE_UNDEFINED_ERROR);
+    }
+  }
+
+  private static PropagationContext getPropagationContext(InstanceState state,
+      GateAttributes attrs) {
+    Circuit circ = state instanceof InstanceStateImpl
+        ? ((InstanceStateImpl) state).getCircuitState().getCircuit() : null;
+    Options opts = state.getProject().getOptions();
+    PropagationContext ctx = attrs.propagationContext;
+    if (ctx == null || circ == null || ctx.circ != circ
+        || ctx.connectionVersion != circ.getConnectionVersion()
+        || ctx.opts != opts || ctx.optionsVersion != opts.getVersion()
+        || ctx.inputCount != attrs.inputs) {
+      ctx = new PropagationContext(state, attrs, circ, opts);
+      attrs.propagationContext = ctx;
+    }
+    return ctx;
+  }
+
   protected void setAdditionalWidth(int value) {
     bonusWidth = value;
   }
@@ -89,6 +89,7 @@ class GateAttributes extends AbstractAttributeSet {
   AttributeOption xorBehave;
   String label = "";
   Font labelFont = StdAttr.DEFAULT_LABEL_FONT;
+  AbstractGate.PropagationContext propagationContext; // not an attribute
 
   GateAttributes(boolean isXor) {
     xorBehave = isXor ? XOR_ONE : null;
@@ -96,7 +97,7 @@ class GateAttributes extends AbstractAttributeSet {
 
   @Override
   protected void copyInto(AbstractAttributeSet dest) {
-    ; // nothing to do
+    ((GateAttributes) dest).propagationContext = null;
   }
 
   @Override
@@ -32,7 +32,7 @@ package com.cburch.logisim.std.gates;
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -121,7 +121,6 @@ class PainterDin {
     int[] lens = orLenArrays.get(hash);
     if (lens == null) {
       lens = new int[inputs];
-      orLenArrays.put(hash, lens);
       int yCurveStart = height / 2 - r;
       for (int i = 0; i < inputs; i++) {
         int y = OrGate.FACTORY.getInputOffset(attrs, i).getY();
@@ -134,6 +133,7 @@ class PainterDin {
           lens[i] = (int) (Math.sqrt(r * r - dy * dy) + 0.5);
         }
       }
+      orLenArrays.put(hash, lens);
     }
 
     AbstractGate factory = hasBubble ? NorGate.FACTORY : OrGate.FACTORY;
@@ -168,7 +168,8 @@ class PainterDin {
 
   static final int XNOR = 3;
 
-  private static HashMap<Integer, int[]> orLenArrays = new HashMap<Integer, int[]>();
+  // filled from whichever thread paints first (canvas, export workers)
+  private static ConcurrentHashMap<Integer, int[]> orLenArrays = new ConcurrentHashMap<Integer, int[]>();
 
   private PainterDin() {
   }
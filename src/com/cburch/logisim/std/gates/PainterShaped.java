@@ -36,7 +36,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
@@ -87,7 +87,6 @@ public class PainterShaped {
     }
 
     int[] lengths = new int[inputs];
-    INPUT_LENGTHS.put(key, lengths);
     int width = mainHeight;
     Location loc0 = OrGate.FACTORY.getInputOffset(attrs, 0);
     Location locn = OrGate.FACTORY.getInputOffset(attrs, inputs - 1);
@@ -124,6 +123,7 @@ public class PainterShaped {
      * / 2 - disti; dx = Math.sqrt(mainHeight * mainHeight - dy * dy) -
      * mainCenterX; } lengths[i] = (int) (dx - 0.5); }
      */
+    INPUT_LENGTHS.put(key, lengths);
     return lengths;
   }
 
@@ -320,7 +320,8 @@ public class PainterShaped {
     SHIELD_WIDE.quadTo(-50, 0, -70, 35);
   }
 
-  private static HashMap<Integer, int[]> INPUT_LENGTHS = new HashMap<Integer, int[]>();
+  // filled from whichever thread paints first (canvas, export workers)
+  private static ConcurrentHashMap<Integer, int[]> INPUT_LENGTHS = new ConcurrentHashMap<Integer, int[]>();
 
   private PainterShaped() {
   }
@@ -143,13 +143,27 @@ public class Keyboard extends InstanceFactory {
   }
 
   public static void addToBuffer(InstanceState state, char[] newChars) {
+    addToBuffer(state, newChars, 0, newChars.length);
+  }
+
+  public static void addToBuffer(InstanceState state, char[] newChars,
+      int offset, int count) {
     KeyboardData keyboardData = getKeyboardState(state);
     synchronized(keyboardData) {
-      for (int i = 0; i < newChars.length; i++)
+      for (int i = offset; i < offset + count; i++)
         keyboardData.insert(newChars[i]);
     }
   }
 
+  // Returns how many more characters can be added before the buffer is full
+  // and further keys would be dropped.
+  public static int getBufferSpace(InstanceState state) {
+    KeyboardData keyboardData = getKeyboardState(state);
+    synchronized(keyboardData) {
+      return keyboardData.getSpace();
+    }
+  }
+
   public static int getBufferLength(Object bufferAttr) {
     if (bufferAttr instanceof Integer)
       return ((Integer) bufferAttr).intValue();
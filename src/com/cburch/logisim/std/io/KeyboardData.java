@@ -185,6 +185,10 @@ class KeyboardData implements InstanceData, Cloneable {
     return true;
   }
 
+  public int getSpace() {
+    return buffer.length - bufferLength;
+  }
+
   public boolean isDisplayValid() {
     return dispValid;
   }
@@ -38,16 +38,19 @@ import com.cburch.logisim.instance.InstanceData;
 
 class TtyState implements InstanceData, Cloneable {
   private Value lastClock;
-  private String[] rowData;
+  // Committed rows are kept in a ring, oldest first starting at index first,
+  // so scrolling just recycles the oldest row as the new (blank) last row.
+  private char[][] rowData;
+  private int first;
   private int colCount;
   private char[] lastRow;
-  private int row;
+  private int row; // number of committed rows
   private int col; // only for lastRow
   private boolean sendStdout;
 
   public TtyState(int rows, int cols) {
     lastClock = Value.UNKNOWN;
-    rowData = new String[rows - 1];
+    rowData = new char[rows - 1][cols];
     colCount = cols;
     lastRow = new char[colCount];
     sendStdout = false;
@@ -84,7 +87,7 @@ class TtyState implements InstanceData, Cloneable {
 
   public void clear() {
     row = 0;
-    Arrays.fill(rowData, "");
+    first = 0;
     col = 0;
     Arrays.fill(lastRow, ' ');
   }
@@ -93,7 +96,9 @@ class TtyState implements InstanceData, Cloneable {
   public TtyState clone() {
     try {
       TtyState ret = (TtyState) super.clone();
-      ret.rowData = this.rowData.clone();
+      ret.rowData = new char[rowData.length][];
+      for (int i = 0; i < rowData.length; i++)
+        ret.rowData[i] = rowData[i].clone();
       ret.lastRow = this.lastRow.clone();
       return ret;
     } catch (CloneNotSupportedException e) {
@@ -102,12 +107,16 @@ class TtyState implements InstanceData, Cloneable {
   }
 
   private void commit() {
-    if (row >= rowData.length) {
-      System.arraycopy(rowData, 1, rowData, 0, rowData.length - 1);
-      rowData[row - 1] = new String(lastRow);
-    } else {
-      rowData[row] = new String(lastRow);
-      row++;
+    int n = rowData.length;
+    if (n > 0) {
+      int i = row < n ? (first + row) % n : first;
+      char[] t = rowData[i];
+      rowData[i] = lastRow;
+      lastRow = t;
+      if (row < n)
+        row++;
+      else
+        first = (first + 1) % n;
     }
     col = 0;
     Arrays.fill(lastRow, ' ');
@@ -123,7 +132,7 @@ class TtyState implements InstanceData, Cloneable {
 
   public String getRowString(int index) {
     if (index < row)
-      return rowData[index];
+      return new String(rowData[(first + index) % rowData.length]);
     else if (index == row)
       return new String(lastRow);
     else
@@ -142,20 +151,25 @@ class TtyState implements InstanceData, Cloneable {
 
   public void updateSize(int rows, int cols) {
     int oldRows = rowData.length + 1;
-    if (rows != oldRows) {
-      String[] newData = new String[rows - 1];
-      if (rows > oldRows // rows have been added,
-          || row < rows - 1) { // or rows removed but filled rows fit
-        System.arraycopy(rowData, 0, newData, 0, row);
-        Arrays.fill(newData, row, rows - 1, "");
-      } else { // rows removed, and some filled rows must go
-        System.arraycopy(rowData, row - rows + 1, newData, 0, rows - 1);
-        row = rows - 1;
+    int oldCols = colCount;
+    if (rows == oldRows && cols == oldCols)
+      return;
+    // Unroll the ring, keeping only the most recent rows that still fit.
+    int keep = Math.min(row, rows - 1);
+    char[][] newData = new char[rows - 1][];
+    for (int i = 0; i < rows - 1; i++) {
+      char[] r = new char[cols];
+      Arrays.fill(r, ' ');
+      if (i < keep) {
+        char[] old = rowData[(first + row - keep + i) % rowData.length];
+        System.arraycopy(old, 0, r, 0, Math.min(cols, oldCols));
       }
-      rowData = newData;
+      newData[i] = r;
     }
+    rowData = newData;
+    first = 0;
+    row = keep;
 
-    int oldCols = colCount;
     if (cols != oldCols) {
       colCount = cols;
       if (col > colCount)
@@ -164,13 +178,6 @@ class TtyState implements InstanceData, Cloneable {
       lastRow = new char[colCount];
       Arrays.fill(lastRow, ' ');
       System.arraycopy(oldLastRow, 0, lastRow, 0, Math.min(colCount, oldCols));
-      if (cols < oldCols) { // will need to trim any overly-long rows
-        for (int i = 0; i < rows - 1; i++) {
-          String s = rowData[i];
-          if (s.length() > cols)
-            rowData[i] = s.substring(0, cols);
-        }
-      }
     }
   }
 }
@@ -41,9 +41,19 @@ import static com.cburch.logisim.std.Strings.S;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.IndexColorModel;
 import java.awt.Graphics;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
 
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
@@ -69,7 +79,7 @@ import com.cburch.logisim.data.Value;
 import com.cburch.logisim.tools.ToolTipMaker;
 
 // 128 x 128 pixel LCD display with 8bpp color (byte addressed)
-class Video extends ManagedComponent implements ToolTipMaker, AttributeListener {
+public class Video extends ManagedComponent implements ToolTipMaker, AttributeListener {
   public static final ComponentFactory factory = new Factory();
 
   static final String BLINK_YES = "Blinking Dot";
@@ -135,6 +145,8 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
   static final int P_Y = 4;
   static final int P_DATA = 5;
 
+  private int[] palette; // for the current COLOR_OPTION, see getPalette()
+
   private Video(Location loc, AttributeSet attrs) {
     super(loc, attrs, 6);
     setEnd(P_RST, getLocation().translate(0, 0), BitWidth.ONE, EndData.INPUT_ONLY);
@@ -162,24 +174,45 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
 
     Object reset_option = attrs.getValue(RESET_OPTION);
     if (reset_option == null) reset_option = RESET_OPTIONS[0];
-    ColorModel cm = getColorModel(attrs.getValue(COLOR_OPTION));
     int w = attrs.getValue(WIDTH_OPTION);
     int h = attrs.getValue(HEIGHT_OPTION);
 
     if (state.tick(val(circuitState, P_CLK)) && val(circuitState, P_WE) == Value.TRUE) {
-      Graphics g = state.img.getGraphics();
-      g.setColor(new Color(cm.getRGB(color)));
-      g.fillRect(x, y, 1, 1);
+      state.set(x, y, palette == null ? (0xff000000 | color) : palette[color & (palette.length - 1)]);
       if (RESET_SYNC.equals(reset_option) && val(circuitState, P_RST) == Value.TRUE) {
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, w, h);
+        state.fill(w, h, BLACK);
       }
     }
 
     if (!RESET_SYNC.equals(reset_option) && val(circuitState, P_RST) == Value.TRUE) {
-      Graphics g = state.img.getGraphics();
-      g.setColor(Color.BLACK);
-      g.fillRect(0, 0, w, h);
+      state.fill(w, h, BLACK);
+    }
+  }
+
+  // Writes the visible part of the display to a PNG or binary PPM file, for
+  // headless runs.
+  public void writeFrame(CircuitState circuitState, File file, boolean ppm)
+      throws IOException {
+    State state = getState(circuitState);
+    AttributeSet attrs = getAttributeSet();
+    int w = attrs.getValue(WIDTH_OPTION);
+    int h = attrs.getValue(HEIGHT_OPTION);
+    if (!ppm) {
+      ImageIO.write(state.img.getSubimage(0, 0, w, h), "png", file);
+      return;
+    }
+    byte[] row = new byte[3*w];
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      out.write(("P6\n" + w + " " + h + "\n255\n").getBytes("US-ASCII"));
+      for (int j = 0; j < h; j++) {
+        for (int i = 0; i < w; i++) {
+          int argb = state.pixels[j*SIZE + i];
+          row[3*i] = (byte)(argb >> 16);
+          row[3*i+1] = (byte)(argb >> 8);
+          row[3*i+2] = (byte)argb;
+        }
+        out.write(row);
+      }
     }
   }
 
@@ -281,6 +314,23 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
         0xa8a8a8, 0xb2b2b2, 0xbcbcbc, 0xc6c6c6, 0xd0d0d0, 0xdadada, 0xe4e4e4, 0xeeeeee,
       }, 0, 0, null);
 
+  // ARGB value for every pixel value of the indexed and narrow color models,
+  // so pixel writes need neither a Color nor a ColorModel lookup. 24-bit RGB
+  // needs no table. IndexColorModel masks pixels to 8 bits (entries past the
+  // map size are black), so tables have at least 256 entries.
+  private static final ConcurrentHashMap<ColorModel, int[]> palettes = new ConcurrentHashMap<>();
+
+  static int[] getPalette(ColorModel cm) {
+    if (cm == rgb)
+      return null;
+    return palettes.computeIfAbsent(cm, m -> {
+      int[] p = new int[Math.max(256, 1 << m.getPixelSize())];
+      for (int i = 0; i < p.length; i++)
+        p[i] = 0xff000000 | m.getRGB(i);
+      return p;
+    });
+  }
+
   static ColorModel getColorModel(Object model) {
     if (model == COLOR_RGB) return rgb;
     else if (model == COLOR_555_RGB) return rgb555;
@@ -331,26 +381,40 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
   private State getState(CircuitState circuitState) {
     State state = (State) circuitState.getData(this);
     if (state == null) {
-      state = new State(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+      state = new State(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB));
       circuitState.setData(this, state);
     }
     return state;
   }
 
+  static final int SIZE = 256;
+  static final int BLACK = 0xff000000;
+  static final int YELLOW = 0xffffff00;
+
   private class State implements ComponentState, Cloneable {
     public Value lastClock = null;
     public BufferedImage img;
+    public int[] pixels; // img's raster, SIZE x SIZE, row by row
     public int last_x, last_y, color;
 
     State(BufferedImage img) {
       this.img = img;
+      this.pixels = ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
       reset();
     }
 
     public void reset() {
-      Graphics g = img.getGraphics();
-      g.setColor(Color.YELLOW);
-      g.fillRect(0, 0, img.getWidth(), img.getHeight());
+      Arrays.fill(pixels, YELLOW);
+    }
+
+    void set(int x, int y, int argb) {
+      if (x >= 0 && x < SIZE && y >= 0 && y < SIZE)
+        pixels[y*SIZE + x] = argb;
+    }
+
+    void fill(int w, int h, int argb) {
+      for (int y = 0; y < h; y++)
+        Arrays.fill(pixels, y*SIZE, y*SIZE + w, argb);
     }
 
     public Object clone() { try { return super.clone(); } catch(CloneNotSupportedException e) { return null; } }
@@ -400,7 +464,9 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
 
   void configureComponent() {
     AttributeSet attrs = getAttributeSet();
-    int bpp = getColorModel(attrs.getValue(COLOR_OPTION)).getPixelSize();
+    ColorModel cm = getColorModel(attrs.getValue(COLOR_OPTION));
+    palette = getPalette(cm);
+    int bpp = cm.getPixelSize();
     int xs = 31 - Integer.numberOfLeadingZeros(attrs.getValue(WIDTH_OPTION));
     int ys = 31 - Integer.numberOfLeadingZeros(attrs.getValue(HEIGHT_OPTION));
     setEnd(P_X, getLocation().translate(40, 0), BitWidth.create(xs), EndData.INPUT_ONLY);
@@ -30,6 +30,7 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 
 import com.cburch.hex.HexModel;
@@ -46,7 +47,43 @@ public class MemContents implements Cloneable, HexModel {
 
   private static final int PAGE_MASK = PAGE_SIZE - 1;
 
+  // Changes made by a thread while it is propagating are not reported one
+  // word at a time. Instead each memory collects the span of addresses it
+  // changed, and the spans are reported, without old values, when the
+  // outermost endBatch() is reached.
+  private static class Batch {
+    int depth;
+    ArrayList<MemContents> changed = new ArrayList<>();
+  }
+
+  private static final ThreadLocal<Batch> batch = new ThreadLocal<Batch>() {
+    @Override
+    protected Batch initialValue() {
+      return new Batch();
+    }
+  };
+
+  public static void beginBatch() {
+    batch.get().depth++;
+  }
+
+  public static void endBatch() {
+    Batch b = batch.get();
+    if (--b.depth > 0 || b.changed.isEmpty())
+      return;
+    // a listener could start a batch of its own, so take the list first
+    ArrayList<MemContents> changed = b.changed;
+    b.changed = new ArrayList<>();
+    for (MemContents m : changed) {
+      long start = m.batchStart;
+      long end = m.batchEnd;
+      m.batchStart = -1;
+      m.notifyBytesChanged(start, end - start, null);
+    }
+  }
+
   private EventSourceWeakSupport<HexModelListener> listeners = null;
+  private long batchStart = -1, batchEnd; // addresses changed in this batch
   private int width;
   private int addrBits;
   private int mask;
@@ -94,6 +131,7 @@ public class MemContents implements Cloneable, HexModel {
     try {
       MemContents ret = (MemContents) super.clone();
       ret.listeners = null;
+      ret.batchStart = -1;
       ret.pages = new Page[this.pages.length];
       for (int i = 0; i < ret.pages.length; i++) {
         if (this.pages[i] != null) {
@@ -196,7 +234,29 @@ public class MemContents implements Cloneable, HexModel {
     }
   }
 
+  // Adds a change to the current batch, or returns false if there is none.
+  private boolean batchChange(long start, long numBytes) {
+    Batch b = batch.get();
+    if (b.depth == 0)
+      return false;
+    if (batchStart < 0) {
+      batchStart = start;
+      batchEnd = start + numBytes;
+      b.changed.add(this);
+    } else {
+      batchStart = Math.min(batchStart, start);
+      batchEnd = Math.max(batchEnd, start + numBytes);
+    }
+    return true;
+  }
+
   private void fireBytesChanged(long start, long numBytes, int[] oldValues) {
+    if (listeners == null || batchChange(start, numBytes))
+      return;
+    notifyBytesChanged(start, numBytes, oldValues);
+  }
+
+  private void notifyBytesChanged(long start, long numBytes, int[] oldValues) {
     if (listeners == null)
       return;
     boolean found = false;
@@ -281,7 +341,8 @@ public class MemContents implements Cloneable, HexModel {
         pages[page] = MemContentsSub.createPage(PAGE_SIZE, width);
       }
       pages[page].set(offs, val);
-      fireBytesChanged(addr, 1, new int[] { old });
+      if (listeners != null && !batchChange(addr, 1))
+        notifyBytesChanged(addr, 1, new int[] { old });
     }
   }
 
@@ -571,6 +571,12 @@ public class Ram extends Mem {
     return false;
   }
 
+  // Non-volatile contents survive reset(), so a simulation that writes them
+  // can observe what earlier runs of the same state left behind.
+  public boolean isNonVolatile(Instance instance) {
+    return instance.getAttributeValue(RamAttributes.ATTR_TYPE) != RamAttributes.VOLATILE;
+  }
+
 //  public AttributeSet getNonVolatileSimulationAttributes(Component comp) {
 //    // return Collections.singletonList(NV_CONTENTS_ATTR);
 //    AttributeOption type = comp.getAttributeSet().getValue(RamAttributes.ATTR_TYPE);
@@ -195,7 +195,7 @@ public class RamHDLGenerator extends HDLGenerator {
     for (int i = 0; i < n; i++) {
       Hdl data = getMemInitData(state, i);
       File f = openFile(rootDir, true, false, i);
-      if (f == null || !FileWriter.WriteContents(f, data, _err))
+      if (f == null || !FileWriter.WriteContents(ctx.files, f, data, _err))
         return false;
     }
     return true;
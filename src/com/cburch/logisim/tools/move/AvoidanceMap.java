@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import com.cburch.logisim.circuit.Wire;
@@ -42,28 +43,154 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 
+/**
+ * Occupancy of the 10-pixel grid points, as seen by the wire router. Each
+ * point holds one of the Connector.ALLOW_* bit masks, stored in a byte array
+ * covering the region marked so far (grown on demand). Marking is a bitwise
+ * OR, so overlaying one map onto another is a plain array merge. The rare
+ * points off the 10-pixel grid are kept in a side table.
+ */
 class AvoidanceMap {
   static AvoidanceMap create(Collection<Component> elements, int dx, int dy) {
-    AvoidanceMap ret = new AvoidanceMap(new HashMap<Location, String>());
+    AvoidanceMap ret = new AvoidanceMap();
     ret.markAll(elements, dx, dy);
     return ret;
   }
 
-  private final HashMap<Location, String> avoid;
+  private static final int GROW_SLACK = 16;
+
+  private int originX; // grid coordinates (x / 10) of cells[0]
+  private int originY;
+  private int width;
+  private int height;
+  private byte[] cells;
+  private HashMap<Location, Byte> offGrid;
 
-  private AvoidanceMap(HashMap<Location, String> map) {
-    avoid = map;
+  private AvoidanceMap() {
+    cells = new byte[0];
   }
 
   public AvoidanceMap cloneMap() {
-    return new AvoidanceMap(new HashMap<Location, String>(avoid));
+    AvoidanceMap ret = new AvoidanceMap();
+    ret.originX = originX;
+    ret.originY = originY;
+    ret.width = width;
+    ret.height = height;
+    ret.cells = cells.clone();
+    if (offGrid != null) {
+      ret.offGrid = new HashMap<Location, Byte>(offGrid);
+    }
+    return ret;
+  }
+
+  /**
+   * Returns a copy of this map shifted by (dx, dy), which must both be
+   * multiples of 10. This gives the same result as marking the original
+   * elements with that displacement, without visiting them again.
+   */
+  public AvoidanceMap translate(int dx, int dy) {
+    AvoidanceMap ret = cloneMap();
+    ret.originX += dx / 10;
+    ret.originY += dy / 10;
+    if (offGrid != null) {
+      ret.offGrid.clear();
+      for (Map.Entry<Location, Byte> e : offGrid.entrySet()) {
+        ret.offGrid.put(e.getKey().translate(dx, dy), e.getValue());
+      }
+    }
+    return ret;
   }
 
-  public Object get(Location loc) {
-    return avoid.get(loc);
+  public byte get(Location loc) {
+    return get(loc.getX(), loc.getY());
+  }
+
+  public byte get(int x, int y) {
+    if (x % 10 == 0 && y % 10 == 0) {
+      int cx = x / 10 - originX;
+      int cy = y / 10 - originY;
+      if (cx < 0 || cy < 0 || cx >= width || cy >= height) {
+        return Connector.ALLOW_ALL;
+      }
+      return cells[cy * width + cx];
+    } else if (offGrid == null) {
+      return Connector.ALLOW_ALL;
+    } else {
+      Byte ret = offGrid.get(Location.create(x, y));
+      return ret == null ? Connector.ALLOW_ALL : ret.byteValue();
+    }
+  }
+
+  private void set(Location loc, byte value) {
+    int x = loc.getX();
+    int y = loc.getY();
+    if (x % 10 == 0 && y % 10 == 0) {
+      int cx = x / 10;
+      int cy = y / 10;
+      ensureRegion(cx, cy, cx, cy);
+      cells[(cy - originY) * width + (cx - originX)] = value;
+    } else if (value != Connector.ALLOW_ALL) {
+      if (offGrid == null) {
+        offGrid = new HashMap<Location, Byte>();
+      }
+      offGrid.put(loc, Byte.valueOf(value));
+    } else if (offGrid != null) {
+      offGrid.remove(loc);
+    }
+  }
+
+  private void mark(Location loc, byte value) {
+    set(loc, (byte) (get(loc) | value));
+  }
+
+  // Grows the array so that it covers the given (inclusive) range of grid
+  // coordinates, with some slack so that a run of marks just outside the
+  // current region doesn't reallocate every time.
+  private void ensureRegion(int cx0, int cy0, int cx1, int cy1) {
+    if (cx0 >= originX && cy0 >= originY && cx1 < originX + width
+        && cy1 < originY + height) {
+      return;
+    }
+    int nx0, ny0, nx1, ny1;
+    if (width == 0 || height == 0) {
+      nx0 = cx0;
+      ny0 = cy0;
+      nx1 = cx1;
+      ny1 = cy1;
+    } else {
+      int slackX = Math.max(GROW_SLACK, width / 2);
+      int slackY = Math.max(GROW_SLACK, height / 2);
+      nx0 = cx0 < originX ? cx0 - slackX : originX;
+      ny0 = cy0 < originY ? cy0 - slackY : originY;
+      nx1 = cx1 >= originX + width ? cx1 + slackX : originX + width - 1;
+      ny1 = cy1 >= originY + height ? cy1 + slackY : originY + height - 1;
+    }
+    int nw = nx1 - nx0 + 1;
+    int nh = ny1 - ny0 + 1;
+    byte[] ncells = new byte[nw * nh];
+    for (int r = 0; r < height; r++) {
+      System.arraycopy(cells, r * width, ncells,
+          (r + originY - ny0) * nw + (originX - nx0), width);
+    }
+    originX = nx0;
+    originY = ny0;
+    width = nw;
+    height = nh;
+    cells = ncells;
   }
 
   public void markAll(Collection<Component> elements, int dx, int dy) {
+    // size the array for all of the elements up front
+    Bounds all = Bounds.EMPTY_BOUNDS;
+    for (Component el : elements) {
+      all = all.add(el.getBounds());
+    }
+    if (all != Bounds.EMPTY_BOUNDS) {
+      ensureRegion(Math.floorDiv(all.getX() + dx, 10),
+          Math.floorDiv(all.getY() + dy, 10),
+          Math.floorDiv(all.getX() + all.getWidth() + dx, 10),
+          Math.floorDiv(all.getY() + all.getHeight() + dy, 10));
+    }
     // first we go through the components, saying that we should not
     // intersect with any point that lies within a component
     for (Component el : elements) {
@@ -75,32 +202,50 @@ class AvoidanceMap {
     }
   }
 
+  /** Marks every point that is blocked in other onto this map. */
+  public void markMap(AvoidanceMap other) {
+    if (other.width > 0 && other.height > 0) {
+      ensureRegion(other.originX, other.originY,
+          other.originX + other.width - 1, other.originY + other.height - 1);
+      byte[] src = other.cells;
+      int ow = other.width;
+      for (int r = 0; r < other.height; r++) {
+        int s = r * ow;
+        int d = (r + other.originY - originY) * width
+            + (other.originX - originX);
+        for (int i = 0; i < ow; i++) {
+          cells[d + i] |= src[s + i];
+        }
+      }
+    }
+    if (other.offGrid != null) {
+      for (Map.Entry<Location, Byte> e : other.offGrid.entrySet()) {
+        mark(e.getKey(), e.getValue().byteValue());
+      }
+    }
+  }
+
   public void markComponent(Component comp, int dx, int dy) {
-    HashMap<Location, String> avoid = this.avoid;
-    boolean translated = dx != 0 || dy != 0;
     Bounds bds = comp.getBounds();
     int x0 = bds.getX() + dx;
     int y0 = bds.getY() + dy;
     int x1 = x0 + bds.getWidth();
     int y1 = y0 + bds.getHeight();
-    x0 += 9 - (x0 + 9) % 10;
-    y0 += 9 - (y0 + 9) % 10;
+    x0 += Math.floorMod(-x0, 10);
+    y0 += Math.floorMod(-y0, 10);
+    if (x0 > x1 || y0 > y1) {
+      return;
+    }
+    ensureRegion(x0 / 10, y0 / 10, Math.floorDiv(x1, 10),
+        Math.floorDiv(y1, 10));
     for (int x = x0; x <= x1; x += 10) {
       for (int y = y0; y <= y1; y += 10) {
-        Location loc = Location.create(x, y);
-        // loc is most likely in the component, so go ahead and
-        // put it into the map as if it is - and in the rare event
-        // that loc isn't in the component, we can remove it.
-        String prev = avoid.put(loc, Connector.ALLOW_NEITHER);
-        if (prev != Connector.ALLOW_NEITHER) {
-          Location baseLoc = translated ? loc.translate(-dx, -dy)
-              : loc;
-          if (!comp.contains(baseLoc)) {
-            if (prev == null) {
-              avoid.remove(loc);
-            } else {
-              avoid.put(loc, prev);
-            }
+        int i = (y / 10 - originY) * width + (x / 10 - originX);
+        if (cells[i] != Connector.ALLOW_NEITHER) {
+          // grid points in the bounding box are usually inside the
+          // component, but not always (think of an OR gate's back)
+          if (comp.contains(Location.create(x - dx, y - dy))) {
+            cells[i] = Connector.ALLOW_NEITHER;
           }
         }
       }
@@ -108,7 +253,6 @@ class AvoidanceMap {
   }
 
   public void markWire(Wire w, int dx, int dy) {
-    HashMap<Location, String> avoid = this.avoid;
     boolean translated = dx != 0 || dy != 0;
     Location loc0 = w.getEnd0();
     Location loc1 = w.getEnd1();
@@ -116,27 +260,19 @@ class AvoidanceMap {
       loc0 = loc0.translate(dx, dy);
       loc1 = loc1.translate(dx, dy);
     }
-    avoid.put(loc0, Connector.ALLOW_NEITHER);
-    avoid.put(loc1, Connector.ALLOW_NEITHER);
+    set(loc0, Connector.ALLOW_NEITHER);
+    set(loc1, Connector.ALLOW_NEITHER);
     int x0 = loc0.getX();
     int y0 = loc0.getY();
     int x1 = loc1.getX();
     int y1 = loc1.getY();
     if (x0 == x1) { // vertical wire
       for (Location loc : Wire.create(loc0, loc1)) {
-        Object prev = avoid.put(loc, Connector.ALLOW_HORIZONTAL);
-        if (prev == Connector.ALLOW_NEITHER
-            || prev == Connector.ALLOW_VERTICAL) {
-          avoid.put(loc, Connector.ALLOW_NEITHER);
-        }
+        mark(loc, Connector.ALLOW_HORIZONTAL);
       }
     } else if (y0 == y1) { // horizontal wire
       for (Location loc : Wire.create(loc0, loc1)) {
-        Object prev = avoid.put(loc, Connector.ALLOW_VERTICAL);
-        if (prev == Connector.ALLOW_NEITHER
-            || prev == Connector.ALLOW_HORIZONTAL) {
-          avoid.put(loc, Connector.ALLOW_NEITHER);
-        }
+        mark(loc, Connector.ALLOW_VERTICAL);
       }
     } else { // diagonal - shouldn't happen
       throw new RuntimeException("diagonal wires not supported");
@@ -144,22 +280,32 @@ class AvoidanceMap {
   }
 
   public void print(PrintStream stream) {
-    ArrayList<Location> list = new ArrayList<Location>(avoid.keySet());
+    ArrayList<Location> list = new ArrayList<Location>();
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        if (cells[r * width + c] != Connector.ALLOW_ALL) {
+          list.add(Location.create((originX + c) * 10, (originY + r) * 10));
+        }
+      }
+    }
+    if (offGrid != null) {
+      list.addAll(offGrid.keySet());
+    }
     Collections.sort(list);
     for (int i = 0, n = list.size(); i < n; i++) {
-      stream.println(list.get(i) + ": " + avoid.get(list.get(i)));
+      stream.println(list.get(i) + ": " + get(list.get(i)));
     }
   }
 
   public void unmarkLocation(Location loc) {
-    avoid.remove(loc);
+    set(loc, Connector.ALLOW_ALL);
   }
 
   public void unmarkWire(Wire w, Location deletedEnd, Set<Location> unmarkable) {
     Location loc0 = w.getEnd0();
     Location loc1 = w.getEnd1();
     if (unmarkable == null || unmarkable.contains(deletedEnd)) {
-      avoid.remove(deletedEnd);
+      set(deletedEnd, Connector.ALLOW_ALL);
     }
     int x0 = loc0.getX();
     int y0 = loc0.getY();
@@ -168,19 +314,13 @@ class AvoidanceMap {
     if (x0 == x1) { // vertical wire
       for (Location loc : w) {
         if (unmarkable == null || unmarkable.contains(deletedEnd)) {
-          Object prev = avoid.remove(loc);
-          if (prev != Connector.ALLOW_HORIZONTAL && prev != null) {
-            avoid.put(loc, Connector.ALLOW_VERTICAL);
-          }
+          set(loc, (byte) (get(loc) & Connector.ALLOW_VERTICAL));
         }
       }
     } else if (y0 == y1) { // horizontal wire
       for (Location loc : w) {
         if (unmarkable == null || unmarkable.contains(deletedEnd)) {
-          Object prev = avoid.remove(loc);
-          if (prev != Connector.ALLOW_VERTICAL && prev != null) {
-            avoid.put(loc, Connector.ALLOW_HORIZONTAL);
-          }
+          set(loc, (byte) (get(loc) & Connector.ALLOW_HORIZONTAL));
         }
       }
     } else { // diagonal - shouldn't happen
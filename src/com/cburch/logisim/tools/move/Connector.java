@@ -37,7 +37,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.Set;
 
 import com.cburch.logisim.circuit.ReplacementMap;
@@ -55,8 +54,11 @@ class Connector {
     ArrayList<ConnectionData> impossible = pruneImpossible(baseConnects,
         gesture.getFixedAvoidanceMap(), dx, dy);
 
-    AvoidanceMap selAvoid = AvoidanceMap.create(gesture.getSelected(), dx,
-        dy);
+    AvoidanceMap selAvoid = gesture.getSelectedAvoidanceMap(dx, dy);
+    // everything but the routes: each ordering tried starts from a copy
+    AvoidanceMap baseAvoid = gesture.getFixedAvoidanceMap().cloneMap();
+    baseAvoid.markMap(selAvoid);
+    PathFinder finder = new PathFinder();
     HashMap<ConnectionData, Set<Location>> pathLocs;
     pathLocs = new HashMap<ConnectionData, Set<Location>>();
     HashMap<ConnectionData, List<SearchNode>> initNodes;
@@ -104,7 +106,7 @@ class Connector {
         Collections.shuffle(connects);
       }
 
-      MoveResult candidate = tryList(req, gesture, connects, dx, dy,
+      MoveResult candidate = tryList(req, baseAvoid, finder, connects,
           pathLocs, initNodes, stopTime);
       if (candidate == null) {
         return null;
@@ -135,109 +137,12 @@ class Connector {
     return bestResult;
   }
 
-  private static ArrayList<Location> convertToPath(SearchNode last) {
-    SearchNode next = last;
-    SearchNode prev = last.getPrevious();
-    ArrayList<Location> ret = new ArrayList<Location>();
-    ret.add(next.getLocation());
-    while (prev != null) {
-      if (prev.getDirection() != next.getDirection()) {
-        ret.add(prev.getLocation());
-      }
-      next = prev;
-      prev = prev.getPrevious();
-    }
-    if (!ret.get(ret.size() - 1).equals(next.getLocation())) {
-      ret.add(next.getLocation());
-    }
-    Collections.reverse(ret);
-    return ret;
-  }
-
-  private static SearchNode findShortestPath(List<SearchNode> nodes,
-      Set<Location> pathLocs, AvoidanceMap avoid) {
-    PriorityQueue<SearchNode> q = new PriorityQueue<SearchNode>(nodes);
-    HashSet<SearchNode> visited = new HashSet<SearchNode>();
-    int iters = 0;
-    while (!q.isEmpty() && iters < MAX_SEARCH_ITERATIONS) {
-      iters++;
-      SearchNode n = q.remove();
-      if (iters % 64 == 0 && ConnectorThread.isOverrideRequested()
-          || n == null) {
-        return null;
-      }
-      if (n.isDestination()) {
-        return n;
-      }
-      boolean added = visited.add(n);
-      if (!added) {
-        continue;
-      }
-      Location loc = n.getLocation();
-      Direction dir = n.getDirection();
-      int neighbors = 3;
-      Object allowed = avoid.get(loc);
-      if (allowed != null && n.isStart() && pathLocs.contains(loc)) {
-        allowed = null;
-      }
-      if (allowed == ALLOW_NEITHER) {
-        neighbors = 0;
-      } else if (allowed == ALLOW_VERTICAL) {
-        if (dir == null) {
-          dir = Direction.NORTH;
-          neighbors = 2;
-        } else if (dir == Direction.NORTH || dir == Direction.SOUTH) {
-          neighbors = 1;
-        } else {
-          neighbors = 0;
-        }
-      } else if (allowed == ALLOW_HORIZONTAL) {
-        if (dir == null) {
-          dir = Direction.EAST;
-          neighbors = 2;
-        } else if (dir == Direction.EAST || dir == Direction.WEST) {
-          neighbors = 1;
-        } else {
-          neighbors = 0;
-        }
-      } else {
-        if (dir == null) {
-          dir = Direction.NORTH;
-          neighbors = 4;
-        } else {
-          neighbors = 3;
-        }
-      }
-      for (int i = 0; i < neighbors; i++) {
-        Direction oDir;
-        switch (i) {
-        case 0:
-          oDir = dir;
-          break;
-        case 1:
-          oDir = neighbors == 2 ? dir.reverse() : dir.getLeft();
-          break;
-        case 2:
-          oDir = dir.getRight();
-          break;
-        default: // must be 3
-          oDir = dir.reverse();
-        }
-        SearchNode o = n.next(oDir, allowed != null);
-        if (o != null && !visited.contains(o)) {
-          q.add(o);
-        }
-      }
-    }
-    return null;
-  }
-
   private static void processConnection(ConnectionData conn, int dx, int dy,
       HashSet<Location> connLocs, ArrayList<SearchNode> connNodes,
       AvoidanceMap selAvoid) {
     Location cur = conn.getLocation();
     Location dest = cur.translate(dx, dy);
-    if (selAvoid.get(cur) == null) {
+    if (selAvoid.get(cur) == ALLOW_ALL) {
       Direction preferred = conn.getDirection();
       if (preferred == null) {
         if (Math.abs(dx) > Math.abs(dy)) {
@@ -253,7 +158,7 @@ class Connector {
 
     for (Wire w : conn.getWirePath()) {
       for (Location loc : w) {
-        if (selAvoid.get(loc) == null || loc.equals(dest)) {
+        if (selAvoid.get(loc) == ALLOW_ALL || loc.equals(dest)) {
           boolean added = connLocs.add(loc);
           if (added) {
             Direction dir = null;
@@ -324,7 +229,7 @@ class Connector {
     for (Iterator<ConnectionData> it = connects.iterator(); it.hasNext();) {
       ConnectionData conn = it.next();
       Location dest = conn.getLocation().translate(dx, dy);
-      if (avoid.get(dest) != null) {
+      if (avoid.get(dest) != ALLOW_ALL) {
         boolean isInPath = false;
         for (Wire w : pathWires) {
           if (w.contains(dest)) {
@@ -362,12 +267,11 @@ class Connector {
     });
   }
 
-  private static MoveResult tryList(MoveRequest req, MoveGesture gesture,
-      ArrayList<ConnectionData> connects, int dx, int dy,
+  private static MoveResult tryList(MoveRequest req, AvoidanceMap baseAvoid,
+      PathFinder finder, ArrayList<ConnectionData> connects,
       HashMap<ConnectionData, Set<Location>> pathLocs,
       HashMap<ConnectionData, List<SearchNode>> initNodes, long stopTime) {
-    AvoidanceMap avoid = gesture.getFixedAvoidanceMap().cloneMap();
-    avoid.markAll(gesture.getSelected(), dx, dy);
+    AvoidanceMap avoid = baseAvoid.cloneMap();
 
     ReplacementMap replacements = new ReplacementMap();
     ArrayList<ConnectionData> unconnected = new ArrayList<ConnectionData>();
@@ -382,10 +286,10 @@ class Connector {
       }
       List<SearchNode> connNodes = initNodes.get(conn);
       Set<Location> connPathLocs = pathLocs.get(conn);
-      SearchNode n = findShortestPath(connNodes, connPathLocs, avoid);
-      if (n != null) { // normal case - a path was found
-        totalDistance += n.getDistance();
-        ArrayList<Location> path = convertToPath(n);
+      int n = finder.findShortestPath(connNodes, connPathLocs, avoid);
+      if (n >= 0) { // normal case - a path was found
+        totalDistance += finder.getDistance(n);
+        ArrayList<Location> path = finder.getPath(n);
         processPath(path, conn, avoid, replacements, connPathLocs);
       } else if (ConnectorThread.isOverrideRequested()) {
         return null; // search was aborted: return null to indicate this
@@ -400,13 +304,16 @@ class Connector {
 
   private static final int MAX_ORDERING_TRIES = 10;
 
-  private static final int MAX_SEARCH_ITERATIONS = 20000;
+  // AvoidanceMap point values: one bit per blocked direction of travel
+  // (horizontal, vertical), so that marking two obstacles on a point is a
+  // bitwise OR
+  static final byte ALLOW_ALL = 0;
 
-  static final String ALLOW_NEITHER = "neither";
+  static final byte ALLOW_VERTICAL = 1;
 
-  static final String ALLOW_VERTICAL = "vert";
+  static final byte ALLOW_HORIZONTAL = 2;
 
-  static final String ALLOW_HORIZONTAL = "horz";
+  static final byte ALLOW_NEITHER = 3;
 
   private Connector() {
   }
@@ -127,6 +127,7 @@ public class MoveGesture {
   private transient Set<ConnectionData> connections;
 
   private transient AvoidanceMap initAvoid;
+  private transient AvoidanceMap selectedAvoid;
 
   private HashMap<MoveRequest, MoveResult> cachedResults;
 
@@ -137,6 +138,7 @@ public class MoveGesture {
     this.selected = new HashSet<Component>(selected);
     this.connections = null;
     this.initAvoid = null;
+    this.selectedAvoid = null;
     this.cachedResults = new HashMap<MoveRequest, MoveResult>();
   }
 
@@ -200,6 +202,20 @@ public class MoveGesture {
     return ret;
   }
 
+  AvoidanceMap getSelectedAvoidanceMap(int dx, int dy) {
+    if (dx % 10 != 0 || dy % 10 != 0) {
+      return AvoidanceMap.create(selected, dx, dy);
+    }
+    // the selection is marked once per gesture; each drag step only shifts
+    // that map rather than visiting every selected component again
+    AvoidanceMap ret = selectedAvoid;
+    if (ret == null) {
+      ret = AvoidanceMap.create(selected, 0, 0);
+      selectedAvoid = ret;
+    }
+    return ret.translate(dx, dy);
+  }
+
   HashSet<Component> getSelected() {
     return selected;
   }
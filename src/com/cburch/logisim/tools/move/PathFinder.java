@@ -0,0 +1,401 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.tools.move;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Location;
+
+/**
+ * A* search for the route of a single connection. Search nodes live in
+ * parallel primitive arrays, the open list is a binary heap of node indices
+ * and the closed set is an open-addressed table keyed by grid point, so once
+ * the arrays have grown a search allocates nothing. One finder is reused for
+ * every connection and ordering tried for a move request.
+ */
+class PathFinder {
+  private static final int CROSSING_PENALTY = 20;
+  private static final int TURN_PENALTY = 50;
+
+  private static final int MAX_SEARCH_ITERATIONS = 20000;
+
+  // direction codes are the Direction ids; NONE is a start without direction
+  private static final int EAST = 0;
+  private static final int WEST = 1;
+  private static final int NORTH = 2;
+  private static final int SOUTH = 3;
+  private static final int NONE = 4;
+
+  private static final int[] LEFT = { NORTH, SOUTH, WEST, EAST };
+  private static final int[] RIGHT = { SOUTH, NORTH, EAST, WEST };
+  private static final int[] REVERSE = { WEST, EAST, SOUTH, NORTH };
+  private static final int[] STEP_X = { 10, -10, 0, 0 };
+  private static final int[] STEP_Y = { 0, 0, -10, 10 };
+
+  private static int code(Direction dir) {
+    if (dir == Direction.EAST)
+      return EAST;
+    if (dir == Direction.WEST)
+      return WEST;
+    if (dir == Direction.NORTH)
+      return NORTH;
+    if (dir == Direction.SOUTH)
+      return SOUTH;
+    return NONE;
+  }
+
+  // nodes
+  private int[] nodeX = new int[1024];
+  private int[] nodeY = new int[1024];
+  private int[] nodeDist = new int[1024];
+  private int[] nodePrev = new int[1024];
+  private byte[] nodeDir = new byte[1024];
+  private boolean[] nodeExtends = new boolean[1024];
+  private int nodeCount;
+
+  // open list: heap of node indices, ordered by estimated cost then hash
+  private int[] heap = new int[1024];
+  private long[] heapKey = new long[1024];
+  private int heapSize;
+
+  // closed set: per grid point, a mask of the directions already expanded;
+  // entries whose stamp is not the current one are free
+  private long[] closedKey = new long[4096];
+  private byte[] closedDirs = new byte[4096];
+  private int[] closedStamp = new int[4096];
+  private int closedCount;
+  private int stamp;
+
+  // the current search
+  private int destX;
+  private int destY;
+  private int connDir;
+
+  /**
+   * Searches from the given start nodes (all for the same connection) to
+   * their destination. Returns the index of the destination node, or -1 if
+   * there is no route within the iteration limit or the search was aborted.
+   */
+  int findShortestPath(List<SearchNode> starts, Set<Location> pathLocs,
+      AvoidanceMap avoid) {
+    nodeCount = 0;
+    heapSize = 0;
+    closedCount = 0;
+    stamp++;
+    if (starts.isEmpty()) {
+      return -1;
+    }
+    SearchNode first = starts.get(0);
+    destX = first.getDestination().getX();
+    destY = first.getDestination().getY();
+    connDir = code(first.getConnection().getDirection());
+    for (SearchNode start : starts) {
+      Direction dir = start.getDirection();
+      Location loc = start.getLocation();
+      push(loc.getX(), loc.getY(), code(dir), 0, dir != null, -1);
+    }
+
+    int iters = 0;
+    while (heapSize > 0 && iters < MAX_SEARCH_ITERATIONS) {
+      iters++;
+      int n = pop();
+      if (iters % 64 == 0 && ConnectorThread.isOverrideRequested()) {
+        return -1;
+      }
+      int x = nodeX[n];
+      int y = nodeY[n];
+      if (x == destX && y == destY) {
+        return n;
+      }
+      int nodeDir = this.nodeDir[n];
+      if (!close(x, y, nodeDir)) {
+        continue;
+      }
+      int dir = nodeDir;
+      int neighbors;
+      byte allowed = avoid.get(x, y);
+      if (allowed != Connector.ALLOW_ALL && nodePrev[n] < 0
+          && pathLocs.contains(Location.create(x, y))) {
+        allowed = Connector.ALLOW_ALL;
+      }
+      if (allowed == Connector.ALLOW_NEITHER) {
+        neighbors = 0;
+      } else if (allowed == Connector.ALLOW_VERTICAL) {
+        if (dir == NONE) {
+          dir = NORTH;
+          neighbors = 2;
+        } else if (dir == NORTH || dir == SOUTH) {
+          neighbors = 1;
+        } else {
+          neighbors = 0;
+        }
+      } else if (allowed == Connector.ALLOW_HORIZONTAL) {
+        if (dir == NONE) {
+          dir = EAST;
+          neighbors = 2;
+        } else if (dir == EAST || dir == WEST) {
+          neighbors = 1;
+        } else {
+          neighbors = 0;
+        }
+      } else {
+        if (dir == NONE) {
+          dir = NORTH;
+          neighbors = 4;
+        } else {
+          neighbors = 3;
+        }
+      }
+      boolean crossing = allowed != Connector.ALLOW_ALL;
+      for (int i = 0; i < neighbors; i++) {
+        int oDir;
+        switch (i) {
+        case 0:
+          oDir = dir;
+          break;
+        case 1:
+          oDir = neighbors == 2 ? REVERSE[dir] : LEFT[dir];
+          break;
+        case 2:
+          oDir = RIGHT[dir];
+          break;
+        default: // must be 3
+          oDir = REVERSE[dir];
+        }
+        int ox = x + STEP_X[oDir];
+        int oy = y + STEP_Y[oDir];
+        if (ox < 0 || oy < 0 || isClosed(ox, oy, oDir)) {
+          continue;
+        }
+        boolean exWire = nodeExtends[n] && oDir == connDir;
+        int dist = nodeDist[n] + (exWire ? 9 : 10);
+        if (crossing)
+          dist += CROSSING_PENALTY;
+        if (oDir != nodeDir)
+          dist += TURN_PENALTY;
+        push(ox, oy, oDir, dist, exWire, n);
+      }
+    }
+    return -1;
+  }
+
+  int getDistance(int node) {
+    return nodeDist[node];
+  }
+
+  /** Returns the corners of the route ending at node, from its start. */
+  ArrayList<Location> getPath(int node) {
+    int next = node;
+    int prev = nodePrev[node];
+    ArrayList<Location> ret = new ArrayList<Location>();
+    ret.add(Location.create(nodeX[next], nodeY[next]));
+    while (prev >= 0) {
+      if (nodeDir[prev] != nodeDir[next]) {
+        ret.add(Location.create(nodeX[prev], nodeY[prev]));
+      }
+      next = prev;
+      prev = nodePrev[prev];
+    }
+    Location start = Location.create(nodeX[next], nodeY[next]);
+    if (!ret.get(ret.size() - 1).equals(start)) {
+      ret.add(start);
+    }
+    Collections.reverse(ret);
+    return ret;
+  }
+
+  private int heuristic(int x, int y, int dir, boolean extendsWire) {
+    int dx = destX - x;
+    int dy = destY - y;
+    int ret = -1;
+    if (extendsWire) {
+      if (dir == EAST) {
+        if (dx > 0)
+          ret = dx / 10 * 9 + Math.abs(dy);
+      } else if (dir == WEST) {
+        if (dx < 0)
+          ret = -dx / 10 * 9 + Math.abs(dy);
+      } else if (dir == SOUTH) {
+        if (dy > 0)
+          ret = Math.abs(dx) + dy / 10 * 9;
+      } else if (dir == NORTH) {
+        if (dy < 0)
+          ret = Math.abs(dx) - dy / 10 * 9;
+      }
+    }
+    if (ret < 0) {
+      ret = Math.abs(dx) + Math.abs(dy);
+    }
+    boolean penalizeDoubleTurn = false;
+    if (dir == EAST) {
+      penalizeDoubleTurn = dx < 0;
+    } else if (dir == WEST) {
+      penalizeDoubleTurn = dx > 0;
+    } else if (dir == NORTH) {
+      penalizeDoubleTurn = dy > 0;
+    } else if (dir == SOUTH) {
+      penalizeDoubleTurn = dy < 0;
+    } else {
+      if (dx != 0 || dy != 0)
+        ret += TURN_PENALTY;
+    }
+    if (penalizeDoubleTurn) {
+      ret += 2 * TURN_PENALTY;
+    } else if (dx != 0 && dy != 0) {
+      ret += TURN_PENALTY;
+    }
+    return ret;
+  }
+
+  private void push(int x, int y, int dir, int dist, boolean extendsWire,
+      int prev) {
+    if (nodeCount == nodeX.length) {
+      int len = 2 * nodeCount;
+      nodeX = Arrays.copyOf(nodeX, len);
+      nodeY = Arrays.copyOf(nodeY, len);
+      nodeDist = Arrays.copyOf(nodeDist, len);
+      nodePrev = Arrays.copyOf(nodePrev, len);
+      nodeDir = Arrays.copyOf(nodeDir, len);
+      nodeExtends = Arrays.copyOf(nodeExtends, len);
+    }
+    int n = nodeCount++;
+    nodeX[n] = x;
+    nodeY[n] = y;
+    nodeDist[n] = dist;
+    nodePrev[n] = prev;
+    nodeDir[n] = (byte) dir;
+    nodeExtends[n] = extendsWire;
+
+    // Equal estimates are ordered by the same location/direction hash the
+    // search has always used, so the routes picked don't change.
+    int est = dist + heuristic(x, y, dir, extendsWire);
+    int hash = ((31 * x + y) * 31 + (dir == NONE ? 0 : dir)) * 31
+        + (31 * destX + destY);
+    long key = ((long) est << 32) | ((long) hash - Integer.MIN_VALUE);
+
+    if (heapSize == heap.length) {
+      heap = Arrays.copyOf(heap, 2 * heapSize);
+      heapKey = Arrays.copyOf(heapKey, 2 * heapSize);
+    }
+    int i = heapSize++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (heapKey[parent] <= key)
+        break;
+      heap[i] = heap[parent];
+      heapKey[i] = heapKey[parent];
+      i = parent;
+    }
+    heap[i] = n;
+    heapKey[i] = key;
+  }
+
+  private int pop() {
+    int ret = heap[0];
+    int last = --heapSize;
+    if (last > 0) {
+      int n = heap[last];
+      long key = heapKey[last];
+      int i = 0;
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= last)
+          break;
+        if (child + 1 < last && heapKey[child + 1] < heapKey[child])
+          child++;
+        if (key <= heapKey[child])
+          break;
+        heap[i] = heap[child];
+        heapKey[i] = heapKey[child];
+        i = child;
+      }
+      heap[i] = n;
+      heapKey[i] = key;
+    }
+    return ret;
+  }
+
+  private int slot(long key) {
+    int mask = closedKey.length - 1;
+    int i = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    while (closedStamp[i] == stamp && closedKey[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  private boolean isClosed(int x, int y, int dir) {
+    int i = slot(((long) x << 32) | (y & 0xffffffffL));
+    return closedStamp[i] == stamp && (closedDirs[i] & (1 << dir)) != 0;
+  }
+
+  // Marks (x, y, dir) as expanded; returns false if it already was.
+  private boolean close(int x, int y, int dir) {
+    long key = ((long) x << 32) | (y & 0xffffffffL);
+    int i = slot(key);
+    if (closedStamp[i] != stamp) {
+      if (2 * (closedCount + 1) > closedKey.length) {
+        growClosed();
+        i = slot(key);
+      }
+      closedStamp[i] = stamp;
+      closedKey[i] = key;
+      closedDirs[i] = 0;
+      closedCount++;
+    } else if ((closedDirs[i] & (1 << dir)) != 0) {
+      return false;
+    }
+    closedDirs[i] |= 1 << dir;
+    return true;
+  }
+
+  private void growClosed() {
+    long[] oldKey = closedKey;
+    byte[] oldDirs = closedDirs;
+    int[] oldStamp = closedStamp;
+    closedKey = new long[2 * oldKey.length];
+    closedDirs = new byte[2 * oldKey.length];
+    closedStamp = new int[2 * oldKey.length];
+    for (int j = 0; j < oldKey.length; j++) {
+      if (oldStamp[j] == stamp) {
+        int i = slot(oldKey[j]);
+        closedStamp[i] = stamp;
+        closedKey[i] = oldKey[j];
+        closedDirs[i] = oldDirs[j];
+      }
+    }
+  }
+}
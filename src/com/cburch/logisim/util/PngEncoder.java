@@ -0,0 +1,298 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8-bit RGB PNG a band of rows at a time, so that a large image
+ * never has to exist in memory all at once. Construct it with the final
+ * size, pass the rows in order to writeRows(), then call finish(). Each row
+ * gets whichever of the None/Sub/Up/Paeth filters gives the smallest sum of
+ * residuals, the usual heuristic.
+ */
+public class PngEncoder {
+  private static final byte[] SIGNATURE = {
+    (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+  private static final int CHUNK_SIZE = 1 << 16;
+
+  // circuit drawings are mostly flat color; higher levels cost much more
+  // time for very little gain
+  private static final int COMPRESSION_LEVEL = 4;
+
+  private final OutputStream out;
+  private final int width;
+  private final int height;
+  private final DeflaterOutputStream idat;
+  private final Deflater deflater;
+  private byte[] prev; // previous raw scanline (no filter byte)
+  private byte[] cur;
+  private final byte[][] filtered = new byte[5][];
+  private int rowsWritten;
+
+  public PngEncoder(OutputStream out, int width, int height)
+      throws IOException {
+    this.out = out;
+    this.width = width;
+    this.height = height;
+    out.write(SIGNATURE);
+    byte[] ihdr = new byte[13];
+    putInt(ihdr, 0, width);
+    putInt(ihdr, 4, height);
+    ihdr[8] = 8; // bit depth
+    ihdr[9] = 2; // color type: RGB
+    writeChunk("IHDR", ihdr, ihdr.length);
+    deflater = new Deflater(COMPRESSION_LEVEL);
+    idat = new DeflaterOutputStream(new ChunkStream(), deflater, CHUNK_SIZE);
+    prev = new byte[3 * width];
+    cur = new byte[3 * width];
+    for (int f = 0; f < filtered.length; f++)
+      filtered[f] = new byte[1 + 3 * width];
+  }
+
+  /**
+   * Appends the first rows rows of img (at least width pixels wide) to the
+   * image.
+   */
+  public void writeRows(BufferedImage img, int rows) throws IOException {
+    if (rowsWritten + rows > height)
+      throw new IllegalArgumentException("too many rows");
+    int[] rgb;
+    int stride;
+    if (img.getType() == BufferedImage.TYPE_INT_RGB
+        && img.getRaster().getDataBuffer() instanceof DataBufferInt) {
+      // read the pixels in place rather than converting them row by row
+      rgb = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+      stride = img.getWidth();
+    } else {
+      rgb = null;
+      stride = 0;
+    }
+    int[] row = rgb == null ? new int[width] : null;
+    for (int y = 0; y < rows; y++) {
+      int off = 0;
+      if (rgb == null) {
+        img.getRGB(0, y, width, 1, row, 0, width);
+      } else {
+        off = y * stride;
+      }
+      int[] src = rgb == null ? row : rgb;
+      for (int x = 0, i = 0; x < width; x++) {
+        int p = src[off + x];
+        cur[i++] = (byte) (p >> 16);
+        cur[i++] = (byte) (p >> 8);
+        cur[i++] = (byte) p;
+      }
+      writeScanline();
+      byte[] t = prev;
+      prev = cur;
+      cur = t;
+    }
+    rowsWritten += rows;
+  }
+
+  public void finish() throws IOException {
+    if (rowsWritten != height)
+      throw new IllegalStateException("missing rows");
+    idat.finish();
+    idat.flush();
+    deflater.end();
+    writeChunk("IEND", new byte[0], 0);
+    out.flush();
+  }
+
+  private void writeScanline() throws IOException {
+    // before the first row, prev is all zeros, as the PNG spec requires
+    int n = cur.length;
+    if (Arrays.equals(cur, prev)) { // common: blank space; Up gives all zeros
+      byte[] line = filtered[2];
+      line[0] = 2;
+      Arrays.fill(line, 1, n + 1, (byte) 0);
+      idat.write(line, 0, n + 1);
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    int bestFilter = 0;
+    for (int f = 0; f < filtered.length; f++) {
+      long sum = filter(f, filtered[f], best);
+      if (sum < best) {
+        best = sum;
+        bestFilter = f;
+      }
+    }
+    idat.write(filtered[bestFilter], 0, n + 1);
+  }
+
+  // Fills line with the filter type and the filtered current row, and
+  // returns the sum of the absolute residuals (giving up once it reaches
+  // limit).
+  private long filter(int f, byte[] line, long limit) {
+    byte[] cur = this.cur;
+    byte[] prev = this.prev;
+    int n = cur.length;
+    line[0] = (byte) f;
+    long sum = 0;
+    int i = 0;
+    switch (f) {
+    case 0: // None
+      for (; i < n && sum < limit; i++) {
+        byte v = cur[i];
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+      break;
+    case 1: // Sub
+      for (; i < 3; i++) {
+        line[i + 1] = cur[i];
+        sum += Math.abs((int) cur[i]);
+      }
+      for (; i < n && sum < limit; i++) {
+        byte v = (byte) (cur[i] - cur[i - 3]);
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+      break;
+    case 2: // Up
+      for (; i < n && sum < limit; i++) {
+        byte v = (byte) (cur[i] - prev[i]);
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+      break;
+    case 3: // Average
+      for (; i < 3; i++) {
+        byte v = (byte) (cur[i] - ((prev[i] & 0xff) >>> 1));
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+      for (; i < n && sum < limit; i++) {
+        byte v = (byte) (cur[i] - (((cur[i - 3] & 0xff) + (prev[i] & 0xff)) >>> 1));
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+      break;
+    default: // Paeth
+      for (; i < 3; i++) {
+        byte v = (byte) (cur[i] - prev[i]); // paeth(0, b, 0) == b
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+      for (; i < n && sum < limit; i++) {
+        int pred = paeth(cur[i - 3] & 0xff, prev[i] & 0xff, prev[i - 3] & 0xff);
+        byte v = (byte) (cur[i] - pred);
+        line[i + 1] = v;
+        sum += Math.abs((int) v);
+      }
+    }
+    return sum;
+  }
+
+  private static int paeth(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a);
+    int pb = Math.abs(p - b);
+    int pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc)
+      return a;
+    else if (pb <= pc)
+      return b;
+    else
+      return c;
+  }
+
+  private static void putInt(byte[] buf, int off, int v) {
+    buf[off] = (byte) (v >>> 24);
+    buf[off + 1] = (byte) (v >>> 16);
+    buf[off + 2] = (byte) (v >>> 8);
+    buf[off + 3] = (byte) v;
+  }
+
+  private void writeChunk(String type, byte[] data, int len)
+      throws IOException {
+    byte[] head = new byte[8];
+    putInt(head, 0, len);
+    for (int i = 0; i < 4; i++)
+      head[4 + i] = (byte) type.charAt(i);
+    CRC32 crc = new CRC32();
+    crc.update(head, 4, 4);
+    crc.update(data, 0, len);
+    byte[] tail = new byte[4];
+    putInt(tail, 0, (int) crc.getValue());
+    out.write(head);
+    out.write(data, 0, len);
+    out.write(tail);
+  }
+
+  // Collects compressed data and emits it as IDAT chunks of CHUNK_SIZE.
+  private class ChunkStream extends OutputStream {
+    private final byte[] buf = new byte[CHUNK_SIZE];
+    private int len;
+
+    @Override
+    public void write(int b) throws IOException {
+      if (len == buf.length)
+        flushChunk();
+      buf[len++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int n) throws IOException {
+      while (n > 0) {
+        if (len == buf.length)
+          flushChunk();
+        int k = Math.min(n, buf.length - len);
+        System.arraycopy(b, off, buf, len, k);
+        len += k;
+        off += k;
+        n -= k;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (len > 0)
+        flushChunk();
+    }
+
+    private void flushChunk() throws IOException {
+      writeChunk("IDAT", buf, len);
+      len = 0;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The word-level bus resolution helpers are checked against the plain
+ * per-bit {@link Value#combine(Value)} they stand in for.
+ */
+public class ValueTest {
+
+	private static final int[] WIDTHS = { 1, 2, 5, 8, 17, 31, 32 };
+
+	// Mostly known bits, with some unknown and error bits mixed in.
+	private static Value randomValue(Random rng, int width) {
+		Value[] bits = new Value[width];
+		for (int i = 0; i < width; i++) {
+			int r = rng.nextInt(16);
+			bits[i] = r == 0 ? Value.ERROR : r < 4 ? Value.UNKNOWN
+					: r < 10 ? Value.FALSE : Value.TRUE;
+		}
+		return Value.create(bits);
+	}
+
+	// Drivers mostly agree, so that their combination is not always an error.
+	private static Value randomDriver(Random rng, int width, Value common) {
+		switch (rng.nextInt(8)) {
+		case 0:
+			return null;
+		case 1:
+			return Value.NIL;
+		case 2:
+			return Value.createUnknown(width);
+		case 3:
+			return randomValue(rng, width);
+		default:
+			return common;
+		}
+	}
+
+	private static Value combineAll(int width, Value[] drivers) {
+		Value ret = Value.createUnknown(width);
+		for (Value v : drivers)
+			ret = ret.combine(v);
+		return ret;
+	}
+
+	/**
+	 * Test method for {@link Value.DriverCounts}: after every change to one
+	 * driver, the counts resolve to the same value as combining all of the
+	 * drivers one at a time.
+	 */
+	@Test
+	public final void testDriverCounts() {
+		Random rng = new Random(42L);
+		for (int width : WIDTHS) {
+			for (int n : new int[] { 1, 3, 32, 100 }) {
+				Value common = randomValue(rng, width);
+				Value[] drivers = new Value[n];
+				Value.DriverCounts counts = new Value.DriverCounts(width, n);
+				assertEquals(Value.createUnknown(width), counts.get());
+				for (int step = 0; step < 20 * n; step++) {
+					int i = rng.nextInt(n);
+					Value v = randomDriver(rng, width, common);
+					assertTrue(counts.replace(drivers[i], v));
+					drivers[i] = v;
+					assertEquals("width " + width + ", " + n + " drivers",
+							combineAll(width, drivers), counts.get());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Values of the wrong width are refused without changing the counts.
+	 */
+	@Test
+	public final void testDriverCountsWrongWidth() {
+		Value.DriverCounts counts = new Value.DriverCounts(5, 2);
+		Value v = Value.createKnown(BitWidth.create(5), 0x15);
+		assertTrue(counts.replace(null, v));
+		assertFalse(counts.replace(null, Value.createUnknown(4)));
+		assertFalse(counts.replace(v, Value.createUnknown(6)));
+		assertEquals(v, counts.get());
+	}
+
+	/**
+	 * Test method for
+	 * {@link Value#combineShifted(int, Value[], int[], int[], int, int, int)}:
+	 * runs of bits copied from several source values are resolved the same way
+	 * as combining each destination bit from its sources, then pulling the
+	 * bits that are still unknown.
+	 */
+	@Test
+	public final void testCombineShifted() {
+		Random rng = new Random(41L);
+		for (int trial = 0; trial < 5000; trial++) {
+			int width = WIDTHS[rng.nextInt(WIDTHS.length)];
+			int n = 1 + rng.nextInt(6);
+			Value[] vals = new Value[n];
+			int[] mask = new int[n], shift = new int[n];
+			Value common = randomValue(rng, 32);
+			for (int k = 0; k < n; k++) {
+				int srcWidth = WIDTHS[rng.nextInt(WIDTHS.length)];
+				int len = 1 + rng.nextInt(Math.min(width, srcWidth));
+				int src = rng.nextInt(srcWidth - len + 1);
+				int dst = rng.nextInt(width - len + 1);
+				mask[k] = (len == 32 ? -1 : ~(-1 << len)) << src;
+				shift[k] = dst - src;
+				vals[k] = randomDriver(rng, srcWidth,
+						common.extendWidth(srcWidth, Value.FALSE));
+			}
+			int pullUp = rng.nextInt(), pullDown = rng.nextInt() & ~pullUp;
+			int pullError = rng.nextInt() & ~(pullUp | pullDown);
+			int all = width == 32 ? -1 : ~(-1 << width);
+			pullUp &= all;
+			pullDown &= all;
+			pullError &= all;
+
+			Value[] bits = new Value[width];
+			for (int i = 0; i < width; i++) {
+				Value b = Value.UNKNOWN;
+				for (int k = 0; k < n; k++) {
+					if (vals[k] == null || vals[k] == Value.NIL)
+						continue;
+					int j = i - shift[k];
+					if (j >= 0 && j < 32 && (mask[k] & (1 << j)) != 0)
+						b = b.combine(vals[k].get(j));
+				}
+				if (b == Value.UNKNOWN) {
+					if ((pullUp & (1 << i)) != 0)
+						b = Value.TRUE;
+					else if ((pullDown & (1 << i)) != 0)
+						b = Value.FALSE;
+					else if ((pullError & (1 << i)) != 0)
+						b = Value.ERROR;
+				}
+				bits[i] = b;
+			}
+			assertEquals("trial " + trial, Value.create(bits), Value
+					.combineShifted(width, vals, mask, shift, pullUp, pullDown,
+							pullError));
+		}
+	}
+}
@@ -32,10 +32,20 @@ package com.cburch.logisim.file;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.cburch.logisim.gui.hex.HexFile;
+import com.cburch.logisim.std.memory.MemContents;
 
 public class XmlReaderTest {
 
@@ -123,4 +133,81 @@ public class XmlReaderTest {
 	}
         */
 
+	private static Element loadContents(String owner, String text)
+			throws Exception {
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<project><circuit name=\"main\">"
+				+ "<comp loc=\"(0,0)\" name=\"" + owner + "\">"
+				+ "<a name=\"contents\">" + text + "</a>"
+				+ "</comp></circuit></project>";
+		Document doc = XmlReader.loadXmlFrom(new ByteArrayInputStream(
+				xml.getBytes(StandardCharsets.UTF_8)));
+		return (Element) doc.getElementsByTagName("a").item(0);
+	}
+
+	private static String encode(MemContents mem, boolean binary)
+			throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(("addr/data: " + mem.getLogLength() + " " + mem.getWidth()
+				+ "\n").getBytes(StandardCharsets.UTF_8));
+		HexFile.saveForCircFile(mem, out, binary);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Memory contents of a ROM or RAM are decoded while loading, for both the
+	 * run-length text and the binary encodings.
+	 */
+	@Test
+	public final void testLoadMemoryContents() throws Exception {
+		MemContents mem = MemContents.create(10, 12);
+		for (int i = 0; i < 700; i++)
+			mem.set(i, (i * 37) & 0xfff);
+		for (int i = 700; i < 800; i++)
+			mem.set(i, 5);
+		for (boolean binary : new boolean[] { false, true }) {
+			for (String owner : new String[] { "ROM", "RAM" }) {
+				Element a = loadContents(owner, encode(mem, binary));
+				Object val = a.getUserData(XmlReader.DECODED_VALUE);
+				assertTrue(val instanceof MemContents);
+				MemContents got = (MemContents) val;
+				assertEquals(10, got.getLogLength());
+				assertEquals(12, got.getWidth());
+				for (int i = 0; i < 1024; i++)
+					assertEquals(mem.get(i), got.get(i));
+				assertEquals("", a.getTextContent());
+			}
+		}
+	}
+
+	/**
+	 * Attributes named "contents" that are not memory images keep their text
+	 * exactly, whether or not they belong to a memory component.
+	 */
+	@Test
+	public final void testLoadOtherContents() throws Exception {
+		String text = "line one\nline two\nline three";
+		Element a = loadContents("File Viewer", text);
+		assertNull(a.getUserData(XmlReader.DECODED_VALUE));
+		assertEquals(text, a.getTextContent());
+
+		a = loadContents("ROM", text);
+		assertNull(a.getUserData(XmlReader.DECODED_VALUE));
+		assertEquals(text, a.getTextContent());
+
+		// rejected only once the whole text has been seen
+		a = loadContents("ROM", "line one");
+		assertNull(a.getUserData(XmlReader.DECODED_VALUE));
+		assertEquals("line one", a.getTextContent());
+
+		// long enough to arrive in several pieces
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+			b.append("line ").append(i).append('\n');
+		a = loadContents("RAM", b.toString());
+		assertEquals(b.toString(), a.getTextContent());
+		a = loadContents("File Viewer", b.toString());
+		assertEquals(b.toString(), a.getTextContent());
+	}
+
 }
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.hex;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cburch.logisim.std.memory.MemContents;
+
+public class CircContentsDecoderTest {
+
+	private static final int[] WIDTHS = { 1, 5, 8, 12, 16, 23, 32 };
+	private static final int[] CHUNKS = { 1, 7, 76, 1 << 20 };
+
+	private static String encode(MemContents m, boolean binary)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		HexFile.saveForCircFile(m, out, binary);
+		return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+	}
+
+	// Feeds the text the way an XML parser might, a chunk at a time.
+	private static MemContents decode(String text, int chunk) {
+		CircContentsDecoder d = new CircContentsDecoder();
+		char[] chars = text.toCharArray();
+		for (int i = 0; i < chars.length; i += chunk)
+			assertTrue(d.feed(chars, i, Math.min(chunk, chars.length - i)));
+		return d.finish();
+	}
+
+	private static void roundTrip(MemContents m, boolean binary)
+			throws IOException {
+		String header = "addr/data: " + m.getLogLength() + " " + m.getWidth()
+				+ "\n";
+		String text = encode(m, binary);
+		String msg = (binary ? "binary" : "text") + ", width " + m.getWidth();
+		for (int chunk : CHUNKS) {
+			MemContents d = decode(header + text, chunk);
+			assertNotNull(msg, d);
+			HexFileTest.assertSameContents(msg + ", chunk " + chunk, m, d);
+		}
+		HexFileTest.assertSameContents(msg, m, HexFile.parseFromCircFile(
+				text, m.getLogLength(), m.getWidth()));
+	}
+
+	/**
+	 * Test method for
+	 * {@link HexFile#saveForCircFile(MemContents, java.io.OutputStream, boolean)}
+	 * and {@link CircContentsDecoder}: both encodings decode to the same
+	 * words, whether the text arrives at once or in small pieces.
+	 */
+	@Test
+	public final void testRoundTrip() throws IOException {
+		Random rng = new Random(28L);
+		for (int width : WIDTHS) {
+			for (int addrBits : new int[] { 1, 6, 13 }) {
+				MemContents m = HexFileTest.randomContents(rng, addrBits, width);
+				roundTrip(m, false);
+				roundTrip(m, true);
+			}
+		}
+	}
+
+	/**
+	 * Memories that are empty, or zero past their first word, are written
+	 * with no words at all after the leading ones.
+	 */
+	@Test
+	public final void testTrailingZeros() throws IOException {
+		for (int width : WIDTHS) {
+			MemContents m = MemContents.create(8, width);
+			roundTrip(m, false);
+			roundTrip(m, true);
+			m.set(0, 1);
+			roundTrip(m, false);
+			roundTrip(m, true);
+		}
+	}
+
+	/**
+	 * Text that is not memory contents is rejected and handed back intact.
+	 */
+	@Test
+	public final void testRejected() {
+		String text = "not memory contents\nat all\n";
+		CircContentsDecoder d = new CircContentsDecoder();
+		char[] chars = text.toCharArray();
+		boolean ok = true;
+		for (int i = 0; i < chars.length && ok; i += 5)
+			ok = d.feed(chars, i, Math.min(5, chars.length - i));
+		assertFalse(ok);
+		assertTrue(d.isRejected());
+		assertNull(d.finish());
+		String rejected = d.getRejectedText();
+		assertTrue(rejected.startsWith("not memory contents\n"));
+		assertTrue(text.startsWith(rejected));
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.hex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.std.memory.MemContents;
+
+public class HexFileTest {
+
+	private static final String[] FORMATS = {
+			"v3.0 hex words addressed",
+			"v3.0 hex words plain",
+			"v3.0 hex bytes addressed big-endian",
+			"v3.0 hex bytes addressed little-endian",
+			"v3.0 hex bytes plain big-endian",
+			"v3.0 hex bytes plain little-endian",
+			"v2.0 raw (run-length-endcoded hex words)",
+			"Binary data big-endian",
+			"Binary data little-endian",
+			"ASCII bytes, with escapes, big-endian",
+			"ASCII bytes, with escapes, little-endian" };
+
+	private static final int[] WIDTHS = { 1, 7, 8, 13, 16, 24, 31, 32 };
+
+	@BeforeClass
+	public static void setUp() {
+		Main.headless = true;
+	}
+
+	/**
+	 * Fills a memory with random words, runs of zeros and runs of repeated
+	 * words, so the run-length and sparse encodings are exercised too.
+	 */
+	static MemContents randomContents(Random rng, int addrBits, int width) {
+		MemContents m = MemContents.create(addrBits, width);
+		int mask = width == 32 ? -1 : (1 << width) - 1;
+		long n = 1L << addrBits;
+		for (long a = 0; a < n; a++) {
+			switch (rng.nextInt(4)) {
+			case 0:
+				break; // leave zero
+			case 1:
+				m.set(a, mask);
+				break;
+			default:
+				m.set(a, rng.nextInt() & mask);
+			}
+		}
+		if (n > 1)
+			m.set(n - 1, rng.nextInt() & mask | 1);
+		return m;
+	}
+
+	static void assertSameContents(String msg, MemContents expected,
+			MemContents actual) {
+		long n = 1L << expected.getLogLength();
+		for (long a = 0; a < n; a++) {
+			if (expected.get(a) != actual.get(a))
+				assertEquals(msg + " at 0x" + Long.toHexString(a),
+						expected.get(a), actual.get(a));
+		}
+	}
+
+	private static MemContents load(File f, String desc, int addrBits,
+			int width) throws IOException {
+		MemContents dst = MemContents.create(addrBits, width);
+		// only the formats with a header line can be auto-detected
+		boolean ok = desc.startsWith("Binary") || desc.startsWith("ASCII")
+				? HexFile.open(dst, f, desc) : HexFile.open(dst, f);
+		assertTrue("could not load " + desc, ok);
+		return dst;
+	}
+
+	/**
+	 * Test method for {@link HexFile#open(MemContents, File)}: every format
+	 * the file chooser offers is saved and decoded again, for word widths
+	 * that are and are not multiples of 8.
+	 */
+	@Test
+	public final void testFileRoundTrip() throws IOException {
+		Random rng = new Random(46L);
+		File f = File.createTempFile("hexfile-test-", ".dat");
+		try {
+			for (String desc : FORMATS) {
+				for (int width : WIDTHS) {
+					int addrBits = 1 + rng.nextInt(10);
+					MemContents m = randomContents(rng, addrBits, width);
+					HexFile.save(f, m, desc);
+					assertSameContents(desc + ", width " + width, m,
+							load(f, desc, addrBits, width));
+				}
+			}
+		} finally {
+			f.delete();
+		}
+	}
+
+	/**
+	 * A file larger than a megabyte is loaded, then saved back over the same
+	 * file and loaded again, as happens when a memory image is edited in
+	 * place.
+	 */
+	@Test
+	public final void testLargeFileSavedInPlace() throws IOException {
+		Random rng = new Random(4646L);
+		File f = File.createTempFile("hexfile-test-", ".bin");
+		try {
+			String desc = "Binary data little-endian";
+			MemContents m = randomContents(rng, 19, 32);
+			HexFile.save(f, m, desc);
+			assertTrue(f.length() > 1 << 20);
+			MemContents loaded = load(f, desc, 19, 32);
+			assertSameContents(desc, m, loaded);
+			loaded.set(12345, 0x12345678);
+			HexFile.save(f, loaded, desc);
+			assertSameContents(desc, loaded, load(f, desc, 19, 32));
+		} finally {
+			f.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link HexFile#parseFromClipboard(String, int, int)}.
+	 */
+	@Test
+	public final void testParseFromClipboard() throws IOException {
+		HexFile.ParseResult r = HexFile.parseFromClipboard(
+				"1 2 3\nff 1ff\n", 4, 8);
+		assertEquals(5, r.numWords);
+		assertEquals(1, r.model.get(0));
+		assertEquals(3, r.model.get(2));
+		assertEquals(0xff, r.model.get(3));
+		assertEquals(0, r.model.get(5));
+	}
+}